@@ -63,6 +63,8 @@ Fn.KeepAlive, Fn.ToJavaScript, Fn.FromJavaScript, Executor, Cloneable, Fn.Ref<Ab
     private Object undefined;
     private JavaValues values;
     private Id id;
+    /** functions live as long as the presenter */
+    private final List<JSFn> functions = new ArrayList<JSFn>();
 
     @Override
     protected AbstractFXPresenter clone() {
@@ -112,7 +114,9 @@ Fn.KeepAlive, Fn.ToJavaScript, Fn.FromJavaScript, Executor, Cloneable, Fn.Ref<Ab
             );
         }
         JSObject x = (JSObject) engine.executeScript(sb.toString());
-        return new JSFn(this, x, cnt, keepAlive);
+        JSFn fn = new JSFn(this, x, cnt, keepAlive);
+        functions.add(fn);
+        return fn;
     }
 
     @Override
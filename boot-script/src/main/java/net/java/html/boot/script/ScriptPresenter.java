@@ -53,7 +53,7 @@ import org.netbeans.html.boot.spi.Fn.Presenter;
  *
  * @author Jaroslav Tulach
  */
-final class ScriptPresenter implements Fn.KeepAlive,
+final class ScriptPresenter implements Fn.KeepAlive, Fn.Bundle,
 Presenter, Fn.FromJavaScript, Fn.ToJavaScript, Executor {
     private static final Logger LOG = Logger.getLogger(ScriptPresenter.class.getName());
     private static final boolean JDK7;
@@ -72,6 +72,8 @@ Presenter, Fn.FromJavaScript, Fn.ToJavaScript, Executor {
     private final Object undefined;
     private final Set<Class<?>> jsReady;
     private final CallbackImpl callback;
+    /** functions live as long as the presenter */
+    private final List<Fn> functions = new ArrayList<>();
 
     ScriptPresenter(ScriptEngine eng, Executor exc, boolean sanitize) {
         if (eng == null) {
@@ -115,18 +117,43 @@ Presenter, Fn.FromJavaScript, Fn.ToJavaScript, Executor {
     public Fn defineFn(String code, String[] names, boolean[] keepAlive) {
         return defineImpl(code, names, keepAlive);
     }
-    private FnImpl defineImpl(String code, String[] names, boolean[] keepAlive) {
+
+    /** Evaluates all the functions in a single script.
+     */
+    @Override
+    public Fn[] defineFns(String[] codes, String[][] names, boolean[][] keepAlive) {
         StringBuilder sb = new StringBuilder();
         sb.append("(function() {\n");
-        sb.append("  return function(");
-        String sep = "";
-        if (names != null) for (String n : names) {
-            sb.append(sep).append(n);
-            sep = ",";
+        sb.append("  var fns = [\n");
+        for (int i = 0; i < codes.length; i++) {
+            if (i > 0) {
+                sb.append(",\n");
+            }
+            appendFn(sb, codes[i], names[i]);
         }
-        sb.append(") {\n");
-        sb.append(code);
-        sb.append("\n  };\n");
+        sb.append("\n  ];\n");
+        sb.append("  return function(i) { return fns[i]; };\n");
+        sb.append("})()\n");
+
+        Fn[] arr = new Fn[codes.length];
+        try {
+            Object fns = eng.eval(sb.toString());
+            for (int i = 0; i < arr.length; i++) {
+                Object fn = ((Invocable) eng).invokeMethod(fns, "call", null, i); // NOI18N
+                arr[i] = new FnImpl(this, fn, keepAlive[i]);
+            }
+        } catch (ScriptException | NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return arr;
+    }
+
+    private FnImpl defineImpl(String code, String[] names, boolean[] keepAlive) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(function() {\n");
+        sb.append("  return ");
+        appendFn(sb, code, names);
+        sb.append(";\n");
         sb.append("})()\n");
 
         final Object fn;
@@ -138,6 +165,18 @@ Presenter, Fn.FromJavaScript, Fn.ToJavaScript, Executor {
         return new FnImpl(this, fn, keepAlive);
     }
 
+    private static void appendFn(StringBuilder sb, String code, String[] names) {
+        sb.append("function(");
+        String sep = "";
+        if (names != null) for (String n : names) {
+            sb.append(sep).append(n);
+            sep = ",";
+        }
+        sb.append(") {\n");
+        sb.append(code);
+        sb.append("\n  }");
+    }
+
     @Override
     public void displayPage(URL page, Runnable onPageLoad) {
         try {
@@ -375,6 +414,9 @@ Presenter, Fn.FromJavaScript, Fn.ToJavaScript, Executor {
             super(presenter);
             this.fn = fn;
             this.keepAlive = keepAlive;
+            synchronized (functions) {
+                functions.add(this);
+            }
         }
 
         @Override
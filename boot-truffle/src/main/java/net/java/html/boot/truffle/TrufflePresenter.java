@@ -50,6 +50,8 @@ final class TrufflePresenter implements Fn.KeepAlive,
     private final CallTarget isArray;
     private Apply apply;
     private TruffleObject jsNull;
+    /** functions live as long as the presenter */
+    private final List<Fn> functions = new ArrayList<>();
 
     TrufflePresenter(Executor exc, TruffleObject eval) {
         this.exc = exc;
@@ -242,6 +244,9 @@ final class TrufflePresenter implements Fn.KeepAlive,
         public FnImpl(Presenter presenter, TruffleObject fn, int arity) {
             super(presenter);
             this.fn = fn;
+            synchronized (functions) {
+                functions.add(this);
+            }
         }
 
         @Override
@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.boot.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.java.html.js.JavaScriptBody;
+import org.netbeans.html.boot.spi.Fn;
+
+/** Bundle of all {@link JavaScriptBody} functions of a package. Collected
+ * by {@link FnUtils#transform(byte[], java.lang.ClassLoader, org.netbeans.html.boot.impl.FnBundle)}
+ * when classes are processed at build time and stored next to them. At
+ * runtime the first function of the package needed by a presenter
+ * implementing {@link Fn.Bundle} defines all of them at once.
+ *
+ * @since 2.0
+ */
+public final class FnBundle {
+    /** name of the bundle resource in each package */
+    public static final String RESOURCE = "net.java.html.js.bundle"; // NOI18N
+    private static final Logger LOG = Logger.getLogger(FnBundle.class.getName());
+    private static final int MAGIC = 0x4a534642;
+    private static final int VERSION = 1;
+    private static final Map<ClassLoader, Map<String, FnBundle>> CACHE = new WeakHashMap<ClassLoader, Map<String, FnBundle>>();
+    private static final FnBundle NONE = new FnBundle();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    /* @GuardedBy this - functions for each presenter slot, referenced
+     * weakly, presenters keep their functions alive */
+    private Entry[] order;
+    private Reference<Fn>[][] defined;
+
+    /** Creates empty bundle.
+     */
+    public FnBundle() {
+    }
+
+    /** Does the bundle contain any function?
+     * @return true if there are no functions
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    final void add(String id, boolean keepAlive, String code, List<String> names) {
+        entries.put(id, new Entry(id, keepAlive, code, names.toArray(new String[names.size()])));
+    }
+
+    /** Reads functions from a stream. Functions with the same id as
+     * those already in the bundle are ignored.
+     *
+     * @param is the stream produced by {@link #write(java.io.OutputStream)}
+     * @throws IOException if the stream cannot be read or has wrong format
+     */
+    public void read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unknown format of " + RESOURCE);
+        }
+        int cnt = in.readInt();
+        for (int i = 0; i < cnt; i++) {
+            String id = in.readUTF();
+            boolean keepAlive = in.readBoolean();
+            String[] names = new String[in.readInt()];
+            for (int j = 0; j < names.length; j++) {
+                names[j] = in.readUTF();
+            }
+            byte[] code = new byte[in.readInt()];
+            in.readFully(code);
+            if (!entries.containsKey(id)) {
+                entries.put(id, new Entry(id, keepAlive, new String(code, "UTF-8"), names));
+            }
+        }
+    }
+
+    /** Writes all functions of the bundle.
+     *
+     * @param os the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Entry e : entries.values()) {
+            out.writeUTF(e.id);
+            out.writeBoolean(e.keepAlive);
+            out.writeInt(e.names.length);
+            for (String n : e.names) {
+                out.writeUTF(n);
+            }
+            byte[] code = e.code.getBytes("UTF-8");
+            out.writeInt(code.length);
+            out.write(code);
+        }
+        out.flush();
+    }
+
+    /** Finds the function in the bundle of the caller's package.
+     *
+     * @return the function or <code>null</code> if it isn't in any bundle
+     */
+    public static Fn define(Fn.Bundle p, Class<?> caller, String id, String code) {
+        FnBundle b = find(caller);
+        Entry e = b.entries.get(id);
+        if (e == null || !e.code.equals(code)) {
+            return null;
+        }
+        return b.defineAll(p, e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized Fn defineAll(Fn.Bundle p, Entry e) {
+        int slot = FnContext.currentSlot();
+        if (defined != null && slot >= 0 && slot < defined.length) {
+            Reference<Fn>[] all = defined[slot];
+            if (all != null) {
+                Fn fn = all[e.index].get();
+                if (Fn.isValid(fn)) {
+                    return fn;
+                }
+            }
+        }
+        if (order == null) {
+            order = entries.values().toArray(new Entry[entries.size()]);
+            for (int i = 0; i < order.length; i++) {
+                order[i].index = i;
+            }
+        }
+        String[] codes = new String[order.length];
+        String[][] names = new String[order.length][];
+        boolean[][] keepAlive = new boolean[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            codes[i] = order[i].code;
+            names[i] = order[i].names;
+            if (!order[i].keepAlive && names[i].length > 0) {
+                keepAlive[i] = new boolean[names[i].length];
+            }
+        }
+        Fn[] all = p.defineFns(codes, names, keepAlive);
+        if (all == null || all.length != order.length) {
+            return null;
+        }
+        if (slot >= 0) {
+            if (defined == null || defined.length <= slot) {
+                Reference<Fn>[][] arr = new Reference[slot + 1][];
+                if (defined != null) {
+                    System.arraycopy(defined, 0, arr, 0, defined.length);
+                }
+                defined = arr;
+            }
+            Reference<Fn>[] refs = new Reference[all.length];
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = new WeakReference<Fn>(all[i]);
+            }
+            defined[slot] = refs;
+        }
+        return all[e.index];
+    }
+
+    private static FnBundle find(Class<?> caller) {
+        ClassLoader l = caller.getClassLoader();
+        if (l == null) {
+            return NONE;
+        }
+        String className = caller.getName();
+        String pkgName = className.substring(0, className.lastIndexOf('.') + 1).replace('.', '/');
+        synchronized (CACHE) {
+            Map<String, FnBundle> pkgs = CACHE.get(l);
+            if (pkgs == null) {
+                pkgs = new HashMap<String, FnBundle>();
+                CACHE.put(l, pkgs);
+            }
+            FnBundle b = pkgs.get(pkgName);
+            if (b != null) {
+                return b;
+            }
+        }
+        FnBundle b = new FnBundle();
+        try {
+            Enumeration<URL> en = l.getResources(pkgName + RESOURCE);
+            while (en.hasMoreElements()) {
+                InputStream is = en.nextElement().openStream();
+                try {
+                    b.read(is);
+                } finally {
+                    is.close();
+                }
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Cannot read " + pkgName + RESOURCE, ex);
+            b = NONE;
+        }
+        if (b.isEmpty()) {
+            b = NONE;
+        }
+        synchronized (CACHE) {
+            Map<String, FnBundle> pkgs = CACHE.get(l);
+            FnBundle prev = pkgs.get(pkgName);
+            if (prev != null) {
+                return prev;
+            }
+            pkgs.put(pkgName, b);
+        }
+        return b;
+    }
+
+    private static final class Entry {
+        final String id;
+        final boolean keepAlive;
+        final String code;
+        final String[] names;
+        int index;
+
+        Entry(String id, boolean keepAlive, String code, String[] names) {
+            this.id = id;
+            this.keepAlive = keepAlive;
+            this.code = code;
+            this.names = names;
+        }
+    }
+}
@@ -25,8 +25,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.netbeans.html.boot.spi.Fn;
@@ -36,11 +42,9 @@ import org.netbeans.html.boot.spi.Fn;
  * @author Jaroslav Tulach
  */
 public final class FnContext implements Closeable {
-    private static final FnContext DUMMY;
-    static {
-        DUMMY = new FnContext(null, null);
-        DUMMY.prev = DUMMY;
-    }
+    private static final Logger LOG = Logger.getLogger(FnContext.class.getName());
+    private static final boolean DEBUG = Boolean.getBoolean("org.netbeans.html.boot.impl.FnContext.debug"); // NOI18N
+    private static final FnContext DUMMY = new FnContext();
 
     public static URL isJavaScriptCapable(ClassLoader l) {
         if (l instanceof JsClassLoader) {
@@ -87,54 +91,189 @@ public final class FnContext implements Closeable {
         return null;
     }
 
-    private Object prev;
-    private final Fn.Presenter current;
-    private FnContext(Fn.Presenter prevP, Fn.Presenter newP) {
-        this.current = newP;
-        this.prev = prevP;
+    private Active owner;
+    private int index;
+    private int generation;
+    private boolean open;
+    private Fn.Presenter prev;
+    private Fn.Presenter current;
+    private Throwable activated;
+
+    private FnContext() {
     }
 
     @Override
     public void close() throws IOException {
-        if (prev != this) {
-            currentPresenter((Fn.Presenter)prev);
-            prev = this;
-            if (current instanceof Flushable) {
-                ((Flushable)current).flush();
+        close(generation);
+    }
+
+    /** Closes the frame if it still belongs to the activation that
+     * has been stamped with the given generation.
+     */
+    private void close(int stamp) throws IOException {
+        if (!open || stamp != generation) {
+            return;
+        }
+        open = false;
+        Active a = CURRENT.get();
+        if (a == owner) {
+            for (int i = index + 1; i < a.depth; i++) {
+                a.frames[i].leaked();
             }
+            a.depth = index;
+        }
+        currentPresenter(prev);
+        prev = null;
+        Fn.Presenter p = current;
+        current = null;
+        if (p instanceof Flushable) {
+            ((Flushable)p).flush();
         }
     }
-/*
-    @Override
-    protected void finalize() throws Throwable {
-        if (prev != null) {
-            LOG.warning("Unclosed context!");
+
+    private void leaked() {
+        if (open) {
+            open = false;
+            LOG.log(Level.WARNING, "Unclosed context of " + current, activated);
+            prev = null;
+            current = null;
         }
     }
-*/
+
+    /** Activates the presenter. Nothing is allocated when the presenter
+     * is already active. Otherwise a frame is taken from a per-thread
+     * stack of reusable frames. The returned {@link Closeable} must be
+     * closed exactly once. It remembers the generation of the frame, so
+     * closing it again after the frame has been reused does nothing.
+     * Frames left open are reported when an outer frame gets closed.
+     * With {@code -Dorg.netbeans.html.boot.impl.FnContext.debug=true}
+     * frames aren't reused and remember where they have been activated.
+     *
+     * @param newP the presenter to activate
+     * @return closeable to restore the previous presenter
+     */
     public static Closeable activate(Fn.Presenter newP) {
-        final Fn.Presenter oldP = currentPresenter(newP);
+        Active a = CURRENT.get();
+        final Fn.Presenter oldP = a.presenter;
         if (oldP == newP) {
             return DUMMY;
         }
-        return new FnContext(oldP, newP);
+        FnContext f = a.push();
+        f.generation++;
+        f.prev = oldP;
+        f.current = newP;
+        f.open = true;
+        if (DEBUG) {
+            f.activated = new Exception("Activated at");
+        }
+        a.presenter = newP;
+        a.slot = -1;
+        return new Handle(f, f.generation);
     }
-    
-    
-    private static final ThreadLocal<Fn.Presenter> CURRENT = new ThreadLocal<Fn.Presenter>();
+
+    private static final class Handle implements Closeable {
+        private final FnContext frame;
+        private final int generation;
+
+        Handle(FnContext frame, int generation) {
+            this.frame = frame;
+            this.generation = generation;
+        }
+
+        @Override
+        public void close() throws IOException {
+            frame.close(generation);
+        }
+    }
+
+    private static final ThreadLocal<Active> CURRENT = new ThreadLocal<Active>() {
+        @Override
+        protected Active initialValue() {
+            return new Active();
+        }
+    };
 
     public static Fn.Presenter currentPresenter(Fn.Presenter p) {
-        Fn.Presenter prev = CURRENT.get();
-        CURRENT.set(p);
+        Active a = CURRENT.get();
+        Fn.Presenter prev = a.presenter;
+        if (prev != p) {
+            a.presenter = p;
+            a.slot = -1;
+        }
         return prev;
     }
 
     public static Fn.Presenter currentPresenter(boolean fail) {
-        Fn.Presenter p = CURRENT.get();
+        Fn.Presenter p = CURRENT.get().presenter;
         if (p == null && fail) {
             throw new IllegalStateException("No current WebView context around!");
         }
         return p;
     }
-    
+
+    /** Small number identifying the currently active presenter. Slots of
+     * garbage collected presenters are reused.
+     *
+     * @return the slot or <code>-1</code> if there is no active presenter
+     */
+    public static int currentSlot() {
+        Active a = CURRENT.get();
+        if (a.slot == -1 && a.presenter != null) {
+            a.slot = Slot.find(a.presenter);
+        }
+        return a.slot;
+    }
+
+    private static final class Active {
+        Fn.Presenter presenter;
+        int slot = -1;
+        FnContext[] frames = new FnContext[4];
+        int depth;
+
+        FnContext push() {
+            if (depth == frames.length) {
+                FnContext[] arr = new FnContext[depth * 2];
+                System.arraycopy(frames, 0, arr, 0, depth);
+                frames = arr;
+            }
+            FnContext f = frames[depth];
+            if (f == null || DEBUG) {
+                f = new FnContext();
+                f.owner = this;
+                frames[depth] = f;
+            }
+            f.index = depth++;
+            return f;
+        }
+    }
+
+    private static final class Slot extends WeakReference<Fn.Presenter> {
+        private static final Map<Fn.Presenter, Slot> SLOTS = new WeakHashMap<Fn.Presenter, Slot>();
+        private static final ReferenceQueue<Fn.Presenter> QUEUE = new ReferenceQueue<Fn.Presenter>();
+        private static final List<Integer> FREE = new ArrayList<Integer>();
+        private static int next;
+        private final int index;
+
+        private Slot(Fn.Presenter p, int index) {
+            super(p, QUEUE);
+            this.index = index;
+        }
+
+        static synchronized int find(Fn.Presenter p) {
+            for (;;) {
+                Slot gone = (Slot) QUEUE.poll();
+                if (gone == null) {
+                    break;
+                }
+                FREE.add(gone.index);
+            }
+            Slot s = SLOTS.get(p);
+            if (s == null) {
+                int index = FREE.isEmpty() ? next++ : FREE.remove(FREE.size() - 1);
+                s = new Slot(p, index);
+                SLOTS.put(p, s);
+            }
+            return s.index;
+        }
+    }
 }
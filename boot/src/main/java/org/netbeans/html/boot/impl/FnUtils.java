@@ -62,6 +62,22 @@ public final class FnUtils {
      * @since 0.7
      */
     public static byte[] transform(byte[] bytecode, ClassLoader loader) {
+        return transform(bytecode, loader, null);
+    }
+
+    /** Seeks for {@link JavaScriptBody} and {@link JavaScriptResource} annotations
+     * in the bytecode and converts them into real code. Bodies of all the
+     * functions are also added into the provided bundle and the generated
+     * code looks them up there first.
+     *
+     * @param bytecode the original bytecode with javascript specific annotations
+     * @param loader the loader to load resources (scripts and classes) when needed
+     * @param bundle the bundle of the class' package to add functions to
+     *   or <code>null</code>
+     * @return the transformed bytecode
+     * @since 2.0
+     */
+    public static byte[] transform(byte[] bytecode, ClassLoader loader, FnBundle bundle) {
         ClassReader cr = new ClassReader(bytecode) {
             // to allow us to compile with -profile compact1 on 
             // JDK8 while processing the class as JDK7, the highest
@@ -75,11 +91,11 @@ public final class FnUtils {
                 return s;
             }
         };
-        FindInClass tst = new FindInClass(loader, null);
+        FindInClass tst = new FindInClass(loader, null, null);
         cr.accept(tst, 0);
         if (tst.found > 0) {
             ClassWriter w = new ClassWriterEx(loader, cr, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-            FindInClass fic = new FindInClass(loader, w);
+            FindInClass fic = new FindInClass(loader, w, bundle);
             cr.accept(fic, 0);
             bytecode = w.toByteArray();
         }
@@ -118,9 +134,11 @@ public final class FnUtils {
         private int found;
         private int resourcesCnt = 0;
         private final String[] resources = new String[256];
+        private final FnBundle bundle;
 
-        public FindInClass(ClassLoader l, ClassVisitor cv) {
+        public FindInClass(ClassLoader l, ClassVisitor cv, FnBundle bundle) {
             super(Opcodes.ASM5, cv);
+            this.bundle = bundle;
         }
 
         @Override
@@ -227,20 +245,25 @@ public final class FnUtils {
                 super.visitFieldInsn(
                         Opcodes.GETSTATIC, FindInClass.this.name,
                         "$$fn$$" + name + "_" + found,
-                        "Lorg/netbeans/html/boot/spi/Fn;"
+                        "[Ljava/lang/ref/Reference;"
                 );
-                super.visitInsn(Opcodes.DUP);
                 super.visitMethodInsn(
                         Opcodes.INVOKESTATIC,
-                        "org/netbeans/html/boot/spi/Fn", "isValid",
-                        "(Lorg/netbeans/html/boot/spi/Fn;)Z"
+                        "org/netbeans/html/boot/spi/Fn", "find",
+                        "([Ljava/lang/ref/Reference;)Lorg/netbeans/html/boot/spi/Fn;"
                 );
+                super.visitInsn(Opcodes.DUP);
                 Label ifNotNull = new Label();
-                super.visitJumpInsn(Opcodes.IFNE, ifNotNull);
+                super.visitJumpInsn(Opcodes.IFNONNULL, ifNotNull);
 
                 // init Fn
                 super.visitInsn(Opcodes.POP);
                 super.visitLdcInsn(Type.getObjectType(FindInClass.this.name));
+                if (bundle != null) {
+                    String id = FindInClass.this.name + "#" + name + "_" + found;
+                    bundle.add(id, fia.keepAlive, body, args);
+                    super.visitLdcInsn(id);
+                }
                 super.visitInsn(fia.keepAlive ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
                 super.visitLdcInsn(body);
                 super.visitIntInsn(Opcodes.SIPUSH, args.size());
@@ -256,7 +279,8 @@ public final class FnUtils {
                     super.visitInsn(Opcodes.AASTORE);
                 }
                 super.visitMethodInsn(Opcodes.INVOKESTATIC,
-                        "org/netbeans/html/boot/spi/Fn", "define",
+                        "org/netbeans/html/boot/spi/Fn", "define", bundle != null ?
+                        "(Ljava/lang/Class;Ljava/lang/String;ZLjava/lang/String;[Ljava/lang/String;)Lorg/netbeans/html/boot/spi/Fn;" :
                         "(Ljava/lang/Class;ZLjava/lang/String;[Ljava/lang/String;)Lorg/netbeans/html/boot/spi/Fn;"
                 );
                 Label noPresenter = new Label();
@@ -276,10 +300,21 @@ public final class FnUtils {
                     );
                 }
                 super.visitInsn(Opcodes.DUP);
+                super.visitFieldInsn(
+                        Opcodes.GETSTATIC, FindInClass.this.name,
+                        "$$fn$$" + name + "_" + found,
+                        "[Ljava/lang/ref/Reference;"
+                );
+                super.visitInsn(Opcodes.SWAP);
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "org/netbeans/html/boot/spi/Fn", "store",
+                        "([Ljava/lang/ref/Reference;Lorg/netbeans/html/boot/spi/Fn;)[Ljava/lang/ref/Reference;"
+                );
                 super.visitFieldInsn(
                         Opcodes.PUTSTATIC, FindInClass.this.name,
                         "$$fn$$" + name + "_" + found,
-                        "Lorg/netbeans/html/boot/spi/Fn;"
+                        "[Ljava/lang/ref/Reference;"
                 );
                 // end of Fn init
 
@@ -475,9 +510,9 @@ public final class FnUtils {
                         super.visitMaxs(1, 0);
                     }
                     FindInClass.this.superField(
-                            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
+                            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_VOLATILE,
                             "$$fn$$" + name + "_" + found,
-                            "Lorg/netbeans/html/boot/spi/Fn;",
+                            "[Ljava/lang/ref/Reference;",
                             null, null
                     );
                 }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.util.HashMap;
@@ -31,6 +32,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import net.java.html.js.JavaScriptBody;
+import org.netbeans.html.boot.impl.FnBundle;
 import org.netbeans.html.boot.impl.FnContext;
 
 /** Represents single JavaScript function that can be invoked. 
@@ -81,6 +83,60 @@ public abstract class Fn {
         return fnOrNull != null && fnOrNull.isValid();
     }
 
+    /** Finds a function defined for the currently active presenter.
+     * Code generated for {@link JavaScriptBody} methods keeps a cache
+     * of functions, one for each presenter, and uses this method to
+     * look the right one up. Switching between presenters then doesn't
+     * require the function to be defined again.
+     *
+     * @param cache the cache maintained by {@link #store(java.lang.ref.Reference[], org.netbeans.html.boot.spi.Fn)}
+     *   - can be <code>null</code>
+     * @return {@link #isValid() valid} function for the active presenter
+     *   or <code>null</code>
+     * @since 2.0
+     */
+    public static Fn find(Reference<Fn>[] cache) {
+        if (cache == null) {
+            return null;
+        }
+        int slot = FnContext.currentSlot();
+        if (slot < 0 || slot >= cache.length) {
+            return null;
+        }
+        Reference<Fn> ref = cache[slot];
+        Fn fn = ref == null ? null : ref.get();
+        return isValid(fn) ? fn : null;
+    }
+
+    /** Remembers function defined for the currently active presenter
+     * in the cache. The cache references the function weakly, so it
+     * doesn't prevent the presenter from being garbage collected.
+     * A presenter that wants its functions to be defined just once
+     * keeps them referenced for as long as it lives. The cache is
+     * never modified, a new one is returned instead. It can be
+     * published to other threads via a <code>volatile</code> field.
+     *
+     * @param cache the cache or <code>null</code>
+     * @param fn the function defined for the active presenter
+     * @return the cache to use from now on
+     * @since 2.0
+     * @see #find(java.lang.ref.Reference[])
+     */
+    @SuppressWarnings("unchecked")
+    public static Reference<Fn>[] store(Reference<Fn>[] cache, Fn fn) {
+        int slot = FnContext.currentSlot();
+        if (fn == null || slot < 0) {
+            return cache;
+        }
+        int len = cache == null ? 0 : cache.length;
+        Reference<Fn>[] arr = new Reference[Math.max(len, slot + 1)];
+        if (cache != null) {
+            System.arraycopy(cache, 0, arr, 0, len);
+        }
+        arr[slot] = new WeakReference<Fn>(fn);
+        return arr;
+    }
+
     /** Helper method to find current presenter and ask it to define new
      * function by calling {@link Presenter#defineFn(java.lang.String, java.lang.String...)}.
      * 
@@ -126,7 +182,36 @@ public abstract class Fn {
         }
         return p.defineFn(code, names);
     }
-    
+
+    /** Helper method to find current presenter and ask it to define new
+     * function. Classes processed at build time keep all their functions
+     * in a bundle of their package. If the presenter implements
+     * {@link Bundle}, all functions of the bundle are defined at once
+     * when the first of them is requested. Otherwise or if the function
+     * with given <code>id</code> isn't in the bundle, the function is
+     * defined as by {@link #define(java.lang.Class, boolean, java.lang.String, java.lang.String...)}.
+     *
+     * @param caller the class who wishes to define the function
+     * @param id identification of the function in the bundle
+     * @param keepParametersAlive whether Java parameters should survive in JavaScript
+     *   after the method invocation is over
+     * @param code the body of the function (can reference <code>this</code> and <code>names</code> variables)
+     * @param names names of individual parameters
+     * @return the function object that can be {@link Fn#invoke(java.lang.Object, java.lang.Object...) invoked}
+     *    - can return <code>null</code> if there is {@link #activePresenter() no presenter}
+     * @since 2.0
+     */
+    public static Fn define(Class<?> caller, String id, boolean keepParametersAlive, String code, String... names) {
+        final Presenter p = FnContext.currentPresenter(false);
+        if (p instanceof Bundle) {
+            Fn fn = FnBundle.define((Bundle) p, caller, id, code);
+            if (fn != null) {
+                return fn;
+            }
+        }
+        return define(caller, keepParametersAlive, code, names);
+    }
+
     /** Wraps function to ensure that the script represented by <code>resource</code>
      * gets loaded into the browser environment before the function <code>fn</code>
      * is executed.
@@ -250,6 +335,13 @@ public abstract class Fn {
      */
     public interface Presenter {
         /** Creates new function with given parameter names and provided body.
+         * <p>
+         * Since version 2.0 code generated for {@link JavaScriptBody} methods
+         * caches the returned function only {@linkplain WeakReference weakly}
+         * (see {@link Fn#store(java.lang.ref.Reference[], org.netbeans.html.boot.spi.Fn)}).
+         * The presenter is expected to keep the functions it returns
+         * reachable for as long as it lives, otherwise they get garbage
+         * collected and this method is called again to redefine them.
          * 
          * @param code the body of the function. Can refer to variables named
          *   as <code>names</code>
@@ -346,6 +438,35 @@ public abstract class Fn {
         public Fn defineFn(String code, String[] names, boolean[] keepAlive);
     }
 
+    /** Additional interface to {@link Presenter} to define many functions
+     * at once. Classes processed at build time keep bodies of all
+     * {@link JavaScriptBody} methods of their package in a bundle. When
+     * the first function of the bundle is needed, all of them are passed
+     * to {@link #defineFns(java.lang.String[], java.lang.String[][], boolean[][])}
+     * and the presenter can send them to the browser in a single round trip.
+     * <p>
+     * The functions are cached only weakly, just like the result of
+     * {@link Presenter#defineFn(java.lang.String, java.lang.String...)}.
+     * The presenter has to keep all of them reachable, otherwise the
+     * whole bundle is defined again once any of them is garbage collected.
+     *
+     * @since 2.0
+     */
+    public interface Bundle {
+        /** Creates new functions. Parameters are arrays of the same length
+         * and their elements have the same meaning as parameters of
+         * {@link KeepAlive#defineFn(java.lang.String, java.lang.String[], boolean[])}.
+         *
+         * @param codes bodies of the functions
+         * @param names names of parameters of each function
+         * @param keepAlive whether parameters of each function should be
+         *   kept alive - an element may be <code>null</code> to signal that
+         *   all parameters of the function should be <em>kept alive</em>
+         * @return functions in the same order as <code>codes</code>
+         */
+        public Fn[] defineFns(String[] codes, String[][] names, boolean[][] keepAlive);
+    }
+
     /**
      * Reference to a {@link Presenter}.Each implementation of a {@link Presenter}
      * may choose a way to reference itself (usually in a {@linkplain WeakReference weak way})
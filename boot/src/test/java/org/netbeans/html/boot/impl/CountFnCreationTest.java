@@ -21,14 +21,20 @@ package org.netbeans.html.boot.impl;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import net.java.html.js.JavaScriptBody;
 import net.java.html.js.JavaScriptResource;
 import org.netbeans.html.boot.spi.Fn;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
 import org.testng.annotations.Test;
 
 /**
@@ -38,11 +44,81 @@ import org.testng.annotations.Test;
 @JavaScriptResource("empty.js")
 public class CountFnCreationTest implements Fn.Presenter {
     private int cnt;
+    private final List<Fn> functions = new ArrayList<Fn>();
     
     @JavaScriptBody(args = {}, body = "return;")
     public static native void body();
     
     @Test public void countManyTimes() throws Exception {
+        Method m = loadBody();
+        Closeable c = Fn.activate(this);
+        try {
+            assertEquals(cnt, 0, "No functions yet");
+            m.invoke(null);
+            assertEquals(cnt, 1, "One function defined");
+            m.invoke(null);
+            assertEquals(cnt, 1, "Still one function");
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test public void alternatingPresentersDefineOnce() throws Exception {
+        Method m = loadBody();
+        CountFnCreationTest one = new CountFnCreationTest();
+        CountFnCreationTest two = new CountFnCreationTest();
+        for (int i = 0; i < 10; i++) {
+            CountFnCreationTest p = i % 2 == 0 ? one : two;
+            Closeable c = Fn.activate(p);
+            try {
+                m.invoke(null);
+            } finally {
+                c.close();
+            }
+        }
+        assertEquals(one.cnt, 1, "One function for the first presenter");
+        assertEquals(two.cnt, 1, "One function for the second presenter");
+    }
+
+    @Test public void collectedPresenterReleasesItsSlot() throws Exception {
+        Method m = loadBody();
+        CountFnCreationTest p = new CountFnCreationTest();
+        int slot;
+        Closeable c = Fn.activate(p);
+        try {
+            m.invoke(null);
+            slot = FnContext.currentSlot();
+        } finally {
+            c.close();
+        }
+        assertEquals(p.cnt, 1, "Function defined");
+        Reference<?> ref = new WeakReference<java.lang.Object>(p);
+        p = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        assertNull(ref.get(), "Presenter held only by its functions can be collected");
+
+        List<CountFnCreationTest> others = new ArrayList<CountFnCreationTest>();
+        for (int i = 0; i < 1000; i++) {
+            CountFnCreationTest other = new CountFnCreationTest();
+            others.add(other);
+            c = Fn.activate(other);
+            try {
+                if (FnContext.currentSlot() == slot) {
+                    m.invoke(null);
+                    assertEquals(other.cnt, 1, "New presenter defines its own function");
+                    return;
+                }
+            } finally {
+                c.close();
+            }
+        }
+        fail("Slot " + slot + " hasn't been reused");
+    }
+
+    private Method loadBody() throws Exception {
         class Res implements FindResources {
             @Override
             public void findResources(String path, Collection<? super URL> results, boolean oneIsEnough) {
@@ -58,23 +134,15 @@ public class CountFnCreationTest implements Fn.Presenter {
             }
         }
         ClassLoader l = FnUtils.newLoader(new Res(), this, CountFnCreationTest.class.getClassLoader().getParent());
-        Method m = l.loadClass(CountFnCreationTest.class.getName()).getMethod("body");
-        Closeable c = Fn.activate(this);
-        try {
-            assertEquals(cnt, 0, "No functions yet");
-            m.invoke(null);
-            assertEquals(cnt, 1, "One function defined");
-            m.invoke(null);
-            assertEquals(cnt, 1, "Still one function");
-        } finally {
-            c.close();
-        }
+        return l.loadClass(CountFnCreationTest.class.getName()).getMethod("body");
     }
 
     @Override
     public Fn defineFn(String code, String... names) {
         cnt++;
-        return new MyFn(this);
+        Fn fn = new MyFn(this);
+        functions.add(fn);
+        return fn;
     }
 
     @Override
@@ -86,9 +154,12 @@ public class CountFnCreationTest implements Fn.Presenter {
     }
     
     private static final class MyFn extends Fn {
+        /** references the presenter strongly like functions of real presenters do */
+        private final Presenter owner;
 
         public MyFn(Presenter presenter) {
             super(presenter);
+            this.owner = presenter;
         }
 
         @Override
@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.boot.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import net.java.html.js.JavaScriptBody;
+import org.netbeans.html.boot.spi.Fn;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Functions of processed classes are defined all at once.
+ */
+public class FnBundleTest implements Fn.Presenter, Fn.Bundle {
+    private int single;
+    private int bundles;
+    private int defined;
+    private final List<Fn> functions = new ArrayList<Fn>();
+
+    @JavaScriptBody(args = {}, body = "return 1;")
+    public static native java.lang.Object one();
+
+    @JavaScriptBody(args = { "x" }, body = "return x;")
+    public static native java.lang.Object two(java.lang.Object x);
+
+    @JavaScriptBody(args = { "x" }, body = "return 3;", keepAlive = false)
+    public static native java.lang.Object three(java.lang.Object x);
+
+    @BeforeMethod public void resetCounters() {
+        single = 0;
+        bundles = 0;
+        defined = 0;
+    }
+
+    @Test public void allFunctionsAreDefinedAtOnce() throws Exception {
+        FnBundle bundle = new FnBundle();
+        Class<?> clazz = load(bundle, true);
+        Closeable c = Fn.activate(this);
+        try {
+            assertEquals(clazz.getMethod("two", java.lang.Object.class).invoke(null, "x"), "return x;");
+            assertEquals(bundles, 1, "One bundle");
+            assertEquals(defined, 3, "All functions of the class defined");
+            assertEquals(clazz.getMethod("one").invoke(null), "return 1;");
+            assertEquals(clazz.getMethod("three", java.lang.Object.class).invoke(null, "x"), "return 3;");
+            assertEquals(bundles, 1, "Still one bundle");
+            assertEquals(single, 0, "No function defined separately");
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test public void bundleIsDefinedOnceEvenAfterGarbageCollection() throws Exception {
+        Class<?> clazz = load(new FnBundle(), true);
+        Closeable c = Fn.activate(this);
+        try {
+            assertEquals(clazz.getMethod("one").invoke(null), "return 1;");
+            for (int i = 0; i < 5; i++) {
+                System.gc();
+                System.runFinalization();
+            }
+            assertEquals(clazz.getMethod("two", java.lang.Object.class).invoke(null, "x"), "return x;");
+            assertEquals(bundles, 1, "Bundle read and defined just once");
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test public void eachPresenterGetsItsBundle() throws Exception {
+        Method m = load(new FnBundle(), true).getMethod("one");
+        FnBundleTest other = new FnBundleTest();
+        for (int i = 0; i < 6; i++) {
+            FnBundleTest p = i % 2 == 0 ? this : other;
+            Closeable c = Fn.activate(p);
+            try {
+                assertEquals(m.invoke(null), "return 1;");
+            } finally {
+                c.close();
+            }
+        }
+        assertEquals(bundles, 1, "One bundle for the first presenter");
+        assertEquals(other.bundles, 1, "One bundle for the second presenter");
+    }
+
+    @Test public void withoutBundleFunctionsAreDefinedOneByOne() throws Exception {
+        Class<?> clazz = load(new FnBundle(), false);
+        Closeable c = Fn.activate(this);
+        try {
+            assertEquals(clazz.getMethod("one").invoke(null), "return 1;");
+            assertEquals(clazz.getMethod("three", java.lang.Object.class).invoke(null, "x"), "return 3;");
+        } finally {
+            c.close();
+        }
+        assertEquals(bundles, 0, "No bundle");
+        assertEquals(single, 2, "Functions defined separately");
+    }
+
+    @Test public void writeAndRead() throws Exception {
+        FnBundle bundle = new FnBundle();
+        assertTrue(bundle.isEmpty());
+        bundle.add("A#a_1", true, "return 'ěščř';", Arrays.asList("x", "vm"));
+        bundle.add("A#b_2", false, "return;", Collections.<String>emptyList());
+        byte[] data = toBytes(bundle);
+
+        FnBundle copy = new FnBundle();
+        copy.read(new ByteArrayInputStream(data));
+        assertEquals(toBytes(copy), data, "Same content");
+
+        FnBundle other = new FnBundle();
+        other.add("A#b_2", true, "return 2;", Collections.<String>emptyList());
+        other.read(new ByteArrayInputStream(data));
+        FnBundle expected = new FnBundle();
+        expected.add("A#b_2", true, "return 2;", Collections.<String>emptyList());
+        expected.add("A#a_1", true, "return 'ěščř';", Arrays.asList("x", "vm"));
+        assertEquals(toBytes(other), toBytes(expected), "Known functions aren't replaced");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void wrongFormat() throws Exception {
+        new FnBundle().read(new ByteArrayInputStream(new byte[16]));
+    }
+
+    private static byte[] toBytes(FnBundle bundle) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        bundle.write(os);
+        return os.toByteArray();
+    }
+
+    private static Class<?> load(FnBundle bundle, boolean provideBundle) throws Exception {
+        InputStream is = FnBundleTest.class.getResourceAsStream("FnBundleTest.class");
+        assertNotNull(is, "Bytecode found");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] arr = new byte[4096];
+        for (;;) {
+            int len = is.read(arr);
+            if (len == -1) {
+                break;
+            }
+            os.write(arr, 0, len);
+        }
+        is.close();
+        BundleLoader l = new BundleLoader(FnBundleTest.class.getClassLoader());
+        l.bytecode = FnUtils.transform(os.toByteArray(), l, bundle);
+        if (provideBundle) {
+            File f = File.createTempFile("fns", ".bundle");
+            f.deleteOnExit();
+            FileOutputStream out = new FileOutputStream(f);
+            bundle.write(out);
+            out.close();
+            l.bundle = f.toURI().toURL();
+        }
+        Class<?> clazz = l.loadClass(FnBundleTest.class.getName());
+        assertEquals(clazz.getClassLoader(), l, "Processed class");
+        return clazz;
+    }
+
+    @Override
+    public Fn defineFn(String code, String... names) {
+        single++;
+        Fn fn = new MyFn(this, code);
+        functions.add(fn);
+        return fn;
+    }
+
+    @Override
+    public Fn[] defineFns(String[] codes, String[][] names, boolean[][] keepAlive) {
+        bundles++;
+        Fn[] arr = new Fn[codes.length];
+        for (int i = 0; i < arr.length; i++) {
+            defined++;
+            if (codes[i].equals("return 3;")) {
+                assertNotNull(keepAlive[i], "Parameters of three() aren't kept alive");
+            } else {
+                assertNull(keepAlive[i], "Keep parameters alive");
+            }
+            arr[i] = new MyFn(this, codes[i]);
+            functions.add(arr[i]);
+        }
+        return arr;
+    }
+
+    @Override
+    public void displayPage(URL page, Runnable onPageLoad) {
+    }
+
+    @Override
+    public void loadScript(Reader code) throws Exception {
+    }
+
+    private static final class MyFn extends Fn {
+        private final String code;
+
+        MyFn(Presenter presenter, String code) {
+            super(presenter);
+            this.code = code;
+        }
+
+        @Override
+        public java.lang.Object invoke(java.lang.Object thiz, java.lang.Object... args) throws Exception {
+            return code;
+        }
+    }
+
+    private static final class BundleLoader extends ClassLoader {
+        byte[] bytecode;
+        URL bundle;
+
+        BundleLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(FnBundleTest.class.getName())) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    c = defineClass(name, bytecode, 0, bytecode.length);
+                }
+                return c;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            if (name.equals("org/netbeans/html/boot/impl/" + FnBundle.RESOURCE)) {
+                return bundle == null ? Collections.enumeration(Collections.<URL>emptyList()) : Collections.enumeration(Collections.singleton(bundle));
+            }
+            return super.getResources(name);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.boot.impl;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.net.URL;
+import org.netbeans.html.boot.spi.Fn;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import org.testng.annotations.Test;
+
+public class FnContextTest {
+    @Test
+    public void nestedActivationsAreRestored() throws Exception {
+        P one = new P();
+        P two = new P();
+        Closeable c1 = Fn.activate(one);
+        Closeable c2 = Fn.activate(two);
+        assertSame(Fn.activePresenter(), two);
+        assertSame(Fn.activate(two), Fn.activate(two), "Nothing allocated for active presenter");
+        c2.close();
+        assertSame(Fn.activePresenter(), one);
+        c2.close();
+        assertSame(Fn.activePresenter(), one, "Second close is ignored");
+        c1.close();
+        assertNull(Fn.activePresenter());
+    }
+
+    @Test
+    public void repeatedActivationDoesNotGrow() throws Exception {
+        P one = new P();
+        P two = new P();
+        for (int i = 0; i < 10000; i++) {
+            Closeable c1 = Fn.activate(one);
+            Closeable c2 = Fn.activate(two);
+            assertSame(Fn.activePresenter(), two);
+            c2.close();
+            c1.close();
+        }
+        assertNull(Fn.activePresenter());
+    }
+
+    @Test
+    public void unclosedInnerFrameIsDropped() throws Exception {
+        P one = new P();
+        P two = new P();
+        Closeable c1 = Fn.activate(one);
+        Closeable c2 = Fn.activate(two);
+        c1.close();
+        assertNull(Fn.activePresenter());
+        c2.close();
+        assertNull(Fn.activePresenter(), "Late close of leaked frame does nothing");
+
+        Closeable c3 = Fn.activate(two);
+        assertSame(Fn.activePresenter(), two);
+        c3.close();
+        assertNull(Fn.activePresenter());
+    }
+
+    @Test
+    public void lateCloseOfReusedFrameIsIgnored() throws Exception {
+        P one = new P();
+        P two = new P();
+        Closeable c1 = Fn.activate(one);
+        c1.close();
+        assertNull(Fn.activePresenter());
+
+        Closeable c2 = Fn.activate(two);
+        assertSame(Fn.activePresenter(), two);
+        c1.close();
+        assertSame(Fn.activePresenter(), two, "Stale close doesn't deactivate the new frame");
+        c2.close();
+        assertNull(Fn.activePresenter());
+    }
+
+    private static final class P implements Fn.Presenter {
+        @Override
+        public Fn defineFn(String code, String... names) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void displayPage(URL page, Runnable onPageLoad) {
+        }
+
+        @Override
+        public void loadScript(Reader code) throws Exception {
+        }
+    }
+}
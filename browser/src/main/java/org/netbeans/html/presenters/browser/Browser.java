@@ -19,31 +19,37 @@
 package org.netbeans.html.presenters.browser;
 
 import org.netbeans.html.presenters.render.Show;
+import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.Flushable;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.PortRange;
+import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.grizzly.http.server.NetworkListener;
@@ -74,9 +80,15 @@ import org.openide.util.lookup.ServiceProvider;
 public final class Browser implements Fn.Presenter, Fn.KeepAlive, Flushable,
 Executor, Closeable {
     static final Logger LOG = Logger.getLogger(Browser.class.getName());
-    private final Map<String,Command> SESSIONS = new HashMap<String, Command>();
+    /** Sessions without any request for this time are evicted. */
+    static final long IDLE_TIMEOUT = 60000;
+    private static final long SWEEP_PERIOD = 10000;
+    private final Map<String,Command> SESSIONS = new ConcurrentHashMap<String, Command>();
+    /** number of registered sessions, reserved before they are put into {@link #SESSIONS} */
+    private final AtomicInteger sessionCount = new AtomicInteger();
     private final String app;
     private HttpServer s;
+    private ScheduledFuture<?> sweeper;
     private Runnable onPageLoad;
     private Command current;
     private final Config config;
@@ -126,9 +138,52 @@ Executor, Closeable {
 
     @Override
     public void close() throws IOException {
+        if (sweeper != null) {
+            sweeper.cancel(false);
+        }
         s.shutdownNow();
     }
 
+    /** Keeps connected sessions alive and evicts those that are idle
+     * longer than {@link #IDLE_TIMEOUT}.
+     */
+    final void sweep(long now) {
+        for (Iterator<Command> it = SESSIONS.values().iterator(); it.hasNext();) {
+            Command c = it.next();
+            if (c.idle(now) > IDLE_TIMEOUT) {
+                LOG.log(Level.FINE, "Evicting idle session {0}", c.id);
+                it.remove();
+                sessionCount.decrementAndGet();
+                c.close();
+            } else {
+                c.heartbeat();
+            }
+        }
+    }
+
+    final int sessions() {
+        return SESSIONS.size();
+    }
+
+    /** Registers new session unless there is too many of them.
+     * @return {@code false} if the session cannot be registered
+     */
+    final boolean register(Command cmd) {
+        final int max = config.getMaxSessions();
+        for (;;) {
+            int cnt = sessionCount.get();
+            if (cnt >= max) {
+                LOG.log(Level.WARNING, "Too many sessions: {0}", cnt);
+                return false;
+            }
+            if (sessionCount.compareAndSet(cnt, cnt + 1)) {
+                break;
+            }
+        }
+        SESSIONS.put(cmd.id, cmd);
+        return true;
+    }
+
     HttpServer server() {
         return s;
     }
@@ -229,6 +284,7 @@ Executor, Closeable {
             this.onPageLoad = onPageLoad;
             s = server(new RootPage(page), config);
             s.start();
+            sweeper = Pool.SWEEPER.scheduleWithFixedDelay(() -> sweep(System.currentTimeMillis()), SWEEP_PERIOD, SWEEP_PERIOD, TimeUnit.MILLISECONDS);
             show(pageURL("http", s, "/"));
         } catch (IOException ex) {
             Logger.getLogger(Browser.class.getName()).log(Level.SEVERE, null, ex);
@@ -243,6 +299,8 @@ Executor, Closeable {
     public final static class Config {
         String browser;
         Integer port;
+        Boolean events;
+        Integer maxSessions;
 
         /**
          * Default constructor.
@@ -253,6 +311,8 @@ Executor, Closeable {
         private Config(Config copy) {
             this.browser = copy.browser;
             this.port = copy.port;
+            this.events = copy.events;
+            this.maxSessions = copy.maxSessions;
         }
 
         /** The command to use when invoking a browser. Possible values:
@@ -288,6 +348,37 @@ Executor, Closeable {
             this.port = port;
             return this;
         }
+
+        /** Use <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">server-sent events</a>
+         * to deliver commands to the browser and send calls from the
+         * browser as <code>POST</code> requests. Browsers without
+         * <code>EventSource</code> fall back to long polling. By default
+         * the value of <code>com.dukescript.presenters.browserEvents</code>
+         * property is used, otherwise long polling is used.
+         *
+         * @param enable <code>true</code> to use server-sent events
+         * @return this instance
+         * @since 2.0
+         */
+        public Config serverSentEvents(boolean enable) {
+            this.events = enable;
+            return this;
+        }
+
+        /** Maximal number of simultaneously opened pages. When reached,
+         * new connections are rejected until some of the existing sessions
+         * disconnects and is evicted. By default the value of
+         * <code>com.dukescript.presenters.browserSessions</code> property
+         * is used, otherwise the number of sessions isn't limited.
+         *
+         * @param max the maximal number of sessions
+         * @return this instance
+         * @since 2.0
+         */
+        public Config maxSessions(int max) {
+            this.maxSessions = max;
+            return this;
+        }
         
         final String getBrowser() {
             if (browser != null) {
@@ -307,6 +398,119 @@ Executor, Closeable {
                 return -1;
             }
         }
+
+        final int getMaxSessions() {
+            if (maxSessions != null) {
+                return maxSessions;
+            }
+            return Integer.getInteger("com.dukescript.presenters.browserSessions", Integer.MAX_VALUE); // NOI18N
+        }
+
+        final boolean useEvents() {
+            if (events != null) {
+                return events;
+            }
+            return Boolean.getBoolean("com.dukescript.presenters.browserEvents"); // NOI18N
+        }
+    }
+
+    /** Frames a message as one server-sent event. Every line of
+     * the message is sent as a <code>data</code> field, the browser
+     * joins them back with new lines. The <code>id</code> is reported
+     * back by the browser when it reconnects.
+     */
+    static String event(long id, String msg) {
+        StringBuilder sb = new StringBuilder(msg.length() + 32);
+        sb.append("id: ").append(id).append('\n');
+        int at = 0;
+        for (;;) {
+            int nl = at;
+            while (nl < msg.length() && msg.charAt(nl) != '\n' && msg.charAt(nl) != '\r') {
+                nl++;
+            }
+            sb.append("data: ").append(msg, at, nl).append('\n');
+            if (nl == msg.length()) {
+                break;
+            }
+            if (msg.charAt(nl) == '\r' && nl + 1 < msg.length() && msg.charAt(nl + 1) == '\n') {
+                nl++;
+            }
+            at = nl + 1;
+        }
+        return sb.append('\n').toString();
+    }
+
+    /** Server-sent events of one session. Each event gets an id and is
+     * kept until the page acknowledges it, either by the
+     * <code>Last-Event-ID</code> header of a reconnected stream or by
+     * the <code>seen</code> parameter of a call. Events the page hasn't
+     * seen are sent again when the stream reconnects.
+     */
+    static final class Events {
+        private final Deque<String> unacknowledged = new LinkedList<>();
+        private long acknowledged;
+
+        /** Assigns next id to the message and remembers it.
+         * @return the message framed as an event
+         */
+        String send(String msg) {
+            unacknowledged.add(msg);
+            return event(acknowledged + unacknowledged.size(), msg);
+        }
+
+        /** Forgets events up to given id.
+         * @param lastId id of the last event the page has seen or <code>null</code>
+         */
+        void acknowledge(String lastId) {
+            long id;
+            try {
+                id = Long.parseLong(lastId);
+            } catch (NumberFormatException ex) {
+                return;
+            }
+            while (acknowledged < id && !unacknowledged.isEmpty()) {
+                unacknowledged.poll();
+                acknowledged++;
+            }
+        }
+
+        /** @return the events the page hasn't seen, framed again */
+        String replay() {
+            StringBuilder sb = new StringBuilder();
+            long id = acknowledged;
+            for (String msg : unacknowledged) {
+                sb.append(event(++id, msg));
+            }
+            return sb.toString();
+        }
+
+        /** Gives up on the stream.
+         * @return messages the page hasn't seen
+         */
+        List<String> abandon() {
+            List<String> lost = new ArrayList<>(unacknowledged);
+            acknowledged += unacknowledged.size();
+            unacknowledged.clear();
+            return lost;
+        }
+    }
+
+    /** Decodes arguments of a call sent as body of <code>POST</code>
+     * request. Each argument is prefixed by its length and a colon.
+     */
+    static List<String> decodeArgs(CharSequence body) {
+        List<String> args = new ArrayList<String>();
+        int at = 0;
+        while (at < body.length()) {
+            int colon = at;
+            while (body.charAt(colon) != ':') {
+                colon++;
+            }
+            int len = Integer.parseInt(body.subSequence(at, colon).toString());
+            at = colon + 1 + len;
+            args.add(body.subSequence(colon + 1, at).toString());
+        }
+        return args;
     }
     
     static void cors(Response r) {
@@ -319,6 +523,7 @@ Executor, Closeable {
 
     private final class RootPage extends HttpHandler {
         private final URL page;
+        private final Resources resources = new Resources(64 * 1024 * 1024);
 
         public RootPage(URL page) {
             this.page = page;
@@ -335,7 +540,7 @@ Executor, Closeable {
                 rspns.setContentType("text/html");
                 final Command cmd = new Command(Browser.this, prefix);
                 try {
-                    is = new InputStreamReader(page.openStream());
+                    is = new BufferedReader(new InputStreamReader(page.openStream()));
                 } catch (IOException ex) {
                     w.write("<html><body>");
                     w.write("<h1>Browser</h1>");
@@ -345,7 +550,13 @@ Executor, Closeable {
                     w.close();
                     return;
                 }
-                SESSIONS.put(cmd.id, cmd);
+                if (!register(cmd)) {
+                    is.close();
+                    rspns.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+                    w.write("Too many sessions");
+                    w.close();
+                    return;
+                }
                 int state = 0;
                 for (;;) {
                     int ch = is.read();
@@ -391,23 +602,11 @@ Executor, Closeable {
                     path = path.substring(1);
                 }
                 URL relative = new URL(page, path);
-                InputStream is;
                 try {
-                    is = relative.openStream();
+                    resources.serve(relative, rqst, rspns);
                 } catch (FileNotFoundException ex) {
                     rspns.setStatus(HttpStatus.NOT_FOUND_404);
-                    return;
-                }
-                OutputStream out = rspns.getOutputStream();
-                for (;;) {
-                    int b = is.read();
-                    if (b == -1) {
-                        break;
-                    }
-                    out.write(b);
                 }
-                out.close();
-                is.close();
             }
         }
 
@@ -445,8 +644,39 @@ Executor, Closeable {
                     + "    waitForCommand();\n"
                     + "  }\n"
                     + "}\n"
-                    + "waitForCommand();\n"
             );
+            if (config.useEvents()) {
+                w.write(""
+                    + "(function() {\n"
+                    + "  if (typeof EventSource === 'undefined') {\n"
+                    + "    waitForCommand();\n"
+                    + "    return;\n"
+                    + "  }\n"
+                    + "  var connected = false;\n"
+                    + "  var source = new EventSource('" + prefix + "command.js?id=" + id + "&events=true');\n"
+                    + "  source.onmessage = function(ev) {\n"
+                    + "    connected = true;\n"
+                    + "    waitForCommand.seen = ev.lastEventId;\n"
+                    + "    try {\n"
+                    + "      var cmd = document.getElementById('cmd');\n"
+                    + "      if (cmd) cmd.innerHTML = ev.data.substring(0,80);\n"
+                    + "      (0 || eval)(ev.data);\n"
+                    + "    } catch (e) {\n"
+                    + "      console.warn(e);\n"
+                    + "    }\n"
+                    + "  };\n"
+                    + "  source.onerror = function(ev) {\n"
+                    + "    console.warn(ev);\n"
+                    + "    if (!connected) {\n"
+                    + "      source.close();\n"
+                    + "      waitForCommand();\n"
+                    + "    }\n"
+                    + "  };\n"
+                    + "})();\n"
+                );
+            } else {
+                w.write("waitForCommand();\n");
+            }
             w.write("  </script>\n");
         }
     }
@@ -478,20 +708,55 @@ Executor, Closeable {
         return "org.netbeans.html"; // NOI18N
     }
     
-    private static final class Command extends Object
-    implements Executor, ThreadFactory {
-        private final Queue<Object> exec;
+    /** Threads shared by all sessions. Uses virtual threads when
+     * running on JDK 21 and newer.
+     */
+    private static final class Pool implements ThreadFactory {
+        static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(new Pool("Browser sessions sweeper"));
+        static final Executor EXECUTOR = createExecutor();
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private Pool(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name + " " + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+
+        private static Executor createExecutor() {
+            try {
+                java.lang.reflect.Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); // NOI18N
+                return (Executor) virtual.invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                return Executors.newCachedThreadPool(new Pool("Browser processor"));
+            }
+        }
+    }
+
+    static final class Command extends Object
+    implements Executor {
+        private final Deque<Object> exec;
         private final Browser browser;
         private final String id;
         private final String prefix;
-        private final Executor RUN;
-        private Thread RUNNER;
+        private final Queue<Runnable> tasks = new LinkedList<>();
+        private boolean running;
+        private volatile Thread RUNNER;
+        private volatile long lastAccess;
+        private final AtomicInteger requests = new AtomicInteger();
         private Response suspended;
+        private Response events;
+        private final Events sent = new Events();
         private boolean initialized;
         private final ProtoPresenter presenter;
 
         Command(Browser browser, String prefix) {
-            this.RUN = Executors.newSingleThreadExecutor(this);
+            this.lastAccess = System.currentTimeMillis();
             this.id = UUID.randomUUID().toString();
             this.exec = new LinkedList<>();
             this.prefix = prefix;
@@ -499,6 +764,7 @@ Executor, Closeable {
             this.presenter = ProtoPresenterBuilder.newBuilder().
                 preparator(this::callbackFn, true).
                 loadJavaScript(this::loadJS, false).
+                batch(2, 64 * 1024).
                 app(browser.app).
                 dispatcher(this, true).
                 displayer(this::displayPage).
@@ -508,52 +774,120 @@ Executor, Closeable {
                 build();
         }
 
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(r, "Processor for " + id);
-            RUNNER = t;
-            return t;
-        }
-
         @Override
         public final void execute(final Runnable r) {
             runSafe(r, true);
         }
         
         final void runSafe(final Runnable r, final boolean context) {
-            class Wrap implements Runnable {
-                @Override
-                public void run() {
-                    if (context) {
-                        Closeable c = Fn.activate(Command.this.presenter);
-                        try {
-                            r.run();
-                        } finally {
-                            try {
-                                c.close();
-                            } catch (IOException ex) {
-                                // ignore
-                            }
-                        }
-                    } else {
-                        r.run();
-                    }
-                }
-            }
             if (RUNNER == Thread.currentThread()) {
                 if (context) {
-                    Runnable w = new Wrap();
-                    w.run();
+                    runActivated(r);
                 } else {
                     r.run();
                 }
             } else {
-                Runnable w = new Wrap();
-                RUN.execute(w);
+                schedule(context ? () -> runActivated(r) : r);
+            }
+        }
+
+        private void runActivated(Runnable r) {
+            Closeable c = Fn.activate(presenter);
+            try {
+                r.run();
+            } finally {
+                try {
+                    c.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+
+        /** Runs tasks of this session one by one in the shared pool. */
+        private void schedule(Runnable r) {
+            synchronized (tasks) {
+                tasks.add(r);
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            Pool.EXECUTOR.execute(this::drain);
+        }
+
+        private void drain() {
+            RUNNER = Thread.currentThread();
+            for (;;) {
+                Runnable r;
+                synchronized (tasks) {
+                    r = tasks.poll();
+                    if (r == null) {
+                        RUNNER = null;
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    r.run();
+                } catch (RuntimeException | Error ex) {
+                    LOG.log(Level.SEVERE, "Error in " + id, ex);
+                }
+            }
+        }
+
+        /** @return milliseconds since last request or zero when a request is being processed */
+        final long idle(long now) {
+            if (requests.get() > 0) {
+                return 0;
+            }
+            return now - lastAccess;
+        }
+
+        /** Makes sure connected page reacts: wakes up pending long poll
+         * and checks that stream of events can still be written to.
+         */
+        final synchronized void heartbeat() {
+            if (events != null) {
+                try {
+                    Writer w = events.getWriter();
+                    w.write(":\n\n");
+                    w.flush();
+                    lastAccess = System.currentTimeMillis();
+                } catch (IOException ex) {
+                    LOG.log(Level.FINE, "Events stream closed for " + id, ex);
+                    events = null;
+                }
+            }
+            if (suspended != null) {
+                suspended.resume();
+                suspended = null;
+            }
+        }
+
+        final synchronized void close() {
+            if (events != null) {
+                events.resume();
+                events = null;
+            }
+            if (suspended != null) {
+                suspended.resume();
+                suspended = null;
             }
         }
         
         final synchronized void add(Object obj) {
+            if (events != null) {
+                try {
+                    Writer w = events.getWriter();
+                    w.write(sent.send(obj.toString()));
+                    w.flush();
+                } catch (IOException ex) {
+                    LOG.log(Level.INFO, "Cannot send event", ex);
+                    events = null;
+                }
+                return;
+            }
             if (suspended != null) {
                 try {
                     suspended.getWriter().write(obj.toString());
@@ -568,6 +902,15 @@ Executor, Closeable {
         }
         
         private synchronized Object take(Response rspns) {
+            if (events != null) {
+                LOG.log(Level.INFO, "Falling back to long polling for {0}", id);
+                events.resume();
+                events = null;
+            }
+            List<String> lost = sent.abandon();
+            for (int i = lost.size() - 1; i >= 0; i--) {
+                exec.addFirst(lost.get(i));
+            }
             Object o = exec.poll();
             if (o != null) {
                 return o;
@@ -576,15 +919,63 @@ Executor, Closeable {
             rspns.suspend();
             return null;
         }
+
+        /** Keeps the response open and uses it to stream all commands
+         * as server-sent events. When the browser reconnects, events
+         * sent after the last one it has seen are sent again.
+         *
+         * @param lastEventId value of <code>Last-Event-ID</code> header or <code>null</code>
+         */
+        private synchronized void listen(Response rspns, String lastEventId) throws IOException {
+            rspns.setContentType("text/event-stream");
+            rspns.setHeader("Cache-Control", "no-cache");
+            rspns.suspend();
+            Writer w = rspns.getWriter();
+            sent.acknowledge(lastEventId);
+            w.write(sent.replay());
+            for (;;) {
+                Object o = exec.poll();
+                if (o == null) {
+                    break;
+                }
+                w.write(sent.send(o.toString()));
+            }
+            w.flush();
+            if (events != null) {
+                events.resume();
+            }
+            events = rspns;
+        }
         
+        private synchronized void acknowledge(String lastEventId) {
+            sent.acknowledge(lastEventId);
+        }
+
         void service(Request rqst, Response rspns) throws Exception {
+            requests.incrementAndGet();
+            try {
+                serviceImpl(rqst, rspns);
+            } finally {
+                lastAccess = System.currentTimeMillis();
+                requests.decrementAndGet();
+            }
+        }
+
+        private void serviceImpl(Request rqst, Response rspns) throws Exception {
             final String methodName = rqst.getParameter("name");
-            Writer w = rspns.getWriter();
             if (methodName == null) {
                 if (!initialized) {
                     initialized = true;
                     execute(browser.onPageLoad);
                 }
+                if ("true".equals(rqst.getParameter("events"))) {
+                    listen(rspns, rqst.getHeader("Last-Event-ID"));
+                    LOG.log(Level.FINE, "Streaming events to {0}", rspns);
+                    return;
+                }
+            }
+            Writer w = rspns.getWriter();
+            if (methodName == null) {
                 // send new request
                 Object obj = take(rspns);
                 if (obj == null) {
@@ -595,13 +986,20 @@ Executor, Closeable {
                 w.write(s);
                 LOG.log(Level.FINE, "Exec global: {0}", s);
             } else {
-                List<String> args = new ArrayList<String>();
-                for (;;) {
-                    String p = rqst.getParameter("p" + args.size());
-                    if (p == null) {
-                        break;
+                acknowledge(rqst.getParameter("seen"));
+                List<String> args;
+                if (Method.POST.equals(rqst.getMethod())) {
+                    rqst.setCharacterEncoding("UTF-8");
+                    args = decodeArgs(readBody(rqst.getReader()));
+                } else {
+                    args = new ArrayList<String>();
+                    for (;;) {
+                        String p = rqst.getParameter("p" + args.size());
+                        if (p == null) {
+                            break;
+                        }
+                        args.add(p);
                     }
-                    args.add(p);
                 }
                 String res;
                 try {
@@ -622,8 +1020,41 @@ Executor, Closeable {
             w.close();
         }
 
+        private static CharSequence readBody(Reader r) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            char[] arr = new char[4096];
+            for (;;) {
+                int len = r.read(arr);
+                if (len == -1) {
+                    break;
+                }
+                sb.append(arr, 0, len);
+            }
+            return sb;
+        }
+
         void callbackFn(ProtoPresenterBuilder.OnPrepared onReady) {
             StringBuilder sb = new StringBuilder();
+            if (browser.config.useEvents()) {
+                sb.append("this.toBrwsrSrvr = function(name, a1, a2, a3, a4) {\n"
+                    + "var url = '").append(prefix).append("command.js?id=").append(id).append("&name=' + name;\n"
+                    + "if (waitForCommand.seen) url += '&seen=' + waitForCommand.seen;\n"
+                    + "var args = [ a1, a2, a3, a4 ];\n"
+                    + "var body = '';\n"
+                    + "for (var i = 0; i < args.length; i++) {\n"
+                    + "  var s = '' + args[i];\n"
+                    + "  body += s.length + ':' + s;\n"
+                    + "}\n"
+                    + "var request = new XMLHttpRequest();\n"
+                    + "request.open('POST', url, false);\n"
+                    + "request.setRequestHeader('Content-Type', 'text/plain; charset=utf-8');\n"
+                    + "request.send(body);\n"
+                    + "return request.responseText;\n"
+                    + "};\n");
+                add(sb);
+                onReady.callbackIsPrepared("toBrwsrSrvr");
+                return;
+            }
             sb.append("this.toBrwsrSrvr = function(name, a1, a2, a3, a4) {\n"
                 + "var url = '").append(prefix).append("command.js?id=").append(id).append("&name=' + name;\n"
                 + "url += '&p0=' + encodeURIComponent(a1);\n"
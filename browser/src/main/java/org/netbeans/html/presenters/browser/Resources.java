@@ -0,0 +1,356 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.browser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+/** Serves static resources of the application. Resources are read in
+ * large blocks and kept in a size bounded LRU cache. Responses carry
+ * validators, so browsers can ask with conditional <code>GET</code>,
+ * and textual resources are compressed when the browser accepts it.
+ */
+final class Resources {
+    /** Resources bigger than this aren't cached, just streamed. */
+    static final int MAX_ENTRY = 16 * 1024 * 1024;
+    private static final int MIN_GZIP = 1024;
+    private static final int BUFFER = 64 * 1024;
+
+    private final long capacity;
+    private final int maxEntry;
+    private final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private long size;
+
+    Resources(long capacity) {
+        this(capacity, MAX_ENTRY);
+    }
+
+    Resources(long capacity, int maxEntry) {
+        this.capacity = capacity;
+        this.maxEntry = maxEntry;
+    }
+
+    void serve(URL url, Request rqst, Response rspns) throws IOException {
+        Entry e = find(url, rspns);
+        if (e == null) {
+            return;
+        }
+        rspns.setHeader("ETag", e.etag);
+        rspns.setHeader("Cache-Control", "no-cache");
+        if (e.lastModified > 0) {
+            rspns.setHeader("Last-Modified", formatDate(e.lastModified));
+        }
+        if (e.type != null) {
+            rspns.setContentType(e.type);
+        }
+        if (notModified(e, rqst.getHeader("If-None-Match"), rqst.getHeader("If-Modified-Since"))) {
+            rspns.setStatus(HttpStatus.NOT_MODIFIED_304);
+            return;
+        }
+        byte[] data = e.data;
+        if (e.compressible()) {
+            rspns.setHeader("Vary", "Accept-Encoding");
+            String accept = rqst.getHeader("Accept-Encoding");
+            if (accept != null && accept.contains("gzip")) {
+                rspns.setHeader("Content-Encoding", "gzip");
+                data = gzipped(e);
+            }
+        }
+        rspns.setContentLength(data.length);
+        OutputStream out = rspns.getOutputStream();
+        out.write(data);
+        out.close();
+    }
+
+    /** Finds the resource in the cache or loads it.
+     * @param url the resource
+     * @return the resource or {@code null} if it is too big to be kept in memory
+     * @throws IOException if the resource cannot be read
+     */
+    Entry find(URL url) throws IOException {
+        return find(url, null);
+    }
+
+    /** Finds the resource in the cache or loads it. Resources bigger than
+     * the maximal entry size are streamed to the response, if any, from the
+     * already opened connection. Resources bigger than the capacity
+     * of the cache are returned, but not cached.
+     */
+    private Entry find(URL url, Response rspns) throws IOException {
+        final String key = url.toExternalForm();
+        synchronized (cache) {
+            Entry e = cache.get(key);
+            if (e != null) {
+                if (e.isUpToDate()) {
+                    return e;
+                }
+                cache.remove(key);
+                size -= e.size();
+            }
+        }
+        URLConnection conn = url.openConnection();
+        InputStream is = conn.getInputStream();
+        byte[] data;
+        try {
+            long length = conn.getContentLengthLong();
+            if (length > maxEntry) {
+                if (rspns != null) {
+                    stream(url, conn, null, is, rspns);
+                }
+                return null;
+            }
+            ByteArrayOutputStream os = new ByteArrayOutputStream((int) Math.max(length, BUFFER));
+            if (!readAtMost(is, os, maxEntry)) {
+                if (rspns != null) {
+                    stream(url, conn, os, is, rspns);
+                }
+                return null;
+            }
+            data = os.toByteArray();
+        } finally {
+            is.close();
+        }
+        Entry e = new Entry(url, data, conn.getLastModified());
+        if (data.length > capacity) {
+            return e;
+        }
+        synchronized (cache) {
+            Entry prev = cache.put(key, e);
+            if (prev != null) {
+                size -= prev.size();
+            }
+            size += e.size();
+            evict();
+        }
+        return e;
+    }
+
+    /** Removes eldest entries until the cache fits its capacity.
+     * Call only when holding the {@link #cache} lock.
+     */
+    private void evict() {
+        Iterator<Entry> it = cache.values().iterator();
+        while (size > capacity && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            size -= eldest.size();
+        }
+    }
+
+    /** Compressed content of the entry. It is computed once and, while
+     * the entry is cached, counted into the size of the cache.
+     */
+    byte[] gzipped(Entry e) throws IOException {
+        synchronized (cache) {
+            if (e.gzipped != null) {
+                return e.gzipped;
+            }
+        }
+        byte[] gz = e.gzip();
+        synchronized (cache) {
+            if (e.gzipped == null) {
+                e.gzipped = gz;
+                if (cache.get(e.key) == e) {
+                    size += gz.length;
+                    evict();
+                }
+            }
+            return e.gzipped;
+        }
+    }
+
+    private static void stream(
+        URL url, URLConnection conn, ByteArrayOutputStream prefix, InputStream is, Response rspns
+    ) throws IOException {
+        long length = conn.getContentLengthLong();
+        if (length >= 0) {
+            rspns.setContentLengthLong(length);
+        }
+        String type = contentType(url.getPath());
+        if (type != null) {
+            rspns.setContentType(type);
+        }
+        OutputStream out = rspns.getOutputStream();
+        try {
+            if (prefix != null) {
+                prefix.writeTo(out);
+            }
+            byte[] arr = new byte[BUFFER];
+            for (;;) {
+                int len = is.read(arr);
+                if (len == -1) {
+                    break;
+                }
+                out.write(arr, 0, len);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Reads the stream into the buffer.
+     * @return {@code true} if the whole stream has been read, {@code false}
+     *   if it is longer than {@code limit} - then the buffer contains
+     *   the already read bytes and the rest remains in the stream
+     */
+    private static boolean readAtMost(InputStream is, ByteArrayOutputStream os, int limit) throws IOException {
+        byte[] arr = new byte[BUFFER];
+        for (;;) {
+            int len = is.read(arr);
+            if (len == -1) {
+                return true;
+            }
+            os.write(arr, 0, len);
+            if (os.size() > limit) {
+                return false;
+            }
+        }
+    }
+
+    static boolean notModified(Entry e, String ifNoneMatch, String ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String t = tag.trim();
+                if (t.equals(e.etag) || t.equals("W/" + e.etag) || t.equals("*")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifModifiedSince != null && e.lastModified > 0) {
+            try {
+                long since = parseDate(ifModifiedSince);
+                return e.lastModified / 1000 <= since / 1000;
+            } catch (ParseException ex) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static SimpleDateFormat httpDate() {
+        SimpleDateFormat f = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        f.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return f;
+    }
+
+    static String formatDate(long time) {
+        return httpDate().format(new Date(time));
+    }
+
+    static long parseDate(String date) throws ParseException {
+        return httpDate().parse(date).getTime();
+    }
+
+    static String contentType(String path) {
+        int dot = path.lastIndexOf('.');
+        String ext = dot == -1 ? "" : path.substring(dot + 1).toLowerCase(Locale.ENGLISH);
+        switch (ext) {
+            case "html": case "htm": return "text/html";
+            case "js": return "application/javascript";
+            case "mjs": return "application/javascript";
+            case "css": return "text/css";
+            case "json": case "map": return "application/json";
+            case "svg": return "image/svg+xml";
+            case "txt": return "text/plain";
+            case "xml": return "application/xml";
+            default: return URLConnection.guessContentTypeFromName(path);
+        }
+    }
+
+    static final class Entry {
+        final String key;
+        final byte[] data;
+        final long lastModified;
+        final String etag;
+        final String type;
+        private final File file;
+        /** guarded by the cache lock */
+        private byte[] gzipped;
+
+        Entry(URL url, byte[] data, long lastModified) {
+            this.key = url.toExternalForm();
+            this.data = data;
+            this.lastModified = lastModified;
+            this.type = contentType(url.getPath());
+            this.file = toFile(url);
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(data.length) + "\"";
+        }
+
+        private static File toFile(URL url) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            try {
+                return new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                return null;
+            }
+        }
+
+        /** Files on disk may change, other resources are expected to stay
+         * the same for the whole life time of the application.
+         */
+        boolean isUpToDate() {
+            return file == null || (file.lastModified() == lastModified && file.length() == data.length);
+        }
+
+        boolean compressible() {
+            if (data.length < MIN_GZIP || type == null) {
+                return false;
+            }
+            return type.startsWith("text/") || type.endsWith("javascript")
+                || type.endsWith("json") || type.endsWith("xml");
+        }
+
+        byte[] gzip() throws IOException {
+            ByteArrayOutputStream os = new ByteArrayOutputStream(data.length / 3);
+            GZIPOutputStream gz = new GZIPOutputStream(os);
+            gz.write(data);
+            gz.close();
+            return os.toByteArray();
+        }
+
+        /** Bytes held by the entry. Call only when holding the cache lock. */
+        long size() {
+            return data.length + (gzipped == null ? 0 : gzipped.length);
+        }
+    }
+}
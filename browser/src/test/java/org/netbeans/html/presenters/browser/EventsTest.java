@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.browser;
+
+import java.util.Arrays;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class EventsTest {
+    @Test
+    public void everyLineIsData() {
+        assertEquals(Browser.event(1, "a\nb\r\nc\rd"), "id: 1\ndata: a\ndata: b\ndata: c\ndata: d\n\n");
+        assertEquals(Browser.event(7, ""), "id: 7\ndata: \n\n");
+    }
+
+    @Test
+    public void unseenEventsAreReplayed() {
+        Browser.Events events = new Browser.Events();
+        assertEquals(events.send("a"), "id: 1\ndata: a\n\n");
+        assertEquals(events.send("b"), "id: 2\ndata: b\n\n");
+        assertEquals(events.send("c"), "id: 3\ndata: c\n\n");
+
+        events.acknowledge(null);
+        assertEquals(events.replay(), "id: 1\ndata: a\n\nid: 2\ndata: b\n\nid: 3\ndata: c\n\n");
+
+        events.acknowledge("2");
+        assertEquals(events.replay(), "id: 3\ndata: c\n\n", "Only the last one wasn't seen");
+        assertEquals(events.send("d"), "id: 4\ndata: d\n\n", "Ids keep growing");
+
+        events.acknowledge("1");
+        assertEquals(events.replay(), "id: 3\ndata: c\n\nid: 4\ndata: d\n\n", "Old id changes nothing");
+
+        events.acknowledge("4");
+        assertEquals(events.replay(), "", "All seen");
+    }
+
+    @Test
+    public void abandonedEventsAreReturned() {
+        Browser.Events events = new Browser.Events();
+        events.send("a");
+        events.send("b");
+        events.acknowledge("1");
+        assertEquals(events.abandon(), Arrays.asList("b"));
+        assertEquals(events.replay(), "");
+        assertEquals(events.send("c"), "id: 3\ndata: c\n\n");
+    }
+
+    @Test
+    public void argumentsArePrefixedByLength() {
+        assertEquals(
+            Browser.decodeArgs("4:null3:a:b0:2:čč"),
+            Arrays.asList("null", "a:b", "", "čč")
+        );
+    }
+
+    @Test
+    public void eventsAreOptIn() {
+        assertFalse(new Browser.Config().useEvents(), "Long polling by default");
+        assertTrue(new Browser.Config().serverSentEvents(true).useEvents(), "Enabled");
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.browser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class ResourcesTest {
+    @Test
+    public void resourcesAreCachedUntilFileChanges() throws Exception {
+        File f = File.createTempFile("resource", ".js");
+        f.deleteOnExit();
+        write(f, "var x = 1;");
+
+        Resources r = new Resources(1024 * 1024);
+        Resources.Entry first = r.find(f.toURI().toURL());
+        assertEquals(first.type, "application/javascript");
+        assertSame(r.find(f.toURI().toURL()), first, "Cached");
+
+        write(f, "var x = 2; // changed");
+        f.setLastModified(first.lastModified + 5000);
+        Resources.Entry second = r.find(f.toURI().toURL());
+        assertNotSame(second, first, "Reloaded");
+        assertFalse(first.etag.equals(second.etag), "Different tag");
+    }
+
+    @Test
+    public void eldestEntriesAreEvicted() throws Exception {
+        Resources r = new Resources(100);
+        File[] files = new File[3];
+        Resources.Entry[] entries = new Resources.Entry[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = File.createTempFile("resource", ".txt");
+            files[i].deleteOnExit();
+            write(files[i], String.format("%040d", i));
+            entries[i] = r.find(files[i].toURI().toURL());
+        }
+        assertSame(r.find(files[2].toURI().toURL()), entries[2], "Newest stays");
+        assertNotSame(r.find(files[0].toURI().toURL()), entries[0], "Eldest has been evicted");
+    }
+
+    @Test
+    public void conditionalRequests() throws Exception {
+        File f = File.createTempFile("resource", ".css");
+        f.deleteOnExit();
+        write(f, "body { color: red; }");
+        Resources.Entry e = new Resources(1024).find(f.toURI().toURL());
+
+        assertTrue(Resources.notModified(e, e.etag, null), "Same tag");
+        assertTrue(Resources.notModified(e, "\"x\", " + e.etag, null), "One of tags");
+        assertFalse(Resources.notModified(e, "\"x\"", null), "Other tag");
+        assertTrue(Resources.notModified(e, null, Resources.formatDate(e.lastModified)), "Not modified since");
+        assertFalse(Resources.notModified(e, null, Resources.formatDate(e.lastModified - 10000)), "Modified since");
+        assertFalse(Resources.notModified(e, null, null), "Unconditional");
+    }
+
+    @Test
+    public void textIsCompressed() throws Exception {
+        File f = File.createTempFile("resource", ".js");
+        f.deleteOnExit();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("function f").append(i).append("() { return ").append(i).append("; }\n");
+        }
+        write(f, sb.toString());
+        Resources r = new Resources(1024 * 1024);
+        Resources.Entry e = r.find(f.toURI().toURL());
+        assertTrue(e.compressible(), "Scripts are compressed");
+        byte[] gz = r.gzipped(e);
+        assertTrue(gz.length < e.data.length / 3, "Smaller: " + gz.length);
+        assertSame(r.gzipped(e), gz, "Computed once");
+        assertEquals(new String(gunzip(gz), "UTF-8"), sb.toString());
+    }
+
+    @Test
+    public void compressedCopiesCountToCapacity() throws Exception {
+        Resources r = new Resources(4010);
+        File[] files = new File[2];
+        Resources.Entry[] entries = new Resources.Entry[2];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = File.createTempFile("resource", ".txt");
+            files[i].deleteOnExit();
+            write(files[i], String.format("%02000d", i));
+            entries[i] = r.find(files[i].toURI().toURL());
+        }
+        assertSame(r.find(files[0].toURI().toURL()), entries[0], "Both fit");
+        assertSame(r.find(files[1].toURI().toURL()), entries[1], "Both fit");
+
+        r.gzipped(entries[1]);
+        assertSame(r.find(files[1].toURI().toURL()), entries[1], "Compressed stays");
+        assertNotSame(r.find(files[0].toURI().toURL()), entries[0], "No room left for the other one");
+    }
+
+    @Test
+    public void entriesBiggerThanCapacityAreNotCached() throws Exception {
+        File f = File.createTempFile("resource", ".txt");
+        f.deleteOnExit();
+        write(f, String.format("%0200d", 0));
+        Resources r = new Resources(100);
+        Resources.Entry e = r.find(f.toURI().toURL());
+        assertEquals(e.data.length, 200);
+        assertNotSame(r.find(f.toURI().toURL()), e, "Not cached");
+    }
+
+    @Test
+    public void resourcesOfKnownLengthOverLimitAreNotRead() throws Exception {
+        Generated g = new Generated(1000, true);
+        assertNull(new Resources(1024 * 1024, 100).find(g.url()), "Too big");
+        assertEquals(g.read, 0, "Nothing read");
+        assertTrue(g.closed, "Connection closed");
+    }
+
+    @Test
+    public void resourcesOfUnknownLengthAreReadUpToLimit() throws Exception {
+        Generated g = new Generated(1024 * 1024, false);
+        assertNull(new Resources(1024 * 1024, 100).find(g.url()), "Too big");
+        assertTrue(g.read < 128 * 1024, "Only a block has been read: " + g.read);
+        assertTrue(g.closed, "Connection closed");
+
+        Generated small = new Generated(50, false);
+        assertEquals(new Resources(1024 * 1024, 100).find(small.url()).data.length, 50);
+        assertTrue(small.closed, "Connection closed");
+    }
+
+    private static void write(File f, String text) throws IOException {
+        try (FileOutputStream os = new FileOutputStream(f)) {
+            os.write(text.getBytes("UTF-8"));
+        }
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        InputStream is = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] arr = new byte[4096];
+        for (;;) {
+            int len = is.read(arr);
+            if (len == -1) {
+                return os.toByteArray();
+            }
+            os.write(arr, 0, len);
+        }
+    }
+
+    /** Resource of given size with optionally known length. */
+    private static final class Generated extends URLStreamHandler {
+        private final int size;
+        private final boolean knownLength;
+        int read;
+        boolean closed;
+
+        Generated(int size, boolean knownLength) {
+            this.size = size;
+            this.knownLength = knownLength;
+        }
+
+        URL url() throws IOException {
+            return new URL("gen", null, -1, "/data.txt", this);
+        }
+
+        @Override
+        protected URLConnection openConnection(URL u) throws IOException {
+            return new URLConnection(u) {
+                @Override
+                public void connect() throws IOException {
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    return knownLength ? size : -1;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            if (read == size) {
+                                return -1;
+                            }
+                            read++;
+                            return 'x';
+                        }
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            int n = Math.min(len, size - read);
+                            if (n <= 0) {
+                                return -1;
+                            }
+                            Arrays.fill(b, off, off + n, (byte) 'x');
+                            read += n;
+                            return n;
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            closed = true;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.browser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class SessionsTest {
+    @Test
+    public void tasksOfOneSessionRunInOrder() throws Exception {
+        Browser browser = new Browser("SessionsTest", new Browser.Config());
+        final int count = 1000;
+        List<Browser.Command> sessions = new ArrayList<>();
+        List<List<Integer>> order = new ArrayList<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(10 * count);
+        List<AtomicInteger> running = new ArrayList<>();
+        for (int s = 0; s < 10; s++) {
+            sessions.add(new Browser.Command(browser, "http://localhost/"));
+            order.add(new ArrayList<>());
+            running.add(new AtomicInteger());
+        }
+        for (int i = 0; i < count; i++) {
+            for (int s = 0; s < sessions.size(); s++) {
+                final Browser.Command cmd = sessions.get(s);
+                final List<Integer> seen = order.get(s);
+                final AtomicInteger concurrent = running.get(s);
+                final int value = i;
+                cmd.execute(() -> {
+                    if (concurrent.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    synchronized (seen) {
+                        seen.add(value);
+                    }
+                    concurrent.decrementAndGet();
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS), "All tasks finished");
+        assertEquals(overlaps.get(), 0, "Tasks of a session never run in parallel");
+        for (List<Integer> seen : order) {
+            synchronized (seen) {
+                assertEquals(seen.size(), count);
+                for (int i = 0; i < count; i++) {
+                    assertEquals((int) seen.get(i), i, "Serial order");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void idleSessionsAreEvicted() {
+        Browser browser = new Browser("SessionsTest", new Browser.Config().maxSessions(2));
+        assertTrue(browser.register(new Browser.Command(browser, "http://localhost/")));
+        assertTrue(browser.register(new Browser.Command(browser, "http://localhost/")));
+        assertFalse(browser.register(new Browser.Command(browser, "http://localhost/")), "Too many sessions");
+        assertEquals(browser.sessions(), 2);
+
+        browser.sweep(System.currentTimeMillis());
+        assertEquals(browser.sessions(), 2, "Recently used sessions are kept");
+
+        browser.sweep(System.currentTimeMillis() + Browser.IDLE_TIMEOUT + 1);
+        assertEquals(browser.sessions(), 0, "Idle sessions are evicted");
+        assertTrue(browser.register(new Browser.Command(browser, "http://localhost/")), "Room for new one");
+    }
+
+    @Test
+    public void concurrentRegistrationsRespectTheLimit() throws Exception {
+        Browser browser = new Browser("SessionsTest", new Browser.Config().maxSessions(5));
+        List<Browser.Command> commands = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            commands.add(new Browser.Command(browser, "http://localhost/"));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger registered = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (Browser.Command cmd : commands) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                if (browser.register(cmd)) {
+                    registered.incrementAndGet();
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(registered.get(), 5, "Only five registrations succeed");
+        assertEquals(browser.sessions(), 5);
+    }
+}
@@ -123,12 +123,17 @@ public final class BrwsrCtx implements Executor {
                 }
             }
         }
-        Wrap w = new Wrap();
         Executor runIn = Contexts.find(this, Executor.class);
         if (runIn == null) {
-            w.run();
+            BrwsrCtx prev = CURRENT.get();
+            try {
+                CURRENT.set(this);
+                exec.run();
+            } finally {
+                CURRENT.set(prev);
+            }
         } else {
-            runIn.execute(w);
+            runIn.execute(new Wrap());
         }
     }
 }
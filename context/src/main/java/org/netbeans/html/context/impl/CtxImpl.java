@@ -18,6 +18,8 @@
  */
 package org.netbeans.html.context.impl;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
 import net.java.html.BrwsrCtx;
 import org.netbeans.html.context.spi.Contexts;
 
@@ -29,6 +31,8 @@ import org.netbeans.html.context.spi.Contexts;
 public final class CtxImpl {
     private Bind<?>[] techs;
     private final Object[] context;
+    /** the first (most preferred) implementation of each technology */
+    private final Map<Class<?>, Object> index;
     
     public CtxImpl(Object[] context) {
         this(context, new Bind<?>[0]);
@@ -37,16 +41,15 @@ public final class CtxImpl {
     private CtxImpl(Object[] context, Bind<?>[] techs) {
         this.techs = techs;
         this.context = context;
+        this.index = new IdentityHashMap<Class<?>, Object>(techs.length * 2);
+        for (int i = techs.length - 1; i >= 0; i--) {
+            index.put(techs[i].clazz, techs[i].impl);
+        }
     }
     
     public static <Tech> Tech find(BrwsrCtx context, Class<Tech> technology) {
         CtxImpl impl = CtxAccssr.getDefault().find(context);
-        for (Bind<?> bind : impl.techs) {
-            if (technology == bind.clazz) {
-                return technology.cast(bind.impl);
-            }
-        }
-        return null;
+        return technology.cast(impl.index.get(technology));
     }
 
     public BrwsrCtx build() {
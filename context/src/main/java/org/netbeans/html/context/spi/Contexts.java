@@ -23,7 +23,13 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.WeakHashMap;
 import net.java.html.BrwsrCtx;
 import org.netbeans.html.context.impl.CtxImpl;
 
@@ -73,7 +79,8 @@ public final class Contexts {
 
     /** Seeks {@link ServiceLoader} for all registered instances of
      * {@link Provider} and asks them to {@link Provider#fillContext(org.netbeans.html.context.spi.Contexts.Builder, java.lang.Class) fill
-     * the builder}.
+     * the builder}. Since 2.0 the providers are instantiated only once
+     * per classloader and reused by subsequent calls.
      * 
      * @param requestor the application class for which to find the context
      * @param cb the context builder to register technologies into
@@ -90,7 +97,7 @@ public final class Contexts {
             l = null;
         }
         ClassSet classes = new ClassSet(null);
-        for (Provider cp : ServiceLoader.load(Provider.class, l)) {
+        for (Provider cp : providers(l)) {
             if (!classes.add(cp.getClass())) {
                 continue;
             }
@@ -98,7 +105,7 @@ public final class Contexts {
             found = true;
         }
         try {
-            for (Provider cp : ServiceLoader.load(Provider.class, Provider.class.getClassLoader())) {
+            for (Provider cp : providers(Provider.class.getClassLoader())) {
                 if (!classes.add(cp.getClass())) {
                     continue;
                 }
@@ -111,7 +118,7 @@ public final class Contexts {
             }
         }
         if (!found) {
-            for (Provider cp : ServiceLoader.load(Provider.class)) {
+            for (Provider cp : providers(Thread.currentThread().getContextClassLoader())) {
                 if (!classes.add(cp.getClass())) {
                     continue;
                 }
@@ -122,6 +129,31 @@ public final class Contexts {
         return found;
     }
 
+    private static final Map<ClassLoader, Reference<Provider[]>> PROVIDERS = new WeakHashMap<ClassLoader, Reference<Provider[]>>();
+    /** Providers registered in given classloader. The {@link ServiceLoader}
+     * is consulted only once per classloader. The cache entry is dropped
+     * when the classloader is garbage collected. Providers are held softly,
+     * as they usually keep their own classloader alive.
+     */
+    private static Provider[] providers(ClassLoader l) {
+        synchronized (PROVIDERS) {
+            Reference<Provider[]> ref = PROVIDERS.get(l);
+            Provider[] arr = ref == null ? null : ref.get();
+            if (arr != null) {
+                return arr;
+            }
+        }
+        List<Provider> list = new ArrayList<Provider>();
+        for (Provider cp : ServiceLoader.load(Provider.class, l)) {
+            list.add(cp);
+        }
+        Provider[] arr = list.toArray(new Provider[list.size()]);
+        synchronized (PROVIDERS) {
+            PROVIDERS.put(l, new SoftReference<Provider[]>(arr));
+        }
+        return arr;
+    }
+
     private static class ClassSet {
         private final Class<?> clazz;
         private ClassSet next;
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import com.dukescript.api.strings.Texts;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Methods of a VM class callable from JavaScript. Computed once per
+ * class: contains a handle for each method name and the source of
+ * JavaScript function that creates the stubs for an instance of the class.
+ */
+final class Dispatch {
+    private static final ClassValue<Dispatch> TABLE = new ClassValue<Dispatch>() {
+        @Override
+        protected Dispatch computeValue(Class<?> type) {
+            return new Dispatch(type);
+        }
+    };
+
+    private final Map<String, Call> calls;
+    private final String stub;
+
+    private Dispatch(Class<?> type) {
+        Map<String, Call> map = new HashMap<String, Call>();
+        StringBuilder sb = new StringBuilder();
+        sb.append(Strings.fnHead());
+        for (Method m : type.getMethods()) {
+            if (m.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            if (!map.containsKey(m.getName())) {
+                map.put(m.getName(), new Call(m));
+            }
+            appendStub(sb, m);
+        }
+        sb.append(Strings.fnFoot());
+        this.calls = Collections.unmodifiableMap(map);
+        this.stub = sb.toString();
+    }
+
+    static Dispatch find(Class<?> type) {
+        return TABLE.get(type);
+    }
+
+    /** Finds method by name.
+     * @param name name of the method
+     * @return the call or {@code null}
+     */
+    Call find(String name) {
+        return calls.get(name);
+    }
+
+    /** Source of JavaScript function {@code (key, vm, evalJS)} that
+     * returns an object with a stub for each method of the class.
+     */
+    String stub() {
+        return stub;
+    }
+
+    @Texts({
+        "fnHead=function(key, vm, evalJS) {\n  var jsvm = {};\n",
+        "fnName=  jsvm.@1 = function(",
+        "fnThiz=thiz",
+        "fnNoThiz=    var thiz = null;\n",
+        "fnSep=,",
+        "fnParam=p@1",
+        "fnClose=) {\n",
+        "fnBegin=    var v = ds(key).c(vm, '@1', thiz, [",
+        "fnPPar=@2 p@1",
+        "fnBody=]);\n" +
+            "    while (v !== null && v.indexOf && v.indexOf('javascript:') === 0) {\n" +
+            "      var script = v.substring(11);\n" +
+            "      try {\n" +
+            "        var r = eval.call(null, script);\n" +
+            "      } catch (e) {  console.warn('error: ' + e + ' executing: ' + script + ' at:\\n' + e.stack); }\n" +
+            "      v = ds(key).toVM('jr', null, null, null, null);" +
+            "    }\n" +
+            "    return evalJS ? eval('(' + v + ')') : v;\n" +
+            "  };\n",
+        "fnFoot=  return jsvm;\n}"
+    })
+    private static void appendStub(StringBuilder sb, Method m) {
+        final Class<?>[] types = m.getParameterTypes();
+        boolean instanceMethod =
+            types.length > 0 &&
+            m.getName().startsWith(types[0].getName().replace('.', '_') + "$");
+        int params = instanceMethod ? types.length - 1 : types.length;
+        sb.append(Strings.fnName(m.getName()));
+        String sep;
+        if (instanceMethod) {
+            sb.append(Strings.fnThiz());
+            sep = Strings.fnSep();
+        } else {
+            sep = "";
+        }
+        for (int i = 0; i < params; i++) {
+            sb.append(sep);
+            sb.append(Strings.fnParam(i));
+            sep = Strings.fnSep();
+        }
+        sb.append(Strings.fnClose());
+        if (!instanceMethod) {
+            sb.append(Strings.fnNoThiz());
+        }
+        sb.append(Strings.fnBegin(m.getName()));
+        for (int i = 0; i < params; i++) {
+            sb.append(Strings.fnPPar(i, i == 0 ? "" : ","));
+        }
+        sb.append(Strings.fnBody());
+    }
+
+    /** A method with arguments adapted from JavaScript values. Numbers
+     * arrive as doubles and are converted to the primitive type of
+     * the parameter by filters computed in advance. The handle has type
+     * {@code (Object, Object[])Object} and is invoked exactly. Methods
+     * that cannot be looked up publicly are called reflectively with
+     * the same adaptation of parameters.
+     */
+    static final class Call {
+        private final Method method;
+        private final MethodHandle handle;
+
+        Call(Method method) {
+            this.method = method;
+            MethodHandle mh;
+            try {
+                mh = MethodHandles.publicLookup().unreflect(method);
+                Class<?>[] types = method.getParameterTypes();
+                MethodHandle[] filters = new MethodHandle[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    filters[i] = Adapt.filter(types[i]);
+                }
+                if (Modifier.isStatic(method.getModifiers())) {
+                    mh = MethodHandles.filterArguments(mh, 0, filters);
+                    mh = MethodHandles.dropArguments(mh, 0, Object.class);
+                } else {
+                    mh = MethodHandles.filterArguments(mh, 1, filters);
+                }
+                mh = mh.asType(MethodType.genericMethodType(types.length + 1));
+                mh = mh.asSpreader(Object[].class, types.length);
+            } catch (IllegalAccessException ex) {
+                mh = null;
+            }
+            this.handle = mh;
+        }
+
+        Object invoke(Object thiz, Object[] params) throws Throwable {
+            if (handle == null) {
+                return method.invoke(thiz, adaptParams(method.getParameterTypes(), params));
+            }
+            return (Object) handle.invokeExact(thiz, params);
+        }
+
+        private static Object[] adaptParams(Class<?>[] types, Object[] args) {
+            final Object[] arr = new Object[args.length];
+            for (int i = 0; i < arr.length; i++) {
+                arr[i] = adaptType(types[i], args[i]);
+            }
+            return arr;
+        }
+
+        private static Object adaptType(Class<?> type, Object value) {
+            if (type.isPrimitive() && value instanceof Number) {
+                final Number n = (Number) value;
+                if (type == Byte.TYPE) return n.byteValue();
+                if (type == Short.TYPE) return n.shortValue();
+                if (type == Integer.TYPE) return n.intValue();
+                if (type == Long.TYPE) return n.longValue();
+                if (type == Float.TYPE) return n.floatValue();
+                if (type == Double.TYPE) return n.doubleValue();
+                if (type == Character.TYPE) return (char) n.intValue();
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return method.toString();
+        }
+    }
+
+    /** Conversions of JavaScript numbers to Java primitive types. */
+    static final class Adapt {
+        private Adapt() {
+        }
+
+        static MethodHandle filter(Class<?> type) throws IllegalAccessException {
+            if (!type.isPrimitive() || type == Boolean.TYPE) {
+                return null;
+            }
+            try {
+                String name = "to" + Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+                return MethodHandles.lookup().findStatic(Adapt.class, name, MethodType.methodType(type, Object.class));
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        static byte toByte(Object v) {
+            return v instanceof Number ? ((Number) v).byteValue() : (Byte) v;
+        }
+
+        static short toShort(Object v) {
+            return v instanceof Number ? ((Number) v).shortValue() : (Short) v;
+        }
+
+        static int toInt(Object v) {
+            return v instanceof Number ? ((Number) v).intValue() : (Integer) v;
+        }
+
+        static long toLong(Object v) {
+            return v instanceof Number ? ((Number) v).longValue() : (Long) v;
+        }
+
+        static float toFloat(Object v) {
+            return v instanceof Number ? ((Number) v).floatValue() : (Float) v;
+        }
+
+        static double toDouble(Object v) {
+            return v instanceof Number ? ((Number) v).doubleValue() : (Double) v;
+        }
+
+        static char toChar(Object v) {
+            return v instanceof Number ? (char) ((Number) v).intValue() : (Character) v;
+        }
+    }
+}
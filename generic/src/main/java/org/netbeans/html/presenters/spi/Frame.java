@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/** Binary encoding of values transferred between JVM and JavaScript.
+ * Each value starts with a one byte tag. Lengths and identifiers
+ * are stored as unsigned variable length integers (seven bits per byte,
+ * highest bit signals continuation), integers are zig-zag encoded
+ * variable length integers, doubles are stored as big endian IEEE 754
+ * values and strings as length prefixed UTF-8 bytes.
+ */
+final class Frame {
+    static final int NULL = 0;
+    static final int INT = 1;
+    static final int NUMBER = 2;
+    static final int TRUE = 3;
+    static final int FALSE = 4;
+    static final int STRING = 5;
+    static final int JAVA = 6;
+    static final int OBJECT = 7;
+    static final int ARRAY = 8;
+    static final int VM = 9;
+    static final int ERROR = 10;
+
+    static final byte KIND_RESULT = 'r';
+    static final byte KIND_CALL = 'c';
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Frame() {
+    }
+
+    static final class Writer {
+        private byte[] arr;
+        private int len;
+
+        Writer(int capacity) {
+            this.arr = new byte[capacity];
+        }
+
+        private void ensure(int more) {
+            if (len + more > arr.length) {
+                arr = Arrays.copyOf(arr, Math.max(arr.length * 2, len + more));
+            }
+        }
+
+        Writer tag(int tag) {
+            ensure(1);
+            arr[len++] = (byte) tag;
+            return this;
+        }
+
+        Writer varint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                arr[len++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            arr[len++] = (byte) value;
+            return this;
+        }
+
+        Writer integer(int value) {
+            tag(INT);
+            return varint((value << 1) ^ (value >> 31));
+        }
+
+        Writer number(double value) {
+            tag(NUMBER);
+            ensure(8);
+            long bits = Double.doubleToLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                arr[len++] = (byte) (bits >>> shift);
+            }
+            return this;
+        }
+
+        Writer bool(boolean value) {
+            return tag(value ? TRUE : FALSE);
+        }
+
+        Writer string(String value) {
+            tag(STRING);
+            return utf8(value);
+        }
+
+        Writer utf8(String value) {
+            byte[] bytes = value.getBytes(UTF8);
+            varint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, arr, len, bytes.length);
+            len += bytes.length;
+            return this;
+        }
+
+        int length() {
+            return len;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(arr, len);
+        }
+    }
+
+    static final class Reader {
+        private final byte[] arr;
+        private int pos;
+
+        Reader(byte[] arr, int pos) {
+            this.arr = arr;
+            this.pos = pos;
+        }
+
+        int tag() {
+            return arr[pos++] & 0xff;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                int b = arr[pos++];
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        int integer() {
+            int zz = varint();
+            return (zz >>> 1) ^ -(zz & 1);
+        }
+
+        double number() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (arr[pos++] & 0xff);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String utf8() {
+            int size = varint();
+            String s = new String(arr, pos, size, UTF8);
+            pos += size;
+            return s;
+        }
+
+        boolean hasMore() {
+            return pos < arr.length;
+        }
+    }
+}
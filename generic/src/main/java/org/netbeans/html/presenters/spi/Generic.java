@@ -27,7 +27,6 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,11 +38,18 @@ import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.netbeans.html.boot.spi.Fn;
 
-abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
+abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Fn.Bundle, Flushable {
     private String msg;
     private Item call;
     private final NavigableSet<Exported> exported;
@@ -53,6 +59,11 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
     private final String type;
     private final String app;
     private final CountDownLatch initialized = new CountDownLatch(1);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition msgChanged = lock.newCondition();
+    private boolean frames;
+    private int batchDelay = -1;
+    private int batchSize;
     
     Generic(
         boolean synchronous, boolean evalJS, String type, String app
@@ -65,12 +76,29 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         this.app = app;
     }
     
-    final Object lock() {
-        return initialized;
-    }
-    
     abstract void log(Level level, String msg, Object... args);
-    
+
+    /** Turns on scheduled flushing of deferred calls.
+     * @param delay maximal delay in milliseconds before deferred calls are sent
+     * @param size number of characters that triggers immediate send
+     */
+    final void batch(int delay, int size) {
+        this.batchDelay = delay;
+        this.batchSize = size;
+    }
+
+    /** @return {@code true} if the presenter can transfer binary {@link Frame frames} */
+    boolean binaryTransport() {
+        return false;
+    }
+
+    /** Passes binary frame to JavaScript function named {@code receiver}.
+     * Only called when {@link #binaryTransport()} returns {@code true}.
+     * @param receiver name of global JavaScript function
+     * @param frame the data to pass to the function as {@code Uint8Array}
+     */
+    abstract void loadFrame(String receiver, byte[] frame);
+
     @Texts({
         "begin=try {\n"
         + "  @1('r', 'OK', 'OK', null, null);\n"
@@ -81,6 +109,17 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         "init=(function(global) {"
             + "\n  var fncns = new Array();"
             + "\n  var js2j = new Array();"
+            + "\n  var free = new Array();"
+            + "\n  function jput(r) {"
+            + "\n    if (free.length > 0) {"
+            + "\n      var i = free.pop();"
+            + "\n      js2j[i] = r;"
+            + "\n      return i;"
+            + "\n    }"
+            + "\n    var size = js2j.length;"
+            + "\n    js2j.push(r);"
+            + "\n    return size;"
+            + "\n  };"
             + "\n  function jobject(id,value) {"
             + "\n    Object.defineProperty(this, 'id', { value : id });"
             + "\n    Object.defineProperty(this, 'v', { value : value });"
@@ -113,9 +152,7 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             + "\n          }"
             + "\n          r = l;"
             + "\n        } else {"
-            + "\n          var size = js2j.length;"
-            + "\n          js2j.push(r);"
-            + "\n          r = size;"
+            + "\n          r = jput(r);"
             + "\n        }"
             + "\n      }"
             + "\n      if (method !== null) toVM(method, t, r, null, null);"
@@ -162,10 +199,200 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             + "\n  impl.v = function(i) {"
             + "\n    return fncns[i];"
             + "\n  };"
+            + "\n  impl.rl = function(objs) {"
+            + "\n    for (var i = 0; i < objs.length; i++) {"
+            + "\n      js2j[objs[i]] = null;"
+            + "\n      free.push(objs[i]);"
+            + "\n    }"
+            + "\n  };"
+            + "\n  impl.c = function(vm, name, thiz, args) {"
+            + "\n    return toVM('c', '' + vm, name, thiz ? thiz.id : null, toJava(null, args));"
+            + "\n  };"
             + "\n  impl.toVM = toVM;"
-            + "\n  impl.toVM('r', 'OK', 'Initialized', null, null);"
+            + "@3"
+            + "\n  impl.toVM('r', 'OK', impl.frames ? 'Binary' : 'Initialized', null, null);"
             + "\n})(this);",
 
+        "initFrames="
+            + "\n  if (typeof Uint8Array !== 'undefined' && typeof DataView !== 'undefined') {"
+            + "\n    var out = new Uint8Array(256);"
+            + "\n    var len = 0;"
+            + "\n    var ensure = function(n) {"
+            + "\n      if (len + n > out.length) {"
+            + "\n        var bigger = new Uint8Array(Math.max(out.length * 2, len + n));"
+            + "\n        bigger.set(out);"
+            + "\n        out = bigger;"
+            + "\n      }"
+            + "\n    };"
+            + "\n    var tag = function(t) {"
+            + "\n      ensure(1);"
+            + "\n      out[len++] = t;"
+            + "\n    };"
+            + "\n    var varint = function(v) {"
+            + "\n      ensure(5);"
+            + "\n      while (v > 127) {"
+            + "\n        out[len++] = (v & 127) | 128;"
+            + "\n        v = v >>> 7;"
+            + "\n      }"
+            + "\n      out[len++] = v;"
+            + "\n    };"
+            + "\n    var pair = function(s, i) {"
+            + "\n      var c = s.charCodeAt(i);"
+            + "\n      if (c < 0xD800 || c >= 0xDC00 || i + 1 >= s.length) return 0;"
+            + "\n      var d = s.charCodeAt(i + 1);"
+            + "\n      return d >= 0xDC00 && d < 0xE000 ? 0x10000 + ((c - 0xD800) << 10) + (d - 0xDC00) : 0;"
+            + "\n    };"
+            + "\n    var utf8 = function(s) {"
+            + "\n      var n = 0, i, c, p;"
+            + "\n      for (i = 0; i < s.length; i++) {"
+            + "\n        c = s.charCodeAt(i);"
+            + "\n        if (c < 0x80) n += 1;"
+            + "\n        else if (c < 0x800) n += 2;"
+            + "\n        else if (pair(s, i)) { n += 4; i++; }"
+            + "\n        else n += 3;"
+            + "\n      }"
+            + "\n      varint(n);"
+            + "\n      ensure(n);"
+            + "\n      for (i = 0; i < s.length; i++) {"
+            + "\n        c = s.charCodeAt(i);"
+            + "\n        if (c < 0x80) {"
+            + "\n          out[len++] = c;"
+            + "\n        } else if (c < 0x800) {"
+            + "\n          out[len++] = 0xC0 | (c >> 6);"
+            + "\n          out[len++] = 0x80 | (c & 63);"
+            + "\n        } else if ((p = pair(s, i))) {"
+            + "\n          out[len++] = 0xF0 | (p >> 18);"
+            + "\n          out[len++] = 0x80 | ((p >> 12) & 63);"
+            + "\n          out[len++] = 0x80 | ((p >> 6) & 63);"
+            + "\n          out[len++] = 0x80 | (p & 63);"
+            + "\n          i++;"
+            + "\n        } else {"
+            + "\n          out[len++] = 0xE0 | (c >> 12);"
+            + "\n          out[len++] = 0x80 | ((c >> 6) & 63);"
+            + "\n          out[len++] = 0x80 | (c & 63);"
+            + "\n        }"
+            + "\n      }"
+            + "\n    };"
+            + "\n    var enc = function(r) {"
+            + "\n      var t = typeof r;"
+            + "\n      if (t === 'undefined' || r === null) {"
+            + "\n        tag(0);"
+            + "\n      } else if (t === 'number') {"
+            + "\n        if ((r | 0) === r && (r !== 0 || 1 / r > 0)) {"
+            + "\n          tag(1);"
+            + "\n          varint(((r << 1) ^ (r >> 31)) >>> 0);"
+            + "\n        } else {"
+            + "\n          tag(2);"
+            + "\n          ensure(8);"
+            + "\n          new DataView(out.buffer).setFloat64(len, r);"
+            + "\n          len += 8;"
+            + "\n        }"
+            + "\n      } else if (t === 'boolean') {"
+            + "\n        tag(r ? 3 : 4);"
+            + "\n      } else if (t === 'object' || t === 'function') {"
+            + "\n        if (r['native']) {"
+            + "\n          tag(6);"
+            + "\n          varint(r.id);"
+            + "\n        } else if (Object.prototype.toString.call(r) === '[object Array]') {"
+            + "\n          tag(8);"
+            + "\n          varint(r.length);"
+            + "\n          for (var i = 0; i < r.length; i++) {"
+            + "\n            enc(r[i]);"
+            + "\n          }"
+            + "\n        } else {"
+            + "\n          tag(7);"
+            + "\n          varint(jput(r));"
+            + "\n        }"
+            + "\n      } else {"
+            + "\n        tag(5);"
+            + "\n        utf8('' + r);"
+            + "\n      }"
+            + "\n    };"
+            + "\n    var send = function() {"
+            + "\n      var frame = new Uint8Array(out.subarray(0, len));"
+            + "\n      len = 0;"
+            + "\n      return toVM('b', frame, null, null, null);"
+            + "\n    };"
+            + "\n    var textToJava = toJava;"
+            + "\n    toJava = function(method, r) {"
+            + "\n      if (method === null) return textToJava(null, r);"
+            + "\n      len = 0;"
+            + "\n      tag(114);"
+            + "\n      enc(r);"
+            + "\n      send();"
+            + "\n    };"
+            + "\n    impl.toJava = toJava;"
+            + "\n    impl.c = function(vm, name, thiz, args) {"
+            + "\n      len = 0;"
+            + "\n      tag(99);"
+            + "\n      varint(vm);"
+            + "\n      utf8(name);"
+            + "\n      enc(thiz);"
+            + "\n      enc(args);"
+            + "\n      return send();"
+            + "\n    };"
+            + "\n    global['@1'] = function(frame) {"
+            + "\n      var pos = 0;"
+            + "\n      function rv() {"
+            + "\n        var v = 0, s = 1, b;"
+            + "\n        do {"
+            + "\n          b = frame[pos++];"
+            + "\n          v += (b & 127) * s;"
+            + "\n          s *= 128;"
+            + "\n        } while (b & 128);"
+            + "\n        return v;"
+            + "\n      }"
+            + "\n      function rs() {"
+            + "\n        var end = rv() + pos, s = '', c;"
+            + "\n        while (pos < end) {"
+            + "\n          c = frame[pos++];"
+            + "\n          if (c >= 0xF0) {"
+            + "\n            c = ((c & 7) << 18) | ((frame[pos++] & 63) << 12) | ((frame[pos++] & 63) << 6) | (frame[pos++] & 63);"
+            + "\n            c -= 0x10000;"
+            + "\n            s += String.fromCharCode(0xD800 + (c >> 10), 0xDC00 + (c & 1023));"
+            + "\n            continue;"
+            + "\n          } else if (c >= 0xE0) {"
+            + "\n            c = ((c & 15) << 12) | ((frame[pos++] & 63) << 6) | (frame[pos++] & 63);"
+            + "\n          } else if (c >= 0xC0) {"
+            + "\n            c = ((c & 31) << 6) | (frame[pos++] & 63);"
+            + "\n          }"
+            + "\n          s += String.fromCharCode(c);"
+            + "\n        }"
+            + "\n        return s;"
+            + "\n      }"
+            + "\n      function dec() {"
+            + "\n        var t = frame[pos++], v, n, i;"
+            + "\n        switch (t) {"
+            + "\n          case 0: return null;"
+            + "\n          case 1: v = rv(); return v % 2 ? -(v + 1) / 2 : v / 2;"
+            + "\n          case 2:"
+            + "\n            v = new DataView(frame.buffer, frame.byteOffset + pos, 8).getFloat64(0);"
+            + "\n            pos += 8;"
+            + "\n            return v;"
+            + "\n          case 3: return true;"
+            + "\n          case 4: return false;"
+            + "\n          case 5: return rs();"
+            + "\n          case 6: n = rv(); return impl.j(n, dec());"
+            + "\n          case 7: return js2j[rv()];"
+            + "\n          case 8:"
+            + "\n            n = rv();"
+            + "\n            v = new Array(n);"
+            + "\n            for (i = 0; i < n; i++) v[i] = dec();"
+            + "\n            return v;"
+            + "\n          case 9: return fncns[rv()];"
+            + "\n        }"
+            + "\n        throw 'Unknown tag ' + t + ' at ' + pos;"
+            + "\n      }"
+            + "\n      var args = [ rv(), frame[pos++] === 1, dec() ];"
+            + "\n      for (var cnt = rv(); cnt > 0; cnt--) {"
+            + "\n        args.push(dec());"
+            + "\n      }"
+            + "\n      impl.fn.apply(null, args);"
+            + "\n    };"
+            + "\n    impl.frames = true;"
+            + "\n  }",
+        "frameFn=ds@1frame",
+
         "error=Cannot initialize DukeScript: @1",
         "version=$version"
     })
@@ -183,6 +410,7 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             }
         }
         this.msg = "";
+        final boolean binaryRequested = binaryTransport();
         callbackFn(new ProtoPresenterBuilder.OnPrepared() {
             @Override
             public void callbackIsPrepared(String clbk) {
@@ -196,10 +424,33 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
                 }
                 log(Level.FINE, "assertOK");
 
-                loadJS(Strings.init(key, clbk).toString());
+                if (binaryRequested) {
+                    lock.lock();
+                    try {
+                        msg = "";
+                    } finally {
+                        lock.unlock();
+                    }
+                    loadJS(Strings.init(key, clbk, Strings.initFrames(Strings.frameFn(key))).toString());
+                    if (!assertOK()) {
+                        final CharSequence err = Strings.error(msg);
+                        log(Level.WARNING, "no frames: {0}", err);
+                        throw new IllegalStateException(err.toString());
+                    }
+                    frames = "Binary".equals(msg);
+                    log(Level.FINE, "binary frames negotiated: {0}", frames);
+                } else {
+                    loadJS(Strings.init(key, clbk, "").toString());
+                }
 
                 log(Level.FINE, "callbackReady: countingDown");
-                initialized.countDown();
+                lock.lock();
+                try {
+                    initialized.countDown();
+                    resumeFlush();
+                } finally {
+                    lock.unlock();
+                }
             }
         });
     }
@@ -222,6 +473,19 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             throw new IllegalArgumentException(method);
         }
     }
+
+    public final String js2java(byte[] frame) throws Exception {
+        Frame.Reader r = new Frame.Reader(frame, 1);
+        switch (frame[0]) {
+            case Frame.KIND_RESULT:
+                result(r);
+                return null;
+            case Frame.KIND_CALL:
+                return javacall(r);
+            default:
+                throw new IllegalArgumentException("Unknown frame: " + frame[0]);
+        }
+    }
     
     abstract void dispatch(Runnable r);
 
@@ -248,13 +512,43 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         init();
         return new GFn(code, names, null);
     }
+
+    /** Registers all the functions in a single deferred message.
+     */
+    @Override
+    public Fn[] defineFns(String[] codes, String[][] names, boolean[][] keepAlive) {
+        init();
+        int size = 0;
+        for (String code : codes) {
+            size += code.length() + 64;
+        }
+        StringBuilder sb = new StringBuilder(size);
+        Fn[] arr = new Fn[codes.length];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = new GFn(codes[i], names[i], keepAlive[i], sb);
+        }
+        deferExec(sb);
+        return arr;
+    }
     
+    /** Weak identity key of an exported Java object. Keys registered
+     * with a queue are enqueued once their object is garbage collected
+     * and their {@link #id} is removed from the tables.
+     */
     private static final class Key extends WeakReference<Object> {
-        private int hash;
-        
-        public Key(Object obj) {
+        private final int hash;
+        final int id;
+
+        Key(Object obj) {
             super(obj);
             this.hash = System.identityHashCode(obj);
+            this.id = -1;
+        }
+
+        Key(Object obj, ReferenceQueue<Object> queue, int id) {
+            super(obj, queue);
+            this.hash = System.identityHashCode(obj);
+            this.id = id;
         }
 
         @Override
@@ -266,24 +560,45 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
 
         @Override
         public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
             if (obj instanceof Key) {
                 Key other = (Key)obj;
                 if (hash != other.hash) {
                     return false;
                 }
-                return true;
+                Object mine = get();
+                return mine != null && mine == other.get();
             }
             return false;
         }
     }
-    
-    private Map<Key,Integer> ids = new HashMap<Key, Integer>();
+
+    /** Weak reference to a wrapper of JavaScript object. */
+    private static final class JSRef extends WeakReference<Object> {
+        final int index;
+
+        JSRef(JSObject obj, ReferenceQueue<Object> queue) {
+            super(obj, queue);
+            this.index = obj.index;
+        }
+    }
+
+    private final Map<Key,Integer> ids = new HashMap<Key, Integer>();
+    private int nextId;
+    private final ReferenceQueue<Object> released = new ReferenceQueue<Object>();
+    private final Set<Reference<?>> handles = new HashSet<Reference<?>>();
+    /* @GuardedBy lock - functions live as long as the presenter, the
+     * code generated for JavaScriptBody methods references them weakly */
+    private final List<GFn> functions = new ArrayList<GFn>();
+    private final Map<Class<?>, Integer> stubs = new WeakHashMap<Class<?>, Integer>();
+
     int identityHashCode(Object o) {
-        Key k = new Key(o);
-        Integer val = ids.get(k);
+        Integer val = ids.get(new Key(o));
         if (val == null) {
-            int s = ids.size();
-            ids.put(k, s);
+            int s = nextId++;
+            ids.put(new Key(o, released, s), s);
             return s;
         }
         return val;
@@ -293,8 +608,10 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         if (o instanceof Enum && valueOf != null) {
             valueOf[0] = o.toString();
         }
-        int id = identityHashCode(o);
-        for (;;) {
+        lock.lock();
+        try {
+            expunge();
+            int id = identityHashCode(o);
             Object exp = findObject(id);
             if (o == exp) {
                 return id;
@@ -307,6 +624,84 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
                 return id;
             }
             throw new IllegalStateException("Collision!");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JSObject jsObject(int index) {
+        JSObject obj = new JSObject(index);
+        lock.lock();
+        try {
+            expunge();
+            handles.add(new JSRef(obj, released));
+        } finally {
+            lock.unlock();
+        }
+        return obj;
+    }
+
+    private void registerFn(GFn fn) {
+        lock.lock();
+        try {
+            functions.add(fn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes garbage collected objects from the tables. Indexes of
+     * JavaScript objects no longer referenced from Java are sent to
+     * JavaScript in a single deferred message. Call only when holding
+     * the {@link #lock}.
+     */
+    @Texts({
+        "release=ds(@1).rl([@2]);\n"
+    })
+    private void expunge() {
+        StringBuilder objs = null;
+        for (;;) {
+            Reference<?> ref = released.poll();
+            if (ref == null) {
+                break;
+            }
+            if (ref instanceof Key) {
+                Key k = (Key) ref;
+                ids.remove(k);
+                Exported exp = exported.floor(new Exported(k.id, false, null));
+                if (exp != null && exp.id == k.id) {
+                    exported.remove(exp);
+                }
+                continue;
+            }
+            handles.remove(ref);
+            objs = append(objs, ((JSRef) ref).index);
+        }
+        if (objs != null) {
+            deferExec(new StringBuilder(Strings.release(key, objs)));
+        }
+    }
+
+    private static StringBuilder append(StringBuilder sb, int value) {
+        if (sb == null) {
+            sb = new StringBuilder();
+        } else {
+            sb.append(',');
+        }
+        return sb.append(value);
+    }
+
+    /** Sizes of the handle tables. Used by tests.
+     * @return number of exported Java objects and number of Java references
+     *   to JavaScript objects
+     */
+    final int[] handleStatistics() {
+        lock.lock();
+        try {
+            expunge();
+            return new int[] { ids.size(), exported.size(), handles.size() };
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -316,68 +711,25 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
     }
     
     @Texts({
-        "fnHead=var jsvm = {};\n",
-        "fnName=jsvm.@1 = function(",
-        "fnThiz=thiz",
-        "fnNoThiz=  var thiz = null;\n",
-        "fnSep=,",
-        "fnParam=p@1",
-        "fnClose=) {\n",
-        "fnBegin=  var encParams = ds(@1).toJava(null, [",
-        "fnPPar=@2 p@1",
-        "fnBody=]);\n" +
-            "  var v = ds(@3).toVM('c', '@1', '@2', thiz ? thiz.id : null, encParams);\n" +
-            "  while (v !== null && v.indexOf && v.indexOf('javascript:') === 0) {\n" +
-            "    var script = v.substring(11);\n" +
-            "    try {\n" +
-            "      var r = eval.call(null, script);\n" +
-            "    } catch (e) {  console.warn('error: ' + e + ' executing: ' + script + ' at:\\n' + e.stack); }\n" +
-            "    v = ds(@3).toVM('jr', null, null, null, null);" +
-            "  }\n" +
-            "  return @4 ? eval('(' + v + ')') : v;\n" +
-            "};\n",
-        
-        "fnFoot=ds(@2).rg(@1, jsvm);\n"
+        "fnClass=ds(@1).rg(@2, @3);\n",
+        "fnVm=ds(@1).rg(@2, ds(@1).v(@3)(@1, @4, @5));\n"
     })
     final Integer exportVm(Object vm) {
         int jNumber = registerObject(vm, false, null, null);
         int vmNumber = COUNTER.getAndIncrement();
-        StringBuilder sb = new StringBuilder();
-        sb.append(Strings.fnHead());
-        for (Method m : vm.getClass().getMethods()) {
-            if (m.getDeclaringClass() == Object.class) {
-                continue;
+        lock.lock();
+        try {
+            Class<?> type = vm.getClass();
+            Integer stubId = stubs.get(type);
+            if (stubId == null) {
+                stubId = COUNTER.getAndIncrement();
+                stubs.put(type, stubId);
+                deferExec(new StringBuilder(Strings.fnClass(key, stubId, Dispatch.find(type).stub())));
             }
-            final Class<?>[] types = m.getParameterTypes();
-            boolean instanceMethod = 
-                types.length > 0 && 
-                m.getName().startsWith(types[0].getName().replace('.', '_') + "$");
-            int params = instanceMethod ? types.length - 1 : types.length;
-            sb.append(Strings.fnName(m.getName()));
-            String sep;
-            if (instanceMethod) {
-                sb.append(Strings.fnThiz());
-                sep = Strings.fnSep();
-            } else {
-                sep = "";
-            }
-            for (int i = 0; i < params; i++) {
-                sb.append(sep);
-                sb.append(Strings.fnParam(i));
-                sep = Strings.fnSep();
-            }
-            sb.append(Strings.fnClose());
-            if (!instanceMethod) {
-                sb.append(Strings.fnNoThiz());
-            }
-            sb.append(Strings.fnBegin(key));
-            for (int i = 0; i < params; i++) {
-                sb.append(Strings.fnPPar(i, i == 0 ? "" : ","));
-            }
-            sb.append(Strings.fnBody(jNumber, m.getName(), key, evalJS));
+            deferExec(new StringBuilder(Strings.fnVm(key, vmNumber, stubId, jNumber, evalJS)));
+        } finally {
+            lock.unlock();
         }
-        sb.append(Strings.fnFoot(vmNumber, key));
-        deferExec(sb);
         return vmNumber;
     }
 
@@ -388,7 +740,8 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         "v_object=object",
         "v_array=array",
         "v_boolean=boolean",
-        "v_error=error"
+        "v_error=error",
+        "v_frame=frame"
     })
     final Object valueOf(String typeof, String res) {
         if (Strings.v_null().equals(typeof)) { // NOI18N
@@ -401,7 +754,7 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             return findObject(Integer.parseInt(res));
         }
         if (Strings.v_object().equals(typeof)) { // NOI18N
-            return new JSObject(Integer.parseInt(res));
+            return jsObject(Integer.parseInt(res));
         }
         if (Strings.v_array().equals(typeof)) { // NOI18N
             int at = res.indexOf(':');
@@ -430,6 +783,36 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         return valueOf(typeAndValue.substring(0, colon), typeAndValue.substring(colon + 1));
     }
 
+    final Object valueOf(Frame.Reader r) {
+        int tag = r.tag();
+        switch (tag) {
+            case Frame.NULL:
+                return null;
+            case Frame.INT:
+                return Double.valueOf(r.integer());
+            case Frame.NUMBER:
+                return r.number();
+            case Frame.TRUE:
+                return Boolean.TRUE;
+            case Frame.FALSE:
+                return Boolean.FALSE;
+            case Frame.STRING:
+                return r.utf8();
+            case Frame.JAVA:
+                return findObject(r.varint());
+            case Frame.OBJECT:
+                return jsObject(r.varint());
+            case Frame.ARRAY:
+                Object[] arr = new Object[r.varint()];
+                for (int i = 0; i < arr.length; i++) {
+                    arr[i] = valueOf(r);
+                }
+                return arr;
+            default:
+                throw new IllegalStateException("Unknown tag " + tag);
+        }
+    }
+
     final void encodeObject(Object a, boolean weak, StringBuilder sb, int[] vmId) {
         if (a == null) {
             sb.append(Strings.v_null());
@@ -487,24 +870,66 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         }
     }
 
+    final void encodeFrame(Object a, boolean weak, Frame.Writer w, int[] vmId) {
+        if (a == null) {
+            w.tag(Frame.NULL);
+        } else if (a.getClass().isArray()) {
+            int len = Array.getLength(a);
+            w.tag(Frame.ARRAY).varint(len);
+            for (int i = 0; i < len; i++) {
+                encodeFrame(Array.get(a, i), weak, w, null);
+            }
+        } else if (a instanceof Integer || a instanceof Short || a instanceof Byte) {
+            w.integer(((Number) a).intValue());
+        } else if (a instanceof Number) {
+            double d = ((Number) a).doubleValue();
+            int i = (int) d;
+            if (i == d && (i != 0 || 1 / d > 0)) {
+                w.integer(i);
+            } else {
+                w.number(d);
+            }
+        } else if (a instanceof String) {
+            w.string((String) a);
+        } else if (a instanceof Boolean) {
+            w.bool((Boolean) a);
+        } else if (a instanceof Character) {
+            w.integer((Character) a);
+        } else if (a instanceof JSObject) {
+            w.tag(Frame.OBJECT).varint(((JSObject) a).index);
+        } else if (vmId != null) {
+            w.tag(Frame.VM).varint(vmId[0]);
+        } else {
+            String[] valueOf = { null };
+            w.tag(Frame.JAVA).varint(registerObject(a, weak, null, valueOf));
+            encodeFrame(valueOf[0], weak, w, null);
+        }
+    }
+
     interface OnReady {
         void callbackReady(String name);
     }
     
+    /** Element of the call stack. Each item has its own condition, so only
+     * the thread waiting for a change of this particular item is woken up.
+     * Changes are: a result has arrived, Java method has finished or a new
+     * item has been pushed on top of this one.
+     */
     private class Item implements Runnable {
         final Item prev;
+        final Condition changed = lock.newCondition();
         Boolean done;
 
-        final Method method;
+        final Dispatch.Call method;
         final Object thiz;
         final Object[] params;
         Object result;
         
-        Item(Item prev, Method method, Object thiz, Object[] params) {
+        Item(Item prev, Dispatch.Call method, Object thiz, Object[] params) {
             this.prev = prev;
             this.method = method;
             this.thiz = thiz;
-            this.params = adaptParams(method, Arrays.asList(params));
+            this.params = params;
             this.toExec = null;
         }
         
@@ -525,7 +950,7 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
                 try {
                     log(Level.FINE, "Calling {0}", method);
                     result = method.invoke(thiz, params);
-                } catch (Exception ex) {
+                } catch (Throwable ex) {
                     log(Level.SEVERE, "Cannot invoke " + method + " on " + thiz + " with " + Arrays.toString(params), ex);
                 } finally {
                     done = true;
@@ -535,10 +960,13 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         }
         
         @Override public void run() {
-            synchronized (lock()) {
+            lock.lock();
+            try {
                 log(Level.FINE, "run: {0}", this);
                 inJava();
-                lock().notifyAll();
+                changed.signalAll();
+            } finally {
+                lock.unlock();
             }
         }
         
@@ -574,7 +1002,7 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             return "javascript:" + toExec;
         }
 
-        protected final void result(String typeof, String result) {
+        protected final void result(String typeof, Object result) {
             if (this.method != null) {
                 throw new UnsupportedOperationException();
             }
@@ -586,64 +1014,132 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
     
     final void result(String typeof, String res) {
         log(Level.FINE, "result@{0}: {1}", typeof, res);
-        synchronized (lock()) {
+        lock.lock();
+        try {
             if ("OK".equals(typeof)) {
                 log(Level.FINE, "init: {0}", res);
                 this.msg = res;
-                lock().notifyAll();
+                msgChanged.signalAll();
                 return;
             }
-            call.result(typeof, res);
-            call = call.prev;
-            lock().notifyAll();
+            popResult(typeof, res);
+        } finally {
+            lock.unlock();
         }
     }
 
+    final void result(Frame.Reader r) {
+        lock.lock();
+        try {
+            Object value = valueOf(r);
+            log(Level.FINE, "result frame: {0}", value);
+            popResult(Strings.v_frame(), value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void popResult(String typeof, Object value) {
+        Item finished = call;
+        finished.result(typeof, value);
+        call = finished.prev;
+        finished.changed.signalAll();
+        resumeFlush();
+    }
+
+    /** Pushes new item on top of the call stack and wakes up
+     * the thread waiting for the previous top as well as the
+     * thread that is supposed to execute the new Java call.
+     */
+    private Item push(Item item) {
+        call = item;
+        if (item.prev != null) {
+            item.prev.changed.signalAll();
+        }
+        if (item.method != null) {
+            Item owner = caller(item);
+            if (owner != null && owner != item.prev) {
+                owner.changed.signalAll();
+            }
+        }
+        return item;
+    }
+
+    /** Finds the closest call into JavaScript below the item. The thread
+     * awaiting its result executes Java calls made on top of it, even
+     * when there are already finished Java calls in between.
+     */
+    private static Item caller(Item item) {
+        Item it = item.prev;
+        while (it != null && it.method != null) {
+            it = it.prev;
+        }
+        return it;
+    }
+
     final String javacall(
             String vmNumber, String fnName, String thizId, String encParams
     ) throws Exception {
-        synchronized (lock()) {
-            Object vm = findObject(Integer.parseInt(vmNumber));
-            assert vm != null;
+        lock.lock();
+        try {
             final Object obj = thizId == null || "null".equals(thizId)
                     ? null : valueOf("java", thizId);
-            Method method = null;
-            for (Method m : vm.getClass().getMethods()) {
-                if (m.getName().equals(fnName)) {
-                    method = m;
-                    break;
-                }
-            }
+            return javacall(Integer.parseInt(vmNumber), fnName, obj, (Object[]) valueOf(encParams));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    final String javacall(Frame.Reader r) throws Exception {
+        lock.lock();
+        try {
+            int vmNumber = r.varint();
+            String fnName = r.utf8();
+            Object obj = valueOf(r);
+            return javacall(vmNumber, fnName, obj, (Object[]) valueOf(r));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String javacall(
+            int vmNumber, String fnName, Object obj, Object[] args
+    ) throws Exception {
+        lock.lock();
+        try {
+            Object vm = findObject(vmNumber);
+            assert vm != null;
+            Dispatch.Call method = Dispatch.find(vm.getClass()).find(fnName);
             assert method != null;
-            List<Object> params = new ArrayList<Object>();
+            Object[] params;
             if (obj != null) {
-                params.add(obj);
+                params = new Object[args.length + 1];
+                params[0] = obj;
+                System.arraycopy(args, 0, params, 1, args.length);
+            } else {
+                params = args;
             }
-            params.addAll(Arrays.asList((Object[]) valueOf(encParams)));
-            Object[] converted = adaptParams(method, params);
             boolean first = call == null;
-            log(Level.FINE, "jc: {0}@{1}args: {2} is first: {3}, now: {4}", new Object[]{method.getName(), vm, params, first, call});
-            call = new Item(call, method, vm, converted);
+            log(Level.FINE, "jc: {0}@{1}args: {2} is first: {3}, now: {4}", new Object[]{fnName, vm, Arrays.asList(params), first, call});
+            Item javaCall = push(new Item(call, method, vm, params));
             if (first || synchronous) {
-                if (call != null) {
-                    dispatch(call);
-                }
-            } else {
-                lock().notifyAll();
+                dispatch(javaCall);
             }
             return javaresult();
+        } finally {
+            lock.unlock();
         }
     }
 
     final String javaresult() throws IllegalStateException, InterruptedException {
-        synchronized (lock()) {
+        lock.lock();
+        try {
             boolean[] finished = {false};
             for (;;) {
-                if (deferred != null) {
-                    deferred.insert(0, "javascript:");
-                    String ret = deferred.toString();
-                    deferred = null;
-                    return ret;
+                StringBuilder pending = takeDeferred();
+                if (pending != null) {
+                    pending.insert(0, "javascript:");
+                    return pending.toString();
                 }
                 finished[0] = false;
                 String jsToExec = call.inJavaScript(finished);
@@ -651,15 +1147,23 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
                 if (jsToExec != null) {
                     if (finished[0]) {
                         call = call.prev;
+                        resumeFlush();
                     }
                     return jsToExec;
                 }
-                lock().wait();
+                call.changed.await();
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     private StringBuilder deferred;
+    private int deferredCalls;
+    private long batches;
+    private long batchedCalls;
+    /** delay of the pending flush or {@code -1} when none is scheduled */
+    private int flushScheduled = -1;
     private Collection<Object> arguments = new LinkedList<Object>();
 
     public final void loadScript(final Reader reader) throws Exception {
@@ -677,13 +1181,102 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
 
 
     final void deferExec(StringBuilder sb) {
-        synchronized (lock()) {
+        lock.lock();
+        try {
             log(Level.FINE, "deferExec: {0} empty: {1}, call: {2}", new Object[]{sb, deferred == null, call});
             if (deferred == null) {
                 deferred = sb;
             } else {
                 deferred.append(sb);
             }
+            deferredCalls++;
+            if (batchDelay >= 0) {
+                int delay = deferred.length() >= batchSize ? 0 : batchDelay;
+                if (flushScheduled == -1 || delay < flushScheduled) {
+                    scheduleFlush(delay);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes the deferred calls, updates the statistics.
+     * Call only when holding the {@link #lock}.
+     *
+     * @return deferred calls or {@code null}
+     */
+    private StringBuilder takeDeferred() {
+        StringBuilder sb = deferred;
+        if (sb != null) {
+            deferred = null;
+            batches++;
+            batchedCalls += deferredCalls;
+            log(Level.FINE, "Sending {0} calls in {1} characters, {2} calls per batch on average",
+                deferredCalls, sb.length(), batchedCalls / batches
+            );
+            deferredCalls = 0;
+        }
+        return sb;
+    }
+
+    private void scheduleFlush(int delay) {
+        flushScheduled = delay;
+        final Runnable send = new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+                try {
+                    flushScheduled = -1;
+                    if (call != null || initialized.getCount() > 0) {
+                        // resumeFlush() sends them later
+                        return;
+                    }
+                    StringBuilder sb = takeDeferred();
+                    if (sb != null) {
+                        loadJS(sb.toString());
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+        Scheduler.SERVICE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(send);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /** Schedules a flush of calls deferred while a call or the
+     * initialization was in progress. Call only when holding the {@link #lock}.
+     */
+    private void resumeFlush() {
+        if (batchDelay >= 0 && deferred != null && flushScheduled == -1
+            && call == null && initialized.getCount() == 0
+        ) {
+            scheduleFlush(0);
+        }
+    }
+
+    final long[] batchStatistics() {
+        lock.lock();
+        try {
+            return new long[] { batches, batchedCalls };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Scheduler implements ThreadFactory {
+        static final ScheduledExecutorService SERVICE = Executors.newSingleThreadScheduledExecutor(new Scheduler());
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Generic presenter flush");
+            t.setDaemon(true);
+            return t;
         }
     }
 
@@ -691,55 +1284,46 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         "flushExec=\n\nds(@1).toJava('r',null);\n"
     })
     void flushImpl() {
-        synchronized (lock()) {
+        lock.lock();
+        try {
             if (deferred != null) {
                 log(Level.FINE, "flush: {0}", deferred);
                 exec(Strings.flushExec(key).toString());
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     Object exec(String fn) {
         Object ret;
         boolean first;
-        synchronized (lock()) {
-            if (deferred != null) {
-                deferred.append(fn);
-                fn = deferred.toString();
-                deferred = null;
+        lock.lock();
+        try {
+            StringBuilder pending = takeDeferred();
+            if (pending != null) {
+                pending.append(fn);
+                fn = pending.toString();
                 log(Level.FINE, "Flushing {0}", fn);
             }
 
             Item myCall;
             boolean load;
             if (call != null) {
-                call = myCall = new Item(call, fn);
-                lock().notifyAll();
+                myCall = push(new Item(call, fn));
                 load = synchronous;
                 first = false;
             } else {
-                call = myCall = new Item(null, null);
+                myCall = push(new Item(null, null));
                 load = true;
                 first = true;
             }
             if (load) {
                 loadJS(fn);
             }
-            for (;;) {
-                if (myCall.typeof != null) {
-                    break;
-                }
-                try {
-                    lock().wait();
-                } catch (InterruptedException ex) {
-                    log(Level.SEVERE, null, ex);
-                }
-                if (call != null) {
-                    call.inJava();
-                }
-                lock().notifyAll();
-            }
-            ret = valueOf(myCall.typeof, (String) myCall.result);
+            ret = awaitResult(myCall);
+        } finally {
+            lock.unlock();
         }
         if (first) {
             arguments.clear();
@@ -747,42 +1331,74 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         return ret;
     }
 
+    /** Executes the frame if there is no pending call. Frames can only be
+     * delivered at the top level - when JavaScript is calling back into Java,
+     * the only way to reach it is the textual result of the callback.
+     *
+     * @param frame the encoded call
+     * @param ret one element array to store the result to
+     * @return {@code true} if the frame was executed, {@code false} if
+     *   the caller has to fall back to textual protocol
+     */
+    final boolean execFrame(Frame.Writer frame, Object[] ret) {
+        lock.lock();
+        try {
+            if (call != null) {
+                return false;
+            }
+            Item myCall = push(new Item(null, null));
+            StringBuilder pending = takeDeferred();
+            if (pending != null) {
+                log(Level.FINE, "Flushing {0}", pending);
+                loadJS(pending.toString());
+            }
+            loadFrame(Strings.frameFn(key).toString(), frame.toByteArray());
+            ret[0] = awaitResult(myCall);
+        } finally {
+            lock.unlock();
+        }
+        arguments.clear();
+        return true;
+    }
+
+    private Object awaitResult(Item myCall) {
+        for (;;) {
+            if (myCall.typeof != null) {
+                break;
+            }
+            try {
+                myCall.changed.await();
+            } catch (InterruptedException ex) {
+                log(Level.SEVERE, null, ex);
+            }
+            Item top = call;
+            if (top != null && caller(top) == myCall) {
+                top.inJava();
+                top.changed.signalAll();
+            }
+        }
+        if (Strings.v_frame().equals(myCall.typeof)) {
+            return myCall.result;
+        }
+        return valueOf(myCall.typeof, (String) myCall.result);
+    }
+
     final boolean assertOK() {
-        synchronized (lock()) {
+        lock.lock();
+        try {
             if (msg == null || msg.length() == 0) {
                 try {
-                    lock().wait(10000);
+                    msgChanged.await(10, TimeUnit.SECONDS);
                 } catch (InterruptedException ex) {
                     // OK, go on and check
                 }
             }
-            return "OK".equals(msg) || "Initialized".equals(msg);
+            return "OK".equals(msg) || "Initialized".equals(msg) || "Binary".equals(msg);
+        } finally {
+            lock.unlock();
         }
     }
     
-    private static Object[] adaptParams(Method toCall, List<Object> args) {
-        final Object[] arr = new Object[args.size()];
-        final Class<?>[] types = toCall.getParameterTypes();
-        for (int i = 0; i < arr.length; i++) {
-            arr[i] = adaptType(types[i], args.get(i));
-        }
-        return arr;
-    }
-    
-    private static Object adaptType(Class<?> type, Object value) {
-        if (type.isPrimitive() && value instanceof Number) {
-            final Number n = (Number)value;
-            if (type == Byte.TYPE) return n.byteValue();
-            if (type == Short.TYPE) return n.shortValue();
-            if (type == Integer.TYPE) return n.intValue();
-            if (type == Long.TYPE) return n.longValue();
-            if (type == Float.TYPE) return n.floatValue();
-            if (type == Double.TYPE) return n.doubleValue();
-            if (type == Character.TYPE) return (char)n.intValue();
-        }
-        return value;
-    }
-    
     private static final class JSObject {
         private final int index;
 
@@ -829,11 +1445,15 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
         private final boolean[] keepAlive;
         
         public GFn(String code, String[] names, boolean[] ka) {
+            this(code, names, ka, null);
+        }
+
+        GFn(String code, String[] names, boolean[] ka, StringBuilder into) {
             super(Generic.this);
             this.id = COUNTER.getAndIncrement();
             this.keepAlive = ka;
             
-            StringBuilder sb = new StringBuilder(1024);
+            StringBuilder sb = into != null ? into : new StringBuilder(1024);
             sb.append(Strings.registerFn(id, key));
             String sep = "";
             boolean isVm = false;
@@ -847,7 +1467,10 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             }
             sb.append(Strings.registerCode(code));
             this.vmId = isVm ? new int[] { -1 } : null;
-            deferExec(sb);
+            if (into == null) {
+                deferExec(sb);
+            }
+            registerFn(this);
         }
 
         @Override
@@ -867,7 +1490,25 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
             if (vmId != null && vmId[0] < 0) {
                 vmId[0] = exportVm(args[args.length - 1]);
             }
-            
+
+            arguments.add(thiz);
+            arguments.add(args);
+
+            if (wait4js && frames) {
+                Frame.Writer w = new Frame.Writer(256);
+                w.varint(id).tag(1);
+                encodeFrame(thiz, false, w, null);
+                w.varint(args.length);
+                for (int i = 0; i < args.length; i++) {
+                    boolean weak = keepAlive != null && !keepAlive[i];
+                    encodeFrame(args[i], weak, w, i == args.length - 1 ? vmId : null);
+                }
+                Object[] ret = { null };
+                if (execFrame(w, ret)) {
+                    return ret[0];
+                }
+            }
+
             StringBuilder sb = new StringBuilder(256);
             sb.append(Strings.invokeImplFn(id, wait4js, key));
             encodeObject(thiz, false, sb, null);
@@ -877,9 +1518,6 @@ abstract class Generic implements Fn.Presenter, Fn.KeepAlive, Flushable {
                 encodeObject(args[i], weak, sb, i == args.length - 1 ? vmId : null);
             }
             sb.append(");");
-            
-            arguments.add(thiz);
-            arguments.add(args);
 
             if (wait4js) {
                 return exec(sb.toString());
@@ -25,7 +25,9 @@ import org.netbeans.html.boot.spi.Fn.Presenter;
 /** The <em>prototypical</em> presenter. An implementation of a {@link Presenter} based on
  * top of textual protocol transferred between JVM and JavaScript engines. Use
  * {@link ProtoPresenterBuilder#newBuilder()} to construct instance of this
- * interface.
+ * interface. The interface is only implemented by presenters created
+ * by {@link ProtoPresenterBuilder}, new methods may be added to it
+ * in future versions.
  */
 public interface ProtoPresenter extends Fn.Presenter, Fn.KeepAlive, Flushable {
     /** Dispatches callback from JavaScript back into appropriate
@@ -43,6 +45,18 @@ public interface ProtoPresenter extends Fn.Presenter, Fn.KeepAlive, Flushable {
      */
     String js2java(String method, String a1, String a2, String a3, String a4) throws Exception;
 
+    /** Dispatches binary encoded callback from JavaScript back into
+     * appropriate Java implementation. Only used when
+     * {@link ProtoPresenterBuilder#loadFrames binary protocol} is enabled.
+     *
+     * @param frame the content of {@code Uint8Array} passed as first
+     *   argument to the callback function with method {@code "b"}
+     * @return returned string
+     * @throws Exception if something goes wrong
+     * @since 2.0
+     */
+    String js2java(byte[] frame) throws Exception;
+
     /** Looks for additional data stored in the presenter. Data
      * can be registered via {@link ProtoPresenterBuilder#register} method.
      *
@@ -29,6 +29,7 @@ import org.netbeans.html.boot.spi.Fn.Presenter;
  */
 public final class ProtoPresenterBuilder {
     private Evaluator loadScript;
+    private FrameEvaluator loadFrame;
     private Executor executor;
     private Preparator onReady;
     private boolean sync;
@@ -38,6 +39,8 @@ public final class ProtoPresenterBuilder {
     private Displayer displayer;
     private Logger logger;
     private boolean implementExecutor;
+    private int batchDelay = -1;
+    private int batchSize;
     private final List<Object> data = new ArrayList<Object>();
 
     private ProtoPresenterBuilder() {
@@ -74,6 +77,42 @@ public final class ProtoPresenterBuilder {
         return this;
     }
 
+    /** Interface for passing binary encoded data into JavaScript engine.
+     * Registered via {@link #loadFrames} method.
+     */
+    @FunctionalInterface
+    public interface FrameEvaluator {
+        /** Converts the frame into JavaScript {@code Uint8Array} and
+         * invokes global JavaScript function {@code receiver} with it
+         * as the only argument. Frames are supposed to be processed in
+         * the same order and with the same synchronicity as code passed
+         * to {@link Evaluator#eval(java.lang.String)}.
+         *
+         * @param receiver name of global JavaScript function to call
+         * @param frame the binary data
+         */
+        public void eval(String receiver, byte[] frame);
+    }
+
+    /** Enables binary protocol between the JVM and JavaScript. Presenters
+     * that can pass byte arrays or typed arrays between the two
+     * engines may register a {@link FrameEvaluator} to avoid encoding
+     * calls and their results as text. By doing so they also promise
+     * that the callback function prepared by {@link Preparator} handles
+     * method {@code "b"} by converting its first argument (an instance of
+     * {@code Uint8Array}) to a {@code byte[]} and passing it to
+     * {@link ProtoPresenter#js2java(byte[])}. The binary protocol is
+     * negotiated during initialization - if the JavaScript engine
+     * doesn't support typed arrays, the textual protocol remains in use.
+     *
+     * @param loadFrame the evaluator of binary frames
+     * @return this builder
+     */
+    public ProtoPresenterBuilder loadFrames(FrameEvaluator loadFrame) {
+        this.loadFrame = loadFrame;
+        return this;
+    }
+
     /**
      * Registers the executor to run all tasks in.
      *
@@ -89,6 +128,25 @@ public final class ProtoPresenterBuilder {
         return this;
     }
 
+    /** Sends calls that don't wait for a result in batches. By default
+     * such calls are kept until the next call that waits for a result
+     * or until the presenter is {@link ProtoPresenter#flush() flushed}.
+     * When batching is enabled, the calls are coalesced and sent
+     * to the JavaScript engine at most {@code maxDelay} milliseconds
+     * after the first of them was made or as soon as their size exceeds
+     * {@code maxSize} characters. Useful for presenters where each
+     * {@link Evaluator#eval(java.lang.String) evaluation} is expensive.
+     *
+     * @param maxDelay maximal delay in milliseconds
+     * @param maxSize number of characters to send immediately
+     * @return this builder
+     */
+    public ProtoPresenterBuilder batch(int maxDelay, int maxSize) {
+        this.batchDelay = maxDelay;
+        this.batchSize = maxSize;
+        return this;
+    }
+
     /** Prepares the JavaScript environment. Defines a globally visible
      * JavaScript function which takes five string arguments and
      * then calls {@link ProtoPresenter#js2java(java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String) }
@@ -227,6 +285,7 @@ public final class ProtoPresenterBuilder {
 
     private static class GenPresenter extends Generic implements ProtoPresenter {
         private final Evaluator loadScript;
+        private final FrameEvaluator loadFrame;
         private final Executor executor;
         private final Preparator onReady;
         private final Displayer displayer;
@@ -236,11 +295,15 @@ public final class ProtoPresenterBuilder {
         GenPresenter(ProtoPresenterBuilder b) {
             super(b.sync, b.eval, b.type, b.app);
             this.loadScript = b.loadScript;
+            this.loadFrame = b.loadFrame;
             this.executor = b.executor;
             this.onReady = b.onReady;
             this.displayer = b.displayer;
             this.logger = b.logger;
             this.data = b.data.toArray();
+            if (b.batchDelay >= 0) {
+                batch(b.batchDelay, b.batchSize);
+            }
         }
 
         @Override
@@ -260,6 +323,16 @@ public final class ProtoPresenterBuilder {
             loadScript.eval(js);
         }
 
+        @Override
+        boolean binaryTransport() {
+            return loadFrame != null;
+        }
+
+        @Override
+        void loadFrame(String receiver, byte[] frame) {
+            loadFrame.eval(receiver, frame);
+        }
+
         @Override
         void dispatch(Runnable r) {
             executor.execute(r);
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BatchTest {
+    private ScriptedPresenter p;
+
+    @BeforeMethod public void initInstance() {
+        p = new ScriptedPresenter();
+        p.init();
+    }
+
+    @Test public void deferredCallsAreSentInOneBatch() throws Exception {
+        p.batch(50, 64 * 1024);
+        for (int i = 0; i < 100; i++) {
+            p.deferExec(new StringBuilder("call(" + i + ");"));
+        }
+        String js = awaitLoaded();
+        assertTrue(js.startsWith("call(0);"), js);
+        assertTrue(js.endsWith("call(99);"), js);
+        assertEquals(p.batchStatistics(), new long[] { 1, 100 });
+    }
+
+    @Test public void bigBatchIsSentImmediately() throws Exception {
+        p.batch(60000, 100);
+        for (int i = 0; i < 20; i++) {
+            p.deferExec(new StringBuilder("call(" + i + ");"));
+        }
+        String js = awaitLoaded();
+        assertTrue(js.length() >= 100, "Sent when size was reached: " + js);
+    }
+
+    @Test public void overflowingCallsAreSentOnceInOrder() throws Exception {
+        p.batch(60000, 1);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            expected.append("call(").append(i).append(");");
+            p.deferExec(new StringBuilder("call(" + i + ");"));
+        }
+        StringBuilder sent = new StringBuilder();
+        synchronized (p.loaded) {
+            for (int i = 0; i < 100 && sent.length() < expected.length(); i++) {
+                p.loaded.wait(100);
+                sent.setLength(0);
+                for (String js : p.loaded) {
+                    sent.append(js);
+                }
+            }
+        }
+        assertEquals(sent.toString(), expected.toString());
+        long[] stats = p.batchStatistics();
+        assertEquals(stats[1], 100, "All calls sent");
+        assertTrue(stats[0] <= 100, "At most one batch per call: " + stats[0]);
+    }
+
+    @Test public void callsDeferredDuringCallAreSentWhenItFinishes() throws Exception {
+        p.batch(10, 64 * 1024);
+        Thread running = new Thread() {
+            @Override
+            public void run() {
+                p.exec("block();");
+            }
+        };
+        running.start();
+        assertEquals(awaitLoaded(), "block();");
+
+        p.deferExec(new StringBuilder("call();"));
+        Thread.sleep(100);
+        synchronized (p.loaded) {
+            assertEquals(p.loaded.size(), 1, "Not sent while the call runs: " + p.loaded);
+        }
+
+        p.result("number", "1");
+        running.join(10000);
+        synchronized (p.loaded) {
+            while (p.loaded.size() < 2) {
+                p.loaded.wait(10000);
+            }
+            assertEquals(p.loaded.get(1), "call();");
+        }
+        assertEquals(p.batchStatistics(), new long[] { 1, 1 });
+    }
+
+    @Test public void noBatchingByDefault() throws Exception {
+        p.deferExec(new StringBuilder("call();"));
+        Thread.sleep(100);
+        synchronized (p.loaded) {
+            assertTrue(p.loaded.isEmpty(), "Nothing sent: " + p.loaded);
+        }
+    }
+
+    private String awaitLoaded() throws InterruptedException {
+        synchronized (p.loaded) {
+            while (p.loaded.isEmpty()) {
+                p.loaded.wait(10000);
+            }
+            return p.loaded.get(0);
+        }
+    }
+}
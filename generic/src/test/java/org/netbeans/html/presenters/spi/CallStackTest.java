@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Simulates JavaScript engine running in its own thread to verify
+ * the hand off between the calling thread, the JavaScript thread
+ * and the dispatch thread.
+ */
+public class CallStackTest {
+    private ExecutorService engine;
+    private ExecutorService dispatcher;
+    private ScriptedPresenter p;
+    private VM vm;
+    private int vmId;
+
+    @BeforeMethod public void initInstance() {
+        engine = Executors.newSingleThreadExecutor();
+        dispatcher = Executors.newSingleThreadExecutor();
+        p = new ScriptedPresenter(engine, dispatcher) {
+            @Override
+            void script(String js) throws Exception {
+                CallStackTest.this.evaluate(js);
+            }
+        };
+        p.init();
+        vm = new VM(p);
+        vmId = p.registerObject(vm, false, null, null);
+    }
+
+    @AfterMethod public void shutdown() {
+        engine.shutdownNow();
+        dispatcher.shutdownNow();
+        p.assertNoFailure();
+    }
+
+    private void evaluate(String js) throws Exception {
+        if (js.endsWith("plain();")) {
+            p.result("number", "1");
+        } else if (js.endsWith("nested();")) {
+            p.result("number", "5");
+        } else if (js.endsWith("callJava();")) {
+            String v = p.javacall("" + vmId, "twice", null, "array:1:9:number:21");
+            while (v.startsWith("javascript:")) {
+                evaluate(v.substring(11));
+                v = p.javaresult();
+            }
+            p.result("number", v);
+        } else if (js.endsWith("callLater();")) {
+            String v = p.javacall("" + vmId, "later", null, "array:1:9:number:21");
+            while (v.startsWith("javascript:")) {
+                evaluate(v.substring(11));
+                v = p.javaresult();
+            }
+            p.result("number", v);
+        } else if (js.endsWith("again();")) {
+            String v = p.javacall("" + vmId, "twice", null, "array:1:9:number:21");
+            while (v.startsWith("javascript:")) {
+                evaluate(v.substring(11));
+                v = p.javaresult();
+            }
+        }
+    }
+
+    @Test public void plainCalls() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(p.exec("plain();"), 1.0);
+        }
+    }
+
+    @Test public void callbacksIntoJava() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(p.exec("callJava();"), 47.0);
+        }
+        assertEquals(vm.calls, 1000);
+    }
+
+    @Test(timeOut = 60000) public void deferredCallbacksIntoJava() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(p.exec("callLater();"), 21.0);
+        }
+        assertEquals(vm.calls, 100);
+    }
+
+    @Test public void callbackFromJavaScript() throws Exception {
+        final String[] res = { null };
+        engine.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String v = p.javacall("" + vmId, "twice", null, "array:1:9:number:21");
+                    while (v.startsWith("javascript:")) {
+                        evaluate(v.substring(11));
+                        v = p.javaresult();
+                    }
+                    res[0] = v;
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }).get();
+        assertEquals(res[0], "47");
+    }
+
+    public static final class VM {
+        private final Generic p;
+        int calls;
+
+        VM(Generic p) {
+            this.p = p;
+        }
+
+        public int twice(int x) {
+            calls++;
+            Object nested = p.exec("nested();");
+            return x * 2 + ((Number) nested).intValue();
+        }
+
+        public int later(int x) {
+            p.deferExec(new StringBuilder("again();"));
+            return x;
+        }
+    }
+}
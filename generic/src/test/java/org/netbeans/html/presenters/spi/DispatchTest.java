@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DispatchTest {
+    private ScriptedPresenter p;
+
+    @BeforeMethod public void initInstance() {
+        p = new ScriptedPresenter() {
+            @Override
+            void script(String js) throws Exception {
+                super.script(js);
+                result("null", "null");
+            }
+        };
+        p.init();
+    }
+
+    @Test public void numbersAreAdaptedToParameterTypes() throws Throwable {
+        Dispatch d = Dispatch.find(VM.class);
+        assertSame(Dispatch.find(VM.class), d, "Computed once");
+        Object res = d.find("mix").invoke(new VM(), new Object[] { 1.0, 2.0, 3.0, 65.0, "x", true });
+        assertEquals(res, "1:2:3.0:A:x:true");
+        assertEquals(d.find("neg").invoke(null, new Object[] { 5.0 }), -5);
+        assertNull(d.find("unknown"));
+    }
+
+    @Test public void numbersAreAdaptedForReflectiveCalls() throws Throwable {
+        Dispatch d = Dispatch.find(Hidden.class);
+        Object res = d.find("mix").invoke(new Hidden(), new Object[] { 1.0, 2.0, 3.0, 65.0, 4.0 });
+        assertEquals(res, "1:2:3.0:A:4");
+        assertEquals(d.find("neg").invoke(null, new Object[] { 5.0 }), -5);
+    }
+
+    @Test public void stubIsShippedOncePerClass() {
+        p.exportVm(new VM());
+        p.exportVm(new VM());
+        p.exec("0;");
+        assertEquals(p.loaded.size(), 1, "One script: " + p.loaded);
+        String js = p.loaded.get(0);
+        String stub = Dispatch.find(VM.class).stub();
+        int at = js.indexOf(stub);
+        assertTrue(at >= 0, "Stub is sent: " + js);
+        assertEquals(js.indexOf(stub, at + 1), -1, "Only once: " + js);
+        assertTrue(stub.contains("jsvm.mix = function("), stub);
+    }
+
+    static final class Hidden {
+        public String mix(int i, long l, double d, char c, byte b) {
+            return i + ":" + l + ":" + d + ":" + c + ":" + b;
+        }
+
+        public static int neg(int x) {
+            return -x;
+        }
+    }
+
+    public static final class VM {
+        public String mix(int i, long l, double d, char c, String s, boolean b) {
+            return i + ":" + l + ":" + d + ":" + c + ":" + s + ":" + b;
+        }
+
+        public static int neg(int x) {
+            return -x;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import java.net.URL;
+import static org.testng.Assert.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FrameTest {
+    private Generic p;
+    @BeforeMethod public void initInstance() {
+        p = new Generic(true, true, "type", "app") {
+            @Override
+            void log(Level level, String msg, Object... args) {
+            }
+
+            @Override
+            void callbackFn(ProtoPresenterBuilder.OnPrepared onReady) {
+            }
+
+            @Override
+            void loadJS(String js) {
+            }
+
+            @Override
+            void loadFrame(String receiver, byte[] frame) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            void dispatch(Runnable r) {
+            }
+
+            @Override
+            public void displayPage(URL url, Runnable r) {
+            }
+        };
+    }
+
+    @Test public void primitiveValues() {
+        Frame.Writer w = new Frame.Writer(1);
+        w.integer(0).integer(-1).integer(Integer.MAX_VALUE).integer(Integer.MIN_VALUE);
+        w.number(Math.PI).number(Double.NaN).bool(true).bool(false).tag(Frame.NULL);
+
+        Frame.Reader r = new Frame.Reader(w.toByteArray(), 0);
+        assertEquals(p.valueOf(r), 0.0);
+        assertEquals(p.valueOf(r), -1.0);
+        assertEquals(p.valueOf(r), (double) Integer.MAX_VALUE);
+        assertEquals(p.valueOf(r), (double) Integer.MIN_VALUE);
+        assertEquals(p.valueOf(r), Math.PI);
+        assertTrue(((Double) p.valueOf(r)).isNaN(), "NaN is preserved");
+        assertEquals(p.valueOf(r), Boolean.TRUE);
+        assertEquals(p.valueOf(r), Boolean.FALSE);
+        assertNull(p.valueOf(r));
+        assertFalse(r.hasMore(), "Everything has been read");
+    }
+
+    @Test public void utf8Strings() {
+        String text = "Ahoj člověče, 😀!";
+        Frame.Writer w = new Frame.Writer(4);
+        w.string(text).string("");
+        Frame.Reader r = new Frame.Reader(w.toByteArray(), 0);
+        assertEquals(p.valueOf(r), text);
+        assertEquals(p.valueOf(r), "");
+    }
+
+    @Test public void arrayOfNumbers() {
+        int[] arr = new int[10000];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i * 31 - 5000;
+        }
+        Frame.Writer w = new Frame.Writer(16);
+        p.encodeFrame(arr, false, w, null);
+
+        Object res = p.valueOf(new Frame.Reader(w.toByteArray(), 0));
+        assertTrue(res instanceof Object[], "It is an array: " + res);
+        Object[] decoded = (Object[]) res;
+        assertEquals(decoded.length, arr.length);
+        for (int i = 0; i < arr.length; i++) {
+            assertEquals(decoded[i], (double) arr[i], "Same value at " + i);
+        }
+    }
+
+    @Test public void javaObjectIsReferencedById() {
+        Object obj = new Object();
+        Frame.Writer w = new Frame.Writer(16);
+        p.encodeFrame(new Object[] { obj, 'x', 3.5f, 1L << 40 }, false, w, null);
+
+        Frame.Reader r = new Frame.Reader(w.toByteArray(), 0);
+        assertEquals(r.tag(), Frame.ARRAY);
+        assertEquals(r.varint(), 4);
+        assertEquals(r.tag(), Frame.JAVA);
+        assertSame(p.findObject(r.varint()), obj);
+        assertNull(p.valueOf(r), "No valueOf for plain objects");
+        assertEquals(p.valueOf(r), (double) 'x');
+        assertEquals(p.valueOf(r), 3.5);
+        assertEquals(p.valueOf(r), (double) (1L << 40));
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static org.testng.Assert.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Registers many objects and checks the handle tables shrink. The number
+ * of calls can be increased by <code>-Dgeneric.handles.calls=1000000</code>.
+ */
+public class HandleTableTest {
+    private static final int CALLS = Integer.getInteger("generic.handles.calls", 5000);
+    private static final Pattern RELEASE = Pattern.compile("\\.rl\\(\\[([0-9,]+)\\]\\)");
+    private ScriptedPresenter p;
+
+    @BeforeMethod public void initInstance() {
+        p = new ScriptedPresenter();
+        p.init();
+        p.batch(0, 1);
+    }
+
+    @Test public void weakJavaObjectsAreReclaimed() throws Exception {
+        Object alive = new Object();
+        int aliveId = p.registerObject(alive, true, null, null);
+        Object last = null;
+        for (int i = 0; i < CALLS; i++) {
+            last = new Object();
+            p.registerObject(last, true, null, null);
+        }
+        Reference<Object> ref = new WeakReference<Object>(last);
+        last = null;
+        awaitGC(ref);
+        int[] stats = awaitStatistics(0, 2);
+        assertEquals(stats[0], stats[1], "Same number of keys and objects");
+        assertSame(p.findObject(aliveId), alive, "Referenced object remains");
+        assertEquals(p.registerObject(alive, true, null, null), aliveId, "Same id");
+    }
+
+    @Test public void javaScriptObjectsAreReleased() throws Exception {
+        Object alive = p.valueOf("object", "" + CALLS);
+        Object last = null;
+        for (int i = 0; i < CALLS; i++) {
+            last = p.valueOf("object", "" + i);
+        }
+        Reference<Object> ref = new WeakReference<Object>(last);
+        last = null;
+        awaitGC(ref);
+        int[] stats = awaitStatistics(2, 1);
+        assertEquals(stats[2], 1, "Only one JavaScript object referenced");
+
+        boolean[] released = new boolean[CALLS + 1];
+        int count = 0;
+        int processed = 0;
+        for (int i = 0; i < 100 && count < CALLS; i++) {
+            Thread.sleep(10);
+            synchronized (p.loaded) {
+                while (processed < p.loaded.size()) {
+                    Matcher m = RELEASE.matcher(p.loaded.get(processed++));
+                    while (m.find()) {
+                        for (String index : m.group(1).split(",")) {
+                            released[Integer.parseInt(index)] = true;
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < CALLS; i++) {
+            assertTrue(released[i], "Object " + i + " was released");
+        }
+        assertFalse(released[CALLS], "Referenced object isn't released: " + alive);
+        assertEquals(count, CALLS, "Each object released once");
+    }
+
+    private static void awaitGC(Reference<?> ref) throws InterruptedException {
+        for (int i = 0; i < 100 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get(), "Object can be collected");
+    }
+
+    private int[] awaitStatistics(int index, int max) throws InterruptedException {
+        int[] stats = null;
+        for (int i = 0; i < 100; i++) {
+            System.gc();
+            Thread.sleep(10);
+            stats = p.handleStatistics();
+            if (stats[index] <= max) {
+                return stats;
+            }
+        }
+        fail("Tables haven't shrinked: " + stats[index]);
+        return stats;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/** Presenter for unit tests. Scripts are handled by {@link #evaluate(java.lang.String)},
+ * either directly or in the <em>engine</em> executor. It answers the
+ * initialization handshake and collects all other scripts in {@link #loaded}.
+ * Override it or {@link #script(java.lang.String)} to simulate JavaScript.
+ */
+class ScriptedPresenter extends Generic {
+    final List<String> loaded = new ArrayList<String>();
+    private final Executor engine;
+    private final Executor dispatcher;
+    private Throwable failure;
+
+    ScriptedPresenter() {
+        this(null, null);
+    }
+
+    /**
+     * @param engine executor to evaluate scripts in or {@code null}
+     * @param dispatcher executor for {@link #dispatch(java.lang.Runnable)}
+     *   or {@code null}
+     */
+    ScriptedPresenter(Executor engine, Executor dispatcher) {
+        super(false, true, "type", "app");
+        this.engine = engine;
+        this.dispatcher = dispatcher;
+    }
+
+    /** Handles a script sent to JavaScript. Answers the initialization
+     * and passes other scripts to {@link #script(java.lang.String)}.
+     * @param js the script
+     * @throws Exception if evaluation fails
+     */
+    void evaluate(String js) throws Exception {
+        if (js.startsWith("try {")) {
+            result("OK", "OK");
+            return;
+        }
+        if (js.contains("impl.key")) {
+            result("OK", "Initialized");
+            return;
+        }
+        script(js);
+    }
+
+    /** Records the script in {@link #loaded}.
+     * @param js the script
+     * @throws Exception if evaluation fails
+     */
+    void script(String js) throws Exception {
+        synchronized (loaded) {
+            loaded.add(js);
+            loaded.notifyAll();
+        }
+    }
+
+    /** Rethrows the first failure of {@link #evaluate(java.lang.String)}.
+     */
+    final synchronized void assertNoFailure() {
+        if (failure != null) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    @Override
+    void log(Level level, String msg, Object... args) {
+    }
+
+    @Override
+    void callbackFn(ProtoPresenterBuilder.OnPrepared onReady) {
+        onReady.callbackIsPrepared("clbk");
+    }
+
+    @Override
+    void loadJS(final String js) {
+        if (engine == null) {
+            evaluateOrFail(js);
+            return;
+        }
+        engine.execute(new Runnable() {
+            @Override
+            public void run() {
+                evaluateOrFail(js);
+            }
+        });
+    }
+
+    private void evaluateOrFail(String js) {
+        try {
+            evaluate(js);
+        } catch (Exception ex) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+            result("error", ex.toString());
+        }
+    }
+
+    @Override
+    void loadFrame(String receiver, byte[] frame) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    void dispatch(Runnable r) {
+        if (dispatcher == null) {
+            r.run();
+        } else {
+            dispatcher.execute(r);
+        }
+    }
+
+    @Override
+    public void displayPage(URL url, Runnable r) {
+    }
+}
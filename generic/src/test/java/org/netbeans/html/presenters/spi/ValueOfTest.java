@@ -42,6 +42,11 @@ public class ValueOfTest {
             void loadJS(String js) {
             }
 
+            @Override
+            void loadFrame(String receiver, byte[] frame) {
+                throw new UnsupportedOperationException();
+            }
+
             @Override
             void dispatch(Runnable r) {
             }
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.presenters.spi.test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.netbeans.html.boot.spi.Fn;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+/** Runs the compatibility tests with binary frames enabled.
+ */
+public class FramesTest {
+    private static final AtomicInteger TO_JAVASCRIPT = new AtomicInteger();
+    private static final AtomicInteger TO_JAVA = new AtomicInteger();
+    private static Frames frames;
+
+    @Factory public static Object[] binaryTests() throws Exception {
+        frames = new Frames();
+        List<Object> res = new ArrayList<Object>();
+        res.addAll(Arrays.asList(GenericTest.createTests(frames)));
+        res.add(new FramesTest());
+        return res.toArray();
+    }
+
+    @Test public void callsAndResultsTravelAsFrames() throws Exception {
+        int sent = TO_JAVASCRIPT.get();
+        int received = TO_JAVA.get();
+        Fn.Presenter p = frames.presenter;
+        Object res;
+        Closeable c = Fn.activate(p);
+        try {
+            Fn fn = p.defineFn("return [ a + 1, b, c.length, !d, a / 2 ];", "a", "b", "c", "d");
+            res = fn.invoke(null, 41, "Příliš 😀", new Object[] { 1, "2", null }, false);
+        } finally {
+            c.close();
+        }
+        assertTrue(res instanceof Object[], "Array returned: " + res);
+        Object[] arr = (Object[]) res;
+        assertEquals(((Number) arr[0]).intValue(), 42);
+        assertEquals(arr[1], "Příliš 😀");
+        assertEquals(((Number) arr[2]).intValue(), 3);
+        assertEquals(arr[3], Boolean.TRUE);
+        assertEquals(((Number) arr[4]).doubleValue(), 20.5);
+        assertTrue(TO_JAVASCRIPT.get() > sent, "Call was sent as a frame");
+        assertTrue(TO_JAVA.get() > received, "Result was received as a frame");
+    }
+
+    private static final class Frames extends Testing {
+        Frames() {
+            super(false, Executors.newSingleThreadExecutor(), true);
+        }
+
+        @Override
+        protected void loadFrame(String receiver, byte[] frame) {
+            TO_JAVASCRIPT.incrementAndGet();
+            super.loadFrame(receiver, frame);
+        }
+
+        @Override
+        protected String js2java(byte[] frame) throws Exception {
+            TO_JAVA.incrementAndGet();
+            return super.js2java(frame);
+        }
+    }
+}
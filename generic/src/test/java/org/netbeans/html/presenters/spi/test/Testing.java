@@ -23,6 +23,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
@@ -45,23 +46,37 @@ class Testing {
         this(sync, Executors.newSingleThreadExecutor());
     }
     protected Testing(boolean sync, Executor queue) {
+        this(sync, queue, false);
+    }
+    protected Testing(boolean sync, Executor queue, boolean frames) {
         this.sync = sync;
         this.QUEUE = queue;
-        this.presenter = ProtoPresenterBuilder.newBuilder()
+        ProtoPresenterBuilder builder = ProtoPresenterBuilder.newBuilder()
             .app("Testing")
             .type("test")
             .dispatcher(QUEUE, false)
             .loadJavaScript(this::loadJS, sync)
             .displayer(this::displayPage)
             .preparator(this::callbackFn, true)
-            .logger(this::log)
-            .build();
+            .logger(this::log);
+        if (frames) {
+            builder.loadFrames(this::loadFrame);
+        }
+        this.presenter = builder.build();
 
         ScriptEngineManager sem = new ScriptEngineManager();
         eng = sem.getEngineByMimeType("text/javascript");
         eng.getBindings(ScriptContext.ENGINE_SCOPE).put("polyglot.js.allowAllAccess", true);
         try {
             eng.eval("function alert(m) { Packages.java.lang.System.out.println(m); };");
+            eng.eval("(function(global) {\n"
+                + "  global.testingFrame = function(receiver, bytes) {\n"
+                + "    var frame = new Uint8Array(bytes.length);\n"
+                + "    for (var i = 0; i < bytes.length; i++) frame[i] = bytes[i];\n"
+                + "    global[receiver](frame);\n"
+                + "  }\n"
+                + "})(this);\n"
+            );
         } catch (ScriptException ex) {
             throw new IllegalStateException(ex);
         }        
@@ -100,6 +115,10 @@ class Testing {
         public String pass(String method, Object a1, Object a2, Object a3, Object a4) throws Exception {
             return presenter.js2java(method, ts(a1), ts(a2), ts(a3), ts(a4));
         }
+
+        public String frame(byte[] data) throws Exception {
+            return js2java(data);
+        }
     }
     private final Clbk clbk = new Clbk();
 
@@ -109,6 +128,7 @@ class Testing {
             eng.eval("(function(global) {\n"
                 + "  var jvm = global.jvm;\n"
                 + "  global.testingCB = function(m,a1,a2,a3,a4) {\n"
+                + "    if (m === 'b') return jvm.frame(Java.to(Array.prototype.slice.call(a1), 'byte[]'));\n"
                 + "    return jvm.pass(m,a1,a2,a3,a4);\n"
                 + "  }\n"
                 + "})(this);\n"
@@ -133,6 +153,22 @@ class Testing {
         });
     }
 
+    protected void loadFrame(final String receiver, final byte[] frame) {
+        QUEUE.execute(new Runnable() {
+            public void run() {
+                try {
+                    ((Invocable) eng).invokeFunction("testingFrame", receiver, frame);
+                } catch (Throwable ex) {
+                    LOG.log(Level.SEVERE, "Can't process frame for " + receiver, ex);
+                }
+            }
+        });
+    }
+
+    protected String js2java(byte[] frame) throws Exception {
+        return presenter.js2java(frame);
+    }
+
     public void displayPage(URL url, Runnable r) {
         r.run();
     }
@@ -20,6 +20,8 @@ package org.netbeans.html.mojo;
 
 import java.io.BufferedWriter;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -27,6 +29,8 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -88,23 +92,27 @@ abstract class ProcessJsAnnotations {
         }
 
         MultiFile master = classes.child("META-INF", "net.java.html.js.classes");
-        processClasses(l, master, classes);
+        processClasses(l, master, classes, null);
     }
 
-    private void processClasses(ClassLoader l, MultiFile master, MultiFile f) throws IOException {
+    private void processClasses(ClassLoader l, MultiFile master, MultiFile f, Object bundle) throws IOException {
         if (!f.exists()) {
             return;
         }
         if (f.isDirectory()) {
             boolean classes = f.child("net.java.html.js.classes").exists();
+            Object pkgBundle = classes ? newBundle(l) : null;
             MultiFile[] arr = f.listFiles();
             if (arr != null) {
                 for (MultiFile file : arr) {
                     if (classes || file.isDirectory()) {
-                        processClasses(l, master, file);
+                        processClasses(l, master, file, pkgBundle);
                     }
                 }
             }
+            if (pkgBundle != null) {
+                writeBundle(f, pkgBundle);
+            }
         }
 
         if (!f.isFile() || !f.getName().endsWith(".class")) {
@@ -115,9 +123,13 @@ abstract class ProcessJsAnnotations {
         byte[] newArr = null;
         try {
             Class<?> fnUtils = l.loadClass("org.netbeans.html.boot.impl.FnUtils");
-            Method transform = fnUtils.getMethod("transform", byte[].class, ClassLoader.class);
-
-            newArr = (byte[]) transform.invoke(null, arr, l);
+            if (bundle != null) {
+                Method transform = fnUtils.getMethod("transform", byte[].class, ClassLoader.class, bundle.getClass());
+                newArr = (byte[]) transform.invoke(null, arr, l, bundle);
+            } else {
+                Method transform = fnUtils.getMethod("transform", byte[].class, ClassLoader.class);
+                newArr = (byte[]) transform.invoke(null, arr, l);
+            }
             if (newArr == null || newArr == arr) {
                 return;
             }
@@ -130,6 +142,41 @@ abstract class ProcessJsAnnotations {
         f.writeArr(newArr);
     }
 
+    /** Bundle of functions of a package. Older versions of the boot
+     * library don't support bundles.
+     */
+    private static Object newBundle(ClassLoader l) throws IOException {
+        try {
+            return l.loadClass("org.netbeans.html.boot.impl.FnBundle").newInstance();
+        } catch (ClassNotFoundException ex) {
+            return null;
+        } catch (ReflectiveOperationException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void writeBundle(MultiFile dir, Object bundle) throws IOException {
+        try {
+            Class<?> type = bundle.getClass();
+            if ((Boolean) type.getMethod("isEmpty").invoke(bundle)) {
+                return;
+            }
+            String name = (String) type.getField("RESOURCE").get(null);
+            MultiFile f = dir.child(name);
+            if (f.isFile()) {
+                // keep functions of classes processed previously
+                InputStream is = new ByteArrayInputStream(f.readFully());
+                type.getMethod("read", InputStream.class).invoke(bundle, is);
+            }
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            type.getMethod("write", OutputStream.class).invoke(bundle, os);
+            log("Writing " + f);
+            f.writeArr(os.toByteArray());
+        } catch (ReflectiveOperationException ex) {
+            throw new IOException("Can't write bundle of " + dir, ex);
+        }
+    }
+
     private static void filterClass(MultiFile f, String className) throws IOException {
         if (!f.exists()) {
             return;
@@ -261,6 +261,78 @@ public final class KnockoutTest {
         }
     }
 
+    @KOTest public void twoInstancesDontShareState() throws Exception {
+        final BrwsrCtx ctx = newContext();
+        KnockoutModel first = Models.bind(new KnockoutModel(), ctx);
+        KnockoutModel second = Models.bind(new KnockoutModel(), ctx);
+        first.setName("First");
+        second.setName("Second");
+        Object rawFirst = Models.toRaw(first);
+        Object rawSecond = Models.toRaw(second);
+
+        assertEquals("First:Second", readTwoNames(rawFirst, rawSecond), "Each instance has own value");
+
+        Utils.executeScript(KnockoutTest.class,
+            "arguments[0].name('Changed');", rawFirst
+        );
+        assertEquals("Changed", first.getName(), "First model updated");
+        assertEquals("Second", second.getName(), "Second model untouched");
+        assertEquals("Changed:Second", readTwoNames(rawFirst, rawSecond), "Second instance untouched");
+    }
+
+    private static String readTwoNames(Object first, Object second) throws Exception {
+        Object ret = Utils.executeScript(KnockoutTest.class,
+            "return arguments[0].name() + ':' + arguments[1].name();", first, second
+        );
+        return ret == null ? null : ret.toString();
+    }
+
+    @Model(className = "Twice", properties = {
+        @Property(name = "value", type = int.class),
+    })
+    static class TwiceModel {
+        @ComputedProperty static int doubled(int value) {
+            return value * 2;
+        }
+    }
+
+    @KOTest public void computedPropertiesAreEvaluatedLazily() throws Exception {
+        Twice m = Models.bind(new Twice(1), newContext());
+        Object raw = Models.toRaw(m);
+
+        Object before = Utils.executeScript(KnockoutTest.class,
+            "return arguments[0].doubled.getDependenciesCount();", raw
+        );
+        assertEquals(0, ((Number) before).intValue(), "Not evaluated before the first read");
+
+        Object value = Utils.executeScript(KnockoutTest.class,
+            "return arguments[0].doubled();", raw
+        );
+        assertEquals(2, ((Number) value).intValue(), "Evaluated on read");
+
+        m.setValue(5);
+        value = Utils.executeScript(KnockoutTest.class,
+            "return arguments[0].doubled();", raw
+        );
+        assertEquals(10, ((Number) value).intValue(), "Re-evaluated after change");
+    }
+
+    @KOTest public void pushedValueChangedInJavaScriptIsReadBack() throws Exception {
+        KnockoutModel m = Models.bind(new KnockoutModel(), newContext());
+        Object raw = Models.toRaw(m);
+        m.setName("Java");
+
+        String script = "return arguments[0].name();";
+        assertEquals("Java", Utils.executeScript(KnockoutTest.class, script, raw), "Pushed value");
+
+        Utils.executeScript(KnockoutTest.class, "arguments[0].name('Script');", raw);
+        assertEquals("Script", m.getName(), "Change propagated to Java");
+        assertEquals("Script", Utils.executeScript(KnockoutTest.class, script, raw), "Changed value read back");
+
+        m.setName("Again");
+        assertEquals("Again", Utils.executeScript(KnockoutTest.class, script, raw), "Pushed again");
+    }
+
     private static String getSetSelected(int index, Object value) throws Exception {
         String s = "var index = arguments[0];\n"
         + "var n = window.document.getElementById('input'); \n "
@@ -77,6 +77,17 @@ public final class Models {
     
     /** Generic method to parse stream, that can possibly contain array
      * of specified objects.
+     * <p>
+     * When the context provides a
+     * {@link org.netbeans.html.json.spi.Transfer.Streaming streaming transfer},
+     * elements of an array are read one by one and each is added to
+     * <code>collectTo</code> as soon as it is complete. Memory used
+     * for reading doesn't depend on length of the array then - the
+     * <code>collectTo</code> collection may process and forget the
+     * instances. If <code>collectTo</code> is a
+     * {@link java.util.concurrent.BlockingQueue}, its <code>put</code>
+     * method is used and reading waits while the queue is full
+     * (since 2.0).
      * 
      * @param <M> the type of the individal JSON object
      * @param c context of the technology to use for reading 
@@ -167,6 +178,30 @@ public final class Models {
         JSON.applyBindings(model, targetId);
     }
 
+    /** Performs modifications of models in a batch. Changes made by
+     * the <code>code</code> in the current thread are collected and
+     * delivered when the <code>code</code> is over. Each changed property
+     * of each model is reported only once and all changes of a model
+     * are delivered to the technology together. Batches can be nested,
+     * the changes are delivered when the outermost one is over.
+     * <pre>
+     * Models.batch(new Runnable() {
+     *     public void run() {
+     *         for (Person p : people) {
+     *             p.setFirstName(p.getFirstName().trim());
+     *             p.setLastName(p.getLastName().trim());
+     *         }
+     *     }
+     * });
+     * </pre>
+     *
+     * @param code code to execute and collect its changes
+     * @since 2.0
+     */
+    public static void batch(Runnable code) {
+        JSON.batch(code);
+    }
+
     /** Wrap provided values into mutable list.
      *
      * @param <T> type of the values and resulting list
@@ -88,6 +88,33 @@ public final class Bindings<Data> {
         }
     }
     
+    public void valuesHaveMutated(String[] names, Object[] oldValues, Object[] newValues) {
+        if (bp instanceof Technology.BatchValueMutated) {
+            Technology.BatchValueMutated<Data> vm = (Technology.BatchValueMutated<Data>)bp;
+            Object[] ov = new Object[names.length];
+            Object[] nv = new Object[names.length];
+            for (int i = 0; i < names.length; i++) {
+                ov[i] = JSON.find(oldValues[i], this);
+                nv[i] = JSON.find(newValues[i], this);
+            }
+            vm.valueHasMutated(data, names, ov, nv);
+        } else {
+            for (int i = 0; i < names.length; i++) {
+                valueHasMutated(names[i], oldValues[i], newValues[i]);
+            }
+        }
+    }
+
+    public void spliceArray(String name, int index, int removeCount, Object[] inserted, int length) {
+        if (bp instanceof Technology.ArraySplice) {
+            Technology.ArraySplice<Data> as = (Technology.ArraySplice<Data>) bp;
+            Object arr = JSONList.koData(inserted.clone(), this);
+            as.spliceArray(data, name, index, removeCount, arr, length);
+        } else {
+            valueHasMutated(name, null, null);
+        }
+    }
+
     public void applyBindings(String id) {
         if (bp instanceof Technology.ApplyId) {
             Technology.ApplyId<Data> ai = (Technology.ApplyId<Data>) bp;
@@ -100,4 +127,12 @@ public final class Bindings<Data> {
     Object wrapArray(Object[] arr) {
         return bp.wrapArray(arr);
     }
+
+    Object wrapLazyArray(Object[] arr) {
+        if (bp instanceof Technology.LazyArray) {
+            Technology.LazyArray<Data> la = (Technology.LazyArray<Data>) bp;
+            return la.wrapLazyArray(arr);
+        }
+        return null;
+    }
 }
@@ -20,12 +20,15 @@ package org.netbeans.html.json.impl;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
 import net.java.html.BrwsrCtx;
 import org.netbeans.html.context.spi.Contexts;
 import org.netbeans.html.json.spi.FunctionBinding;
 import org.netbeans.html.json.spi.JSONCall;
+import org.netbeans.html.json.spi.JSONReader;
 import org.netbeans.html.json.spi.PropertyBinding;
 import org.netbeans.html.json.spi.Proto;
 import org.netbeans.html.json.spi.Technology;
@@ -63,6 +66,10 @@ public final class JSON {
         }
     }
     public static void extract(BrwsrCtx c, Object value, String[] props, Object[] values) {
+        if (value instanceof JSONObj) {
+            ((JSONObj) value).extract(props, values);
+            return;
+        }
         Transfer t = findTransfer(c);
         t.extract(value, props, values);
     }
@@ -108,6 +115,84 @@ public final class JSON {
         return value.toString();
     }
 
+    /** Writes JSON representation of the value. Models and their lists
+     * are written directly, without creating intermediate strings.
+     *
+     * @param out where to write to
+     * @param value the value to write
+     * @throws IOException if the output cannot be written
+     */
+    public static void write(Appendable out, Object value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        if (value instanceof String) {
+            writeString(out, (String) value);
+            return;
+        }
+        if (value instanceof Enum) {
+            writeString(out, value.toString());
+            return;
+        }
+        if (value instanceof Character) {
+            writeString(out, Character.toString((Character) value));
+            return;
+        }
+        if (value instanceof JSONList) {
+            out.append('[');
+            String sep = "";
+            for (Object item : (JSONList<?>) value) {
+                out.append(sep);
+                write(out, item);
+                sep = ",";
+            }
+            out.append(']');
+            return;
+        }
+        if (!(value instanceof Number) && !(value instanceof Boolean)) {
+            Proto.Type<?> type = ModelTypes.MODELS.find(value.getClass())[0];
+            if (type != null) {
+                PropertyBindingAccessor.writeTo(type, value, out);
+                return;
+            }
+        }
+        out.append(value.toString());
+    }
+
+    /** Writes data of a {@link JSONCall}. Models are written as JSON,
+     * other objects as their string value.
+     */
+    public static void writeData(Appendable out, Object data) throws IOException {
+        Proto.Type<?> type = ModelTypes.MODELS.find(data.getClass())[0];
+        if (type != null) {
+            PropertyBindingAccessor.writeTo(type, data, out);
+        } else {
+            out.append(data.toString());
+        }
+    }
+
+    private static void writeString(Appendable out, String s) throws IOException {
+        out.append('"');
+        int len = s.length();
+        int from = 0;
+        for (int i = 0; i < len; i++) {
+            String esc;
+            switch (s.charAt(i)) {
+                case '\"': esc = "\\\""; break;
+                case '\n': esc = "\\n"; break;
+                case '\r': esc = "\\r"; break;
+                case '\t': esc = "\\t"; break;
+                case '\\': esc = "\\\\"; break;
+                default: continue;
+            }
+            out.append(s, from, i).append(esc);
+            from = i + 1;
+        }
+        out.append(s, from, len);
+        out.append('"');
+    }
+
     public static String toString(BrwsrCtx c, Object obj, String prop) {
         obj = getProperty(c, obj, prop);
         return obj == null ? null : obj.toString();
@@ -391,15 +476,25 @@ public final class JSON {
         return PropertyBindingAccessor.clone(from, model, c);
     }
 
+    public static void batch(Runnable r) {
+        PropertyBindingAccessor.runBatch(r);
+    }
+
     public static <T> T readStream(BrwsrCtx c, Class<T> modelClazz, InputStream data, Collection<? super T> collectTo)
     throws IOException {
         Transfer tr = findTransfer(c);
+        if (tr instanceof Transfer.Streaming) {
+            JSONReader r = ((Transfer.Streaming) tr).reader(data);
+            if (r != null) {
+                return readStream(c, modelClazz, r, collectTo);
+            }
+        }
         Object rawJSON = tr.toJSON((InputStream)data);
         if (rawJSON instanceof Object[]) {
             final Object[] arr = (Object[])rawJSON;
             if (collectTo != null) {
                 for (int i = 0; i < arr.length; i++) {
-                    collectTo.add(read(c, modelClazz, arr[i]));
+                    add(collectTo, read(c, modelClazz, arr[i]));
                 }
                 return null;
             }
@@ -410,10 +505,66 @@ public final class JSON {
         }
         T res = read(c, modelClazz, rawJSON);
         if (collectTo != null) {
-            collectTo.add(res);
+            add(collectTo, res);
+        }
+        return res;
+    }
+    private static <T> T readStream(BrwsrCtx c, Class<T> modelClazz, JSONReader r, Collection<? super T> collectTo)
+    throws IOException {
+        if (r.beginArray()) {
+            while (r.hasNext()) {
+                T item = read(c, modelClazz, r);
+                if (collectTo == null) {
+                    return item;
+                }
+                add(collectTo, item);
+            }
+            if (collectTo == null) {
+                throw new EOFException("Recieved an empty array");
+            }
+            r.endArray();
+            return null;
+        }
+        T res = read(c, modelClazz, r);
+        if (collectTo != null) {
+            add(collectTo, res);
         }
         return res;
     }
+
+    /** Adds the item to the collection. Waits if the collection is a
+     * full {@link BlockingQueue}.
+     */
+    private static <T> void add(Collection<? super T> collectTo, T item) throws IOException {
+        if (collectTo instanceof BlockingQueue) {
+            try {
+                ((BlockingQueue<? super T>) collectTo).put(item);
+            } catch (InterruptedException ex) {
+                throw (IOException) new InterruptedIOException().initCause(ex);
+            }
+        } else {
+            collectTo.add(item);
+        }
+    }
+
+    public static <T> T read(BrwsrCtx c, Class<T> modelClazz, JSONReader r) throws IOException {
+        if (r.nextNull()) {
+            return null;
+        }
+        if (modelClazz == String.class) {
+            return modelClazz.cast(r.nextString());
+        }
+        for (int i = 0; i < 2; i++) {
+            Proto.Type<?> from = ModelTypes.MODELS.find(modelClazz)[0];
+            if (from == null) {
+                initClass(modelClazz);
+            } else {
+                return modelClazz.cast(PropertyBindingAccessor.readFrom(from, c, r));
+            }
+        }
+        throw new NullPointerException();
+    }
+
     public static <T> T read(BrwsrCtx c, Class<T> modelClazz, Object data) {
         if (data == null) {
             return null;
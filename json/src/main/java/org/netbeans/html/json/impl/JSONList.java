@@ -18,10 +18,10 @@
  */
 package org.netbeans.html.json.impl;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.Iterator;
 import org.netbeans.html.json.spi.Proto;
 
 /**
@@ -65,24 +65,27 @@ public final class JSONList<T> extends SimpleList<T> {
     @Override
     public boolean add(T e) {
         prepareChange();
+        int at = size();
         boolean ret = super.add(e);
-        notifyChange();
+        notifySplice(at, 0, at + 1);
         return ret;
     }
 
     @Override
     public boolean addAll(Collection<? extends T> c) {
         prepareChange();
+        int at = size();
         boolean ret = super.addAll(c);
-        notifyChange();
+        notifySplice(at, 0, size());
         return ret;
     }
 
     @Override
     public boolean addAll(int index, Collection<? extends T> c) {
         prepareChange();
+        int prev = size();
         boolean ret = super.addAll(index, c);
-        notifyChange();
+        notifySplice(index, 0, index + size() - prev);
         return ret;
     }
 
@@ -96,16 +99,21 @@ public final class JSONList<T> extends SimpleList<T> {
     @Override
     public boolean remove(Object o) {
         prepareChange();
-        boolean ret = super.remove(o);
-        notifyChange();
-        return ret;
+        int at = indexOf(o);
+        if (at == -1) {
+            return false;
+        }
+        super.remove(at);
+        notifySplice(at, 1, at);
+        return true;
     }
 
     @Override
     public void clear() {
         prepareChange();
+        int prev = size();
         super.clear();
-        notifyChange();
+        notifySplice(0, prev, 0);
     }
 
     @Override
@@ -133,7 +141,7 @@ public final class JSONList<T> extends SimpleList<T> {
     public T set(int index, T element) {
         prepareChange();
         T ret = super.set(index, element);
-        notifyChange();
+        notifySplice(index, 1, index + 1);
         return ret;
     }
 
@@ -141,39 +149,31 @@ public final class JSONList<T> extends SimpleList<T> {
     public void add(int index, T element) {
         prepareChange();
         super.add(index, element);
-        notifyChange();
+        notifySplice(index, 0, index + 1);
     }
 
     @Override
     public T remove(int index) {
         prepareChange();
         T ret = super.remove(index);
-        notifyChange();
+        notifySplice(index, 1, index);
         return ret;
     }
 
     @Override
     void clearImpl(int from, int to) {
         super.clearImpl(from, to);
-        notifyChange();
+        notifySplice(from, to - from, from);
     }
 
     @Override
     public String toString() {
-        Iterator<T> it = iterator();
-        if (!it.hasNext()) {
-            return "[]";
-        }
-        String sep = "";
         StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        while (it.hasNext()) {
-            T t = it.next();
-            sb.append(sep);
-            sb.append(JSON.toJSON(t));
-            sep = ",";
+        try {
+            JSON.write(sb, this);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
         }
-        sb.append(']');
         return sb.toString();
     }
 
@@ -188,10 +188,31 @@ public final class JSONList<T> extends SimpleList<T> {
     }
 
     private void notifyChange() {
+        notifyChange(-1, 0, null, 0);
+    }
+
+    /** Notifies about a change that can be described as a splice.
+     * @param at the index where the change starts
+     * @param removed number of removed elements
+     * @param end index after the last inserted element
+     */
+    private void notifySplice(int at, int removed, int end) {
+        Object[] inserted = new Object[end - at];
+        for (int i = 0; i < inserted.length; i++) {
+            inserted[i] = get(at + i);
+        }
+        notifyChange(at, removed, inserted, size());
+    }
+
+    private void notifyChange(final int at, final int removed, final Object[] inserted, final int length) {
         proto.getContext().execute(new Runnable() {
             @Override
             public void run() {
-                proto.valueHasMutated(name);
+                if (inserted == null) {
+                    proto.valueHasMutated(name);
+                } else {
+                    PropertyBindingAccessor.notifyProtoSplice(proto, name, at, removed, inserted, length);
+                }
                 Bindings m = PropertyBindingAccessor.getBindings(proto, false, null);
                 if (m != null) {
                     for (String dependant : deps) {
@@ -210,8 +231,13 @@ public final class JSONList<T> extends SimpleList<T> {
         throw new UnsupportedOperationException();
     }
 
-    static final Object koData(Collection<?> c, Bindings m) {
+    static final Object koData(Collection<?> c, Bindings<?> m) {
         Object[] arr = c.toArray(new Object[c.size()]);
+        Object lazy = m.wrapLazyArray(arr);
+        return lazy != null ? lazy : koData(arr, m);
+    }
+
+    static final Object koData(Object[] arr, Bindings<?> m) {
         for (int i = 0; i < arr.length; i++) {
             Object r = JSON.find(arr[i], m);
             if (r != null) {
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.impl;
+
+/** JSON object read by {@link org.netbeans.html.json.spi.JSONReader}.
+ * Keeps names and values in arrays in the order they appeared in the input.
+ *
+ * @author Jaroslav Tulach
+ */
+public final class JSONObj {
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private String[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+    private int size;
+
+    public void put(String key, Object value) {
+        int at = find(key, 0);
+        if (at != -1) {
+            values[at] = value;
+            return;
+        }
+        if (size == keys.length) {
+            int newLen = Math.max(4, size * 2);
+            String[] k = new String[newLen];
+            Object[] v = new Object[newLen];
+            System.arraycopy(keys, 0, k, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            keys = k;
+            values = v;
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    public JSONObj trim() {
+        if (size < keys.length) {
+            String[] k = new String[size];
+            Object[] v = new Object[size];
+            System.arraycopy(keys, 0, k, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            keys = k;
+            values = v;
+        }
+        return this;
+    }
+
+    public Object get(String key) {
+        int at = find(key, 0);
+        return at == -1 ? null : values[at];
+    }
+
+    /** Properties are usually requested in the order they appear in
+     * the input, so each search starts after the previously found one.
+     */
+    void extract(String[] props, Object[] ret) {
+        int at = 0;
+        for (int i = 0; i < props.length; i++) {
+            if (props[i] == null) {
+                ret[i] = this;
+                continue;
+            }
+            int found = find(props[i], at);
+            if (found == -1) {
+                ret[i] = null;
+            } else {
+                ret[i] = values[found];
+                at = found + 1;
+            }
+        }
+    }
+
+    private int find(String key, int from) {
+        for (int i = 0; i < size; i++) {
+            int at = from + i;
+            if (at >= size) {
+                at -= size;
+            }
+            if (keys[at].equals(key)) {
+                return at;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        write(sb, this);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder sb, Object value) {
+        if (value instanceof JSONObj) {
+            JSONObj o = (JSONObj) value;
+            sb.append('{');
+            for (int i = 0; i < o.size; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(JSON.toJSON(o.keys[i])).append(':');
+                write(sb, o.values[i]);
+            }
+            sb.append('}');
+        } else if (value instanceof Object[]) {
+            Object[] arr = (Object[]) value;
+            sb.append('[');
+            for (int i = 0; i < arr.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                write(sb, arr[i]);
+            }
+            sb.append(']');
+        } else {
+            sb.append(JSON.toJSON(value));
+        }
+    }
+}
@@ -445,6 +445,8 @@ public final class ModelProcessor extends AbstractProcessor {
                 w.append("    }\n");
                 w.append(onReceiveType);
                 w.append("    @Override public " + className + " read(net.java.html.BrwsrCtx c, Object json) { return new " + className + "(c, json); }\n");
+                w.append("    @Override public " + className + " read(net.java.html.BrwsrCtx c, org.netbeans.html.json.spi.JSONReader r) throws java.io.IOException { return new " + className + "(c, r); }\n");
+                w.append("    @Override protected void writeTo(" + className + " model, java.lang.Appendable out) throws java.io.IOException { model.writeTo(out); }\n");
                 w.append("    @Override public " + className + " cloneTo(" + className + " o, net.java.html.BrwsrCtx c) { return o.clone(c); }\n");
                 w.append("  }\n");
                 w.append("  private ").append(className).append("(net.java.html.BrwsrCtx c, Object json) {\n");
@@ -536,6 +538,7 @@ public final class ModelProcessor extends AbstractProcessor {
                     cnt++;
                 }
                 w.append("  }\n");
+                writeStreamingReader(className, props, propsGetSet, w);
                 w.append("  private static Object[] useAsArray(Object o) {\n");
                 w.append("    return o instanceof Object[] ? ((Object[])o) : o == null ? new Object[0] : new Object[] { o };\n");
                 w.append("  }\n");
@@ -1776,32 +1779,116 @@ public final class ModelProcessor extends AbstractProcessor {
         return models.values().contains(e.getSimpleName().toString());
     }
 
+    private void writeStreamingReader(
+        String className, Prprt[] props, List<GetSet> propsGetSet, Writer w
+    ) throws IOException {
+        StringBuilder names = new StringBuilder();
+        StringBuilder cases = new StringBuilder();
+        for (int i = 0, cnt = 0, prop = 0; i < propsGetSet.size(); i++) {
+            final String pn = propsGetSet.get(i).name;
+            Prprt p = findPrprt(props, pn);
+            if (p == null || prop >= props.length) {
+                continue;
+            }
+            boolean[] isModel = { false };
+            boolean[] isEnum = { false };
+            boolean isPrimitive[] = { false };
+            String type = checkType(props[prop++], isModel, isEnum, isPrimitive);
+            String value;
+            if (isModel[0]) {
+                value = "proto.read(" + type + ".class, r)";
+            } else if (isEnum[0]) {
+                value = "r.nextNull() ? null : " + type + ".valueOf(r.nextString())";
+            } else if (isPrimitive(type)) {
+                value = "r.next" + Character.toUpperCase(type.charAt(0)) + type.substring(1) + "()";
+            } else if (type.equals("java.lang.String") || type.equals("String")) {
+                value = "r.nextString()";
+            } else {
+                value = "(" + type + ")r.nextValue()";
+            }
+            names.append("    \"").append(pn).append("\",\n");
+            cases.append("        case ").append(cnt).append(":\n");
+            if (p.array()) {
+                cases.append("          if (!r.nextNull()) {\n");
+                cases.append("            if (r.beginArray()) {\n");
+                cases.append("              while (r.hasNext()) {\n");
+                cases.append("                this.prop_").append(pn).append(".add(").append(value).append(");\n");
+                cases.append("              }\n");
+                cases.append("              r.endArray();\n");
+                cases.append("            } else {\n");
+                cases.append("              this.prop_").append(pn).append(".add(").append(value).append(");\n");
+                cases.append("            }\n");
+                cases.append("          }\n");
+            } else if (isEnum[0]) {
+                cases.append("          try {\n");
+                cases.append("            this.prop_").append(pn).append(" = ").append(value).append(";\n");
+                cases.append("          } catch (IllegalArgumentException ex) {\n");
+                cases.append("            ex.printStackTrace();\n");
+                cases.append("          }\n");
+            } else {
+                cases.append("          this.prop_").append(pn).append(" = ").append(value).append(";\n");
+            }
+            cases.append("          break;\n");
+            cnt++;
+        }
+        w.append("  private static final String[] JSON_NAMES = {\n");
+        w.append(names);
+        w.append("  };\n");
+        w.append("  private ").append(className).append("(net.java.html.BrwsrCtx c, org.netbeans.html.json.spi.JSONReader r) throws java.io.IOException {\n");
+        w.append("    this(c);\n");
+        w.append("    r.beginObject();\n");
+        w.append("    while (r.hasNext()) {\n");
+        w.append("      switch (r.nextName(JSON_NAMES)) {\n");
+        w.append(cases);
+        w.append("        default:\n");
+        w.append("          r.skipValue();\n");
+        w.append("      }\n");
+        w.append("    }\n");
+        w.append("    r.endObject();\n");
+        w.append("  }\n");
+    }
+
     private void writeToString(Prprt[] props, Writer w) throws IOException {
         w.write("  public String toString() {\n");
         w.write("    StringBuilder sb = new StringBuilder();\n");
-        w.write("    sb.append('{');\n");
-        String sep = "";
+        w.write("    try {\n");
+        w.write("      writeTo(sb);\n");
+        w.write("    } catch (java.io.IOException ex) {\n");
+        w.write("      throw new IllegalStateException(ex);\n");
+        w.write("    }\n");
+        w.write("    return sb.toString();\n");
+        w.write("  }\n");
+        w.write("  private void writeTo(java.lang.Appendable out) throws java.io.IOException {\n");
+        char sep = '{';
         for (Prprt p : props) {
-            w.write(sep);
-            w.append("    sb.append('\"').append(\"" + p.name() + "\")");
-                w.append(".append('\"').append(\":\");\n");
+            w.append("    out.append(\"" + sep + "\\\"" + p.name() + "\\\":\");\n");
             String tn = typeName(p);
             String[] gs = toGetSet(p.name(), tn, p.array());
             boolean isModel[] = { false };
             boolean isEnum[] = { false };
             boolean isPrimitive[] = { false };
-            checkType(p, isModel, isEnum, isPrimitive);
+            String type = checkType(p, isModel, isEnum, isPrimitive);
             if (isModel[0]) {
-                w.append("    sb.append(TYPE.toJSON(thisToNull(this.prop_");
-                w.append(p.name()).append(")));\n");
+                w.append("    TYPE.writeJSON(out, thisToNull(this.prop_");
+                w.append(p.name()).append("));\n");
+            } else if (isPrimitive[0] && !p.array()) {
+                if (type.equals("char")) {
+                    w.append("    TYPE.writeJSON(out, String.valueOf(");
+                    w.append(gs[0]).append("()));\n");
+                } else {
+                    w.append("    out.append(String.valueOf(");
+                    w.append(gs[0]).append("()));\n");
+                }
             } else {
-                w.append("    sb.append(TYPE.toJSON(");
-                w.append(gs[0]).append("()));\n");
+                w.append("    TYPE.writeJSON(out, ");
+                w.append(gs[0]).append("());\n");
             }
-            sep =    "    sb.append(',');\n";
+            sep = ',';
         }
-        w.write("    sb.append('}');\n");
-        w.write("    return sb.toString();\n");
+        if (sep == '{') {
+            w.write("    out.append('{');\n");
+        }
+        w.write("    out.append('}');\n");
         w.write("  }\n");
     }
     private void writeClone(String className, Prprt[] props, Writer w) throws IOException {
@@ -18,8 +18,10 @@
  */
 package org.netbeans.html.json.impl;
 
+import java.io.IOException;
 import net.java.html.BrwsrCtx;
 import org.netbeans.html.json.spi.JSONCall;
+import org.netbeans.html.json.spi.JSONReader;
 import org.netbeans.html.json.spi.PropertyBinding;
 import org.netbeans.html.json.spi.Proto;
 
@@ -49,9 +51,13 @@ public abstract class PropertyBindingAccessor {
 
     protected abstract Bindings bindings(Proto proto, boolean initialize, Object copyFrom);
     protected abstract void notifyChange(Proto proto, int propIndex);
+    protected abstract void notifySplice(Proto proto, String propName, int index, int removeCount, Object[] inserted, int length);
     protected abstract Proto findProto(Proto.Type<?> type, Object object);
     protected abstract <Model> Model cloneTo(Proto.Type<Model> type, Model model, BrwsrCtx c);
     protected abstract Object read(Proto.Type<?> from, BrwsrCtx c, Object data);
+    protected abstract Object read(Proto.Type<?> from, BrwsrCtx c, JSONReader r) throws IOException;
+    protected abstract void batch(Runnable r);
+    protected abstract void write(Proto.Type<?> type, Object model, Appendable out) throws IOException;
 
     static Bindings getBindings(Proto proto, boolean initialize, Object copyFrom) {
         return DEFAULT.bindings(proto, initialize, copyFrom);
@@ -61,6 +67,10 @@ public abstract class PropertyBindingAccessor {
         DEFAULT.notifyChange(proto, propIndex);
     }
 
+    static void notifyProtoSplice(Proto proto, String propName, int index, int removeCount, Object[] inserted, int length) {
+        DEFAULT.notifySplice(proto, propName, index, removeCount, inserted, length);
+    }
+
     static <M> PropertyBinding create(
         Proto.Type<M> access, Bindings<?> bindings, String name, int index, M model , byte propertyType
     ) {
@@ -82,4 +92,13 @@ public abstract class PropertyBindingAccessor {
     static Object readFrom(Proto.Type<?> from, BrwsrCtx c, Object data) {
         return DEFAULT.read(from, c, data);
     }
+    static Object readFrom(Proto.Type<?> from, BrwsrCtx c, JSONReader r) throws IOException {
+        return DEFAULT.read(from, c, r);
+    }
+    static void runBatch(Runnable r) {
+        DEFAULT.batch(r);
+    }
+    static void writeTo(Proto.Type<?> type, Object model, Appendable out) throws IOException {
+        DEFAULT.write(type, model, out);
+    }
 }
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.spi;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Collects changes of models made by the current thread and delivers
+ * them at the end, once per property and model.
+ *
+ * @author Jaroslav Tulach
+ */
+final class Batch {
+    private static final ThreadLocal<Batch> CURRENT = new ThreadLocal<Batch>();
+    private static final Object UNKNOWN = new Object();
+
+    private final Map<Proto, Map<String, Object[]>> changes = new LinkedHashMap<Proto, Map<String, Object[]>>();
+    private int depth;
+
+    private Batch() {
+    }
+
+    static void run(Runnable r) {
+        Batch b = CURRENT.get();
+        if (b == null) {
+            b = new Batch();
+            CURRENT.set(b);
+        }
+        b.depth++;
+        try {
+            r.run();
+        } finally {
+            if (b.depth == 1) {
+                try {
+                    b.flush();
+                } finally {
+                    b.depth = 0;
+                    CURRENT.remove();
+                }
+            } else {
+                b.depth--;
+            }
+        }
+    }
+
+    /** Records a change, if a batch is active.
+     *
+     * @return {@code false} if there is no batch and the change should
+     *   be delivered immediately
+     */
+    static boolean record(Proto p, String propName, Object oldValue, Object newValue, boolean known) {
+        Batch b = CURRENT.get();
+        if (b == null) {
+            return false;
+        }
+        Map<String, Object[]> props = b.changes.get(p);
+        if (props == null) {
+            props = new LinkedHashMap<String, Object[]>();
+            b.changes.put(p, props);
+        }
+        Object[] values = props.get(propName);
+        if (values == null) {
+            props.put(propName, known ? new Object[] { oldValue, newValue } : new Object[] { UNKNOWN, UNKNOWN });
+        } else if (!known || values[0] == UNKNOWN) {
+            values[0] = values[1] = UNKNOWN;
+        } else {
+            values[1] = newValue;
+        }
+        return true;
+    }
+
+    /** Delivers the changes. Computed properties changed as a result of
+     * the delivery are collected and delivered in the next round.
+     */
+    private void flush() {
+        while (!changes.isEmpty()) {
+            List<Map.Entry<Proto, Map<String, Object[]>>> round;
+            round = new ArrayList<Map.Entry<Proto, Map<String, Object[]>>>(changes.entrySet());
+            changes.clear();
+            for (Map.Entry<Proto, Map<String, Object[]>> entry : round) {
+                Map<String, Object[]> props = entry.getValue();
+                String[] names = new String[props.size()];
+                Object[] oldValues = new Object[names.length];
+                Object[] newValues = new Object[names.length];
+                int i = 0;
+                for (Map.Entry<String, Object[]> e : props.entrySet()) {
+                    names[i] = e.getKey();
+                    Object[] values = e.getValue();
+                    if (values[0] != UNKNOWN) {
+                        oldValues[i] = values[0];
+                        newValues[i] = values[1];
+                    }
+                    i++;
+                }
+                entry.getKey().valuesHaveMutated(names, oldValues, newValues);
+            }
+        }
+    }
+}
@@ -20,7 +20,10 @@ package org.netbeans.html.json.spi;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import net.java.html.BrwsrCtx;
+import org.netbeans.html.json.impl.JSON;
 import org.netbeans.html.json.impl.RcvrJSON;
 
 /** Description of a JSON call request that is supposed to be processed
@@ -64,8 +67,9 @@ public final class JSONCall {
         if (this.data == null) {
             throw new IOException("No data!");
         }
-        os.write(this.data.toString().getBytes("UTF-8"));
-        os.flush();
+        Writer w = new OutputStreamWriter(os, "UTF-8");
+        JSON.writeData(w, this.data);
+        w.flush();
     }
 
     /** Additional headers to be included in the request.
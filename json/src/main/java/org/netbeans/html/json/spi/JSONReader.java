@@ -0,0 +1,548 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.spi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.java.html.json.Model;
+import org.netbeans.html.json.impl.JSON;
+import org.netbeans.html.json.impl.JSONObj;
+
+/** Reads JSON from a character stream token by token. Used by
+ * classes generated by the {@link Model} annotation processor to
+ * read their properties directly from a stream, without creating an
+ * intermediate representation of the JSON data. Obtain an instance from
+ * a {@link Transfer.Streaming streaming transfer}.
+ * <p>
+ * Like JavaScript the reader accepts strings in single quotes as well.
+ *
+ * @author Jaroslav Tulach
+ * @since 2.0
+ */
+public final class JSONReader {
+    private final Reader reader;
+    private final char[] buf = new char[8192];
+    private final StringBuilder sb = new StringBuilder();
+    private int pos;
+    private int len;
+    private long offset;
+    private boolean[] comma = new boolean[16];
+    private int depth;
+    private Map<String, String> names;
+
+    /** Reader of JSON tokens.
+     *
+     * @param reader the characters to read
+     */
+    public JSONReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /** Starts reading an object.
+     *
+     * @throws IOException if the next value isn't an object
+     */
+    public void beginObject() throws IOException {
+        value();
+        expect('{');
+        push();
+    }
+
+    /** Finishes reading an object. Remaining properties are skipped.
+     *
+     * @throws IOException if the stream is broken
+     */
+    public void endObject() throws IOException {
+        while (hasNext()) {
+            nextName(null);
+            skipValue();
+        }
+        expect('}');
+        depth--;
+    }
+
+    /** Starts reading an array, if the next value is an array.
+     *
+     * @return {@code true} if an array has been started, {@code false}
+     *   if the next value isn't an array
+     * @throws IOException if the stream is broken
+     */
+    public boolean beginArray() throws IOException {
+        value();
+        if (skipWhitespace() != '[') {
+            return false;
+        }
+        pos++;
+        push();
+        return true;
+    }
+
+    /** Finishes reading an array. Remaining elements are skipped.
+     *
+     * @throws IOException if the stream is broken
+     */
+    public void endArray() throws IOException {
+        while (hasNext()) {
+            skipValue();
+        }
+        expect(']');
+        depth--;
+    }
+
+    /** Are there more properties in the current object or more elements
+     * in the current array? Outside of any object or array, are there
+     * more values in the stream?
+     *
+     * @return {@code true} if there is another property, element or value
+     * @throws IOException if the stream is broken
+     */
+    public boolean hasNext() throws IOException {
+        int ch = skipWhitespace();
+        if (depth == 0) {
+            return ch != -1;
+        }
+        if (ch == '}' || ch == ']') {
+            return false;
+        }
+        if (comma[depth]) {
+            expect(',');
+            comma[depth] = false;
+        }
+        return true;
+    }
+
+    /** Reads name of the next property.
+     *
+     * @param names the names that are of interest
+     * @return index of the name in the <code>names</code> array or
+     *   <code>-1</code> if the property isn't one of the names
+     * @throws IOException if the stream is broken
+     */
+    public int nextName(String[] names) throws IOException {
+        int ch = skipWhitespace();
+        if (ch != '"' && ch != '\'') {
+            throw error("Expecting property name");
+        }
+        pos++;
+        readString((char) ch);
+        expect(':');
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (same(names[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Reads <code>null</code> if it is the next value.
+     *
+     * @return {@code true} if the next value was <code>null</code>
+     * @throws IOException if the stream is broken
+     */
+    public boolean nextNull() throws IOException {
+        if (skipWhitespace() == 'n') {
+            value();
+            literal("null");
+            return true;
+        }
+        return false;
+    }
+
+    /** Reads a string value. Other values are converted to string.
+     *
+     * @return the string or <code>null</code>
+     * @throws IOException if the stream is broken
+     */
+    public String nextString() throws IOException {
+        int ch = skipWhitespace();
+        if (ch == '"' || ch == '\'') {
+            value();
+            pos++;
+            readString((char) ch);
+            return sb.toString();
+        }
+        Object v = nextValue();
+        if (v instanceof Number || v instanceof Boolean) {
+            return JSON.stringValue(v);
+        }
+        return v == null ? null : v.toString();
+    }
+
+    /** Reads a boolean value. Other values are converted to boolean.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public boolean nextBoolean() throws IOException {
+        switch (skipWhitespace()) {
+            case 't': value(); literal("true"); return true;
+            case 'f': value(); literal("false"); return false;
+            default: return JSON.boolValue(nextValue());
+        }
+    }
+
+    /** Reads a character value.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public char nextChar() throws IOException {
+        Object v = nextValue();
+        return v == null ? 0 : JSON.charValue(v);
+    }
+
+    /** Reads a number as <code>int</code>.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public int nextInt() throws IOException {
+        return (int) nextLong();
+    }
+
+    /** Reads a number as <code>short</code>.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public short nextShort() throws IOException {
+        return (short) nextLong();
+    }
+
+    /** Reads a number as <code>byte</code>.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public byte nextByte() throws IOException {
+        return (byte) nextLong();
+    }
+
+    /** Reads a number as <code>long</code>.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public long nextLong() throws IOException {
+        int ch = skipWhitespace();
+        if (ch == '-' || (ch >= '0' && ch <= '9')) {
+            value();
+            if (readNumber()) {
+                return parseLong();
+            }
+            return (long) parseDouble();
+        }
+        return numberValue().longValue();
+    }
+
+    /** Reads a number as <code>double</code>.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public double nextDouble() throws IOException {
+        int ch = skipWhitespace();
+        if (ch == '-' || (ch >= '0' && ch <= '9')) {
+            value();
+            if (readNumber()) {
+                return parseLong();
+            }
+            return parseDouble();
+        }
+        return numberValue().doubleValue();
+    }
+
+    /** Reads a number as <code>float</code>.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public float nextFloat() throws IOException {
+        return (float) nextDouble();
+    }
+
+    /** Reads any value. Objects are represented by an internal type,
+     * arrays as <code>Object[]</code>, strings, numbers and booleans
+     * as their Java counterparts.
+     *
+     * @return the value
+     * @throws IOException if the stream is broken
+     */
+    public Object nextValue() throws IOException {
+        int ch = skipWhitespace();
+        switch (ch) {
+            case '{': {
+                beginObject();
+                JSONObj obj = new JSONObj();
+                while (hasNext()) {
+                    nextName(null);
+                    obj.put(name(), nextValue());
+                }
+                endObject();
+                return obj.trim();
+            }
+            case '[': {
+                beginArray();
+                List<Object> arr = new ArrayList<Object>();
+                while (hasNext()) {
+                    arr.add(nextValue());
+                }
+                endArray();
+                return arr.toArray();
+            }
+            case '"': case '\'':
+                return nextString();
+            case 't': case 'f':
+                return nextBoolean();
+            case 'n':
+                nextNull();
+                return null;
+            case -1:
+                throw error("Unexpected end of input");
+            default:
+                if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                    value();
+                    if (readNumber()) {
+                        long l = parseLong();
+                        if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                            return (int) l;
+                        }
+                        return l;
+                    }
+                    return parseDouble();
+                }
+                throw error("Unexpected character '" + (char) ch + "'");
+        }
+    }
+
+    /** Skips the next value.
+     *
+     * @throws IOException if the stream is broken
+     */
+    public void skipValue() throws IOException {
+        int ch = skipWhitespace();
+        if (ch == '{') {
+            beginObject();
+            endObject();
+        } else if (ch == '[') {
+            beginArray();
+            endArray();
+        } else {
+            nextValue();
+        }
+    }
+
+    /** Names of properties repeat in arrays of objects, share them. */
+    private String name() {
+        if (names == null) {
+            names = new HashMap<String, String>();
+        }
+        String n = sb.toString();
+        String prev = names.get(n);
+        if (prev == null) {
+            names.put(n, n);
+            prev = n;
+        }
+        return prev;
+    }
+
+    private Number numberValue() throws IOException {
+        Object v = nextValue();
+        return v == null ? 0 : JSON.numberValue(v);
+    }
+
+    private void push() {
+        if (++depth == comma.length) {
+            boolean[] arr = new boolean[depth * 2];
+            System.arraycopy(comma, 0, arr, 0, depth);
+            comma = arr;
+        }
+        comma[depth] = false;
+    }
+
+    /** A value is about to be read in the current object or array. */
+    private void value() {
+        comma[depth] = true;
+    }
+
+    private int peek() throws IOException {
+        if (pos == len) {
+            offset += len;
+            pos = 0;
+            len = reader.read(buf);
+            if (len <= 0) {
+                len = 0;
+                return -1;
+            }
+        }
+        return buf[pos];
+    }
+
+    private int next() throws IOException {
+        int ch = peek();
+        if (ch != -1) {
+            pos++;
+        }
+        return ch;
+    }
+
+    private int skipWhitespace() throws IOException {
+        for (;;) {
+            int ch = peek();
+            if (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t') {
+                pos++;
+                continue;
+            }
+            return ch;
+        }
+    }
+
+    private void expect(char ch) throws IOException {
+        if (skipWhitespace() != ch) {
+            throw error("Expecting '" + ch + "'");
+        }
+        pos++;
+    }
+
+    private IOException error(String msg) {
+        return new IOException(msg + " at " + (offset + pos));
+    }
+
+    private void literal(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (next() != text.charAt(i)) {
+                throw error("Expecting " + text);
+            }
+        }
+    }
+
+    private boolean same(String name) {
+        if (name.length() != sb.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != sb.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readString(char quote) throws IOException {
+        sb.setLength(0);
+        for (;;) {
+            if (pos == len && peek() == -1) {
+                throw error("Unterminated string");
+            }
+            int start = pos;
+            while (pos < len) {
+                char ch = buf[pos];
+                if (ch == quote || ch == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            sb.append(buf, start, pos - start);
+            if (pos == len) {
+                continue;
+            }
+            char ch = buf[pos++];
+            if (ch == quote) {
+                return;
+            }
+            int esc = next();
+            switch (esc) {
+                case '"': case '\'': case '\\': case '/': sb.append((char) esc); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit == -1) {
+                            throw error("Wrong unicode escape");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    sb.append((char) code);
+                    break;
+                default:
+                    throw error("Wrong escape sequence");
+            }
+        }
+    }
+
+    /** Reads a number into the buffer.
+     * @return {@code true} if the number is an integer that fits into long
+     */
+    private boolean readNumber() throws IOException {
+        sb.setLength(0);
+        boolean integer = true;
+        for (;;) {
+            int ch = peek();
+            if ((ch >= '0' && ch <= '9') || ch == '-' || ch == '+') {
+                sb.append((char) ch);
+            } else if (ch == '.' || ch == 'e' || ch == 'E') {
+                sb.append((char) ch);
+                integer = false;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        return integer && sb.length() <= 18;
+    }
+
+    private long parseLong() throws IOException {
+        long value = 0;
+        int i = 0;
+        boolean negative = sb.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == sb.length()) {
+            throw error("Wrong number " + sb);
+        }
+        for (; i < sb.length(); i++) {
+            char ch = sb.charAt(i);
+            if (ch < '0' || ch > '9') {
+                throw error("Wrong number " + sb);
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private double parseDouble() throws IOException {
+        try {
+            return Double.parseDouble(sb.toString());
+        } catch (NumberFormatException ex) {
+            throw error("Wrong number " + sb);
+        }
+    }
+}
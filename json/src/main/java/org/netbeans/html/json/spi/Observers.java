@@ -18,191 +18,229 @@
  */
 package org.netbeans.html.json.spi;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Set;
 import org.netbeans.html.json.impl.SimpleList;
 
-/**
+/** Dependency graph of computed properties. Each thread keeps its own
+ * stack of properties being computed, each proto object keeps, per
+ * property index, the set of computations that read the property.
+ * Computations are referenced weakly and removed once collected.
  *
  * @author Jaroslav Tulach
  */
 final class Observers {
-    private static final List<Watcher> GLOBAL = SimpleList.asList();
-    private final List<Watcher> watchers = SimpleList.asList();
-    private final List<Ref> observers = SimpleList.asList();
+    private static final ThreadLocal<List<Watcher>> STACK = new ThreadLocal<List<Watcher>>() {
+        @Override
+        protected List<Watcher> initialValue() {
+            return SimpleList.asList();
+        }
+    };
+    private static final ReferenceQueue<Watcher> QUEUE = new ReferenceQueue<Watcher>();
+    private volatile Slot[] slots = new Slot[0];
 
     Observers() {
-        assert Thread.holdsLock(GLOBAL);
     }
-    
-    static Usages beginComputing(Proto p, String name, Usages usages) {
-        synchronized (GLOBAL) {
-            final Watcher nw = new Watcher(p, name);
-            GLOBAL.add(nw);
-            return Usages.register(name, nw, usages);
+
+    static void beginComputing(Proto p, String name) {
+        final Watcher nw = new Watcher(p, name, name == null ? -1 : p.propertyIndex(name));
+        if (name != null) {
+            Observers mine = p.observers(true);
+            Watcher prev;
+            synchronized (mine) {
+                Slot s = mine.slot(nw.index);
+                prev = s.computing;
+                s.computing = nw;
+            }
+            if (prev != null) {
+                prev.destroy();
+            }
         }
+        STACK.get().add(nw);
     }
-    
+
     static void verifyUnlocked(Proto p) {
-        synchronized (GLOBAL) {
-            for (Watcher w : GLOBAL) {
-                if (w.proto == p) {
-                    if (w.owner == Thread.currentThread()) {
-                        throw new IllegalStateException("Re-entrant attempt to access " + p.toStr());
-                    }
-                }
+        List<Watcher> stack = STACK.get();
+        for (int i = 0; i < stack.size(); i++) {
+            if (stack.get(i).proto == p) {
+                throw new IllegalStateException("Re-entrant attempt to access " + p.toStr());
             }
-        }        
+        }
     }
 
     static void accessingValue(Proto p, String propName) {
-        synchronized (GLOBAL) {
-            for (Watcher w : GLOBAL) {
-                Observers mine = p.observers(true);
-                mine.add(w, new Ref(w, propName));
+        List<Watcher> stack = STACK.get();
+        if (stack.isEmpty()) {
+            return;
+        }
+        expunge();
+        Observers mine = p.observers(true);
+        int index = p.propertyIndex(propName);
+        synchronized (mine) {
+            Slot s = mine.slot(index);
+            for (int i = 0; i < stack.size(); i++) {
+                Watcher w = stack.get(i);
+                if (w.prop != null) {
+                    s.refs.add(new Ref(w, mine, index));
+                }
             }
         }
     }
-    
+
     static void finishComputing(Proto p) {
-        synchronized (GLOBAL) {
-            boolean found = false;
-            ListIterator<Watcher> it = GLOBAL.listIterator(GLOBAL.size());
-            while (it.hasPrevious()) {
-                Watcher w = it.previous();
-                if (w.proto == p && w.owner == Thread.currentThread()) {
-                    if (w.prop != null) {
-                        Observers mine = p.observers(true);
-                        mine.add(w);
+        List<Watcher> stack = STACK.get();
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            Watcher w = stack.get(i);
+            if (w.proto == p) {
+                stack.remove(i);
+                if (w.prop != null) {
+                    Observers mine = p.observers(true);
+                    synchronized (mine) {
+                        mine.slot(w.index).finished = w;
                     }
-                    found = true;
+                }
+                return;
+            }
+        }
+        throw new IllegalStateException("Cannot find " + p + " in " + stack);
+    }
+
+    static void valueHasMutated(Proto p, String propName) {
+        expunge();
+        Observers mine = p.observers(false);
+        if (mine == null) {
+            return;
+        }
+        Slot s = mine.existing(p.propertyIndex(propName));
+        if (s == null) {
+            return;
+        }
+        List<Watcher> mutated = SimpleList.asList();
+        synchronized (mine) {
+            Iterator<Ref> it = s.refs.iterator();
+            while (it.hasNext()) {
+                Watcher w = it.next().watcher();
+                if (w == null) {
                     it.remove();
-                    break;
+                    continue;
                 }
+                mutated.add(w);
+            }
+        }
+        for (Watcher w : mutated) {
+            w.valueHasMutated();
+        }
+    }
+
+    /** Removes references to collected computations. */
+    private static void expunge() {
+        for (;;) {
+            Reference<? extends Watcher> r = QUEUE.poll();
+            if (r == null) {
+                break;
             }
-            if (!found) {
-                throw new IllegalStateException("Cannot find " + p + " in " + GLOBAL);
+            Ref ref = (Ref) r;
+            synchronized (ref.owner) {
+                ref.owner.slots[ref.index].refs.remove(ref);
             }
         }
     }
-    
-    private static final class Ref {
-        private final Watcher ref;
-        private final String prop;
-        
-        public Ref(Watcher ref, String prop) {
-            this.ref = ref;
-            this.prop = prop;
+
+    private Slot slot(int index) {
+        assert Thread.holdsLock(this);
+        Slot[] arr = slots;
+        if (index >= arr.length) {
+            arr = Arrays.copyOf(arr, Math.max(index + 1, arr.length * 2));
+            slots = arr;
         }
-        
+        Slot s = arr[index];
+        if (s == null) {
+            s = arr[index] = new Slot();
+        }
+        return s;
+    }
+
+    private Slot existing(int index) {
+        Slot[] arr = slots;
+        return index < arr.length ? arr[index] : null;
+    }
+
+    private static final class Slot {
+        /** the latest computation of this property that has been started */
+        Watcher computing;
+        /** the latest computation of this property that has finished */
+        volatile Watcher finished;
+        /** computations that depend on this property */
+        final Set<Ref> refs = new LinkedHashSet<Ref>();
+    }
+
+    private static final class Ref extends WeakReference<Watcher> {
+        private final int hash;
+        final Observers owner;
+        final int index;
+
+        Ref(Watcher w, Observers owner, int index) {
+            super(w, QUEUE);
+            this.hash = System.identityHashCode(w);
+            this.owner = owner;
+            this.index = index;
+        }
+
         final Watcher watcher() {
             Watcher w = get();
             if (w == null) {
                 return null;
             }
-            final Observers o = w.proto.observers(false);
+            final Proto p = w.proto;
+            if (p == null) {
+                return null;
+            }
+            final Observers o = p.observers(false);
             if (o == null) {
                 return null;
             }
-            if (o.find(w.prop) == w) {
+            Slot s = o.existing(w.index);
+            if (s != null && s.finished == w) {
                 return w;
             }
             return null;
         }
 
-        Watcher get() {
-            return ref.proto == null ? null : ref;
+        @Override
+        public int hashCode() {
+            return hash;
         }
-    }
 
-    private Watcher find(String prop) {
-        if (prop == null) {
-            return null;
-        }
-        for (Watcher w : watchers) {
-            if (prop.equals(w.prop)) {
-                return w;
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
             }
-        }
-        return null;
-    }
-
-        final void add(Watcher w) {
-        for (int i = 0; i < watchers.size(); i++) {
-            Watcher ith = watchers.get(i);
-            if (w.prop == null) {
-                if (ith.prop == null) {
-                    watchers.set(i, w);
-                    return;
-                }
-            } else if (w.prop.equals(ith.prop)) {
-                watchers.set(i, w);
-                return;
+            if (obj instanceof Ref) {
+                Watcher w = get();
+                return w != null && w == ((Ref) obj).get();
             }
+            return false;
         }
-        watchers.add(w);
     }
 
-    static final void valueHasMutated(Proto p, String propName) {
-        List<Watcher> mutated = SimpleList.asList();
-        synchronized (GLOBAL) {
-            Observers mine = p.observers(false);
-            if (mine == null) {
-                return;
-            }
-            Iterator<Ref> it = mine.observers.iterator();
-            while (it.hasNext()) {
-                Ref ref = it.next();
-                Watcher w = ref.watcher();
-                if (w == null || w.proto == null) {
-                    it.remove();
-                    continue;
-                }
-                if (ref.prop.equals(propName)) {
-                    mutated.add(w);
-                }
-            }
-        }
-        for (Watcher w : mutated) {
-            w.valueHasMutated();
-        }
-    }
-
-    void add(Watcher w, Ref r) {
-        Thread.holdsLock(GLOBAL);
-        if (w == null) {
-            return;
-        }
-        Iterator<Ref> it = observers.iterator();
-        while (it.hasNext()) {
-            Ref ref = it.next();
-            if (r == ref) {
-                return;
-            }
-            final Watcher rw = ref.get();
-            if (rw == null) {
-                it.remove();
-                continue;
-            }
-            if (rw == w && ref.prop.equals(r.prop)) {
-                return;
-            }
-        }
-        observers.add(r);
-    }
-    
     private static final class Watcher {
-        Proto proto;
-        final Thread owner;
+        volatile Proto proto;
         final String prop;
+        final int index;
 
-        Watcher(Proto proto, String prop) {
-            this.owner = Thread.currentThread();
+        Watcher(Proto proto, String prop, int index) {
             this.proto = proto;
             this.prop = prop;
+            this.index = index;
         }
-        
+
         @Override
         public String toString() {
             return "Watcher: " + proto + ", " + prop;
@@ -219,31 +257,4 @@ final class Observers {
             }
         }
     }
-
-    static final class Usages {
-        private final List<String> names = SimpleList.asList();
-        private final List<Watcher> watchers = SimpleList.asList();
-
-        private Usages() {
-        }
-
-        static Usages register(String propName, Watcher w, Usages usages) {
-            if (propName != null) {
-                if (usages == null) {
-                    usages = new Usages();
-                }
-                int index = usages.names.indexOf(propName);
-                if (index == -1) {
-                    usages.names.add(propName);
-                    usages.watchers.add(w);
-                } else {
-                    Watcher prev = usages.watchers.get(index);
-                    prev.destroy();
-                    usages.watchers.set(index, w);
-                }
-            }
-            return usages;
-        }
-
-    }
 }
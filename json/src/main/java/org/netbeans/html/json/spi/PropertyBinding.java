@@ -18,6 +18,7 @@
  */
 package org.netbeans.html.json.spi;
 
+import java.io.IOException;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import net.java.html.BrwsrCtx;
@@ -55,6 +56,11 @@ public abstract class PropertyBinding {
                 proto.onChange(propIndex);
             }
 
+            @Override
+            protected void notifySplice(Proto proto, String propName, int index, int removeCount, Object[] inserted, int length) {
+                proto.arrayHasMutated(propName, index, removeCount, inserted, length);
+            }
+
             @Override
             protected Proto findProto(Proto.Type<?> type, Object object) {
                 return type.protoFor(object);
@@ -70,6 +76,22 @@ public abstract class PropertyBinding {
                 return from.read(c, data);
             }
 
+            @Override
+            protected Object read(Proto.Type<?> from, BrwsrCtx c, JSONReader r) throws IOException {
+                return from.read(c, r);
+            }
+
+            @Override
+            protected void batch(Runnable r) {
+                Batch.run(r);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void write(Proto.Type<?> type, Object model, Appendable out) throws IOException {
+                ((Proto.Type<Object>) type).writeTo(model, out);
+            }
+
             @Override
             protected <M> PropertyBinding newBinding(
                 Proto.Type<M> access, Bindings<?> bindings, String name, int index, M model, byte propertyType) {
@@ -18,6 +18,7 @@
  */
 package org.netbeans.html.json.spi;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import net.java.html.BrwsrCtx;
@@ -50,8 +51,7 @@ public final class Proto {
     private final Type type;
     private final net.java.html.BrwsrCtx context;
     private org.netbeans.html.json.impl.Bindings ko;
-    private Observers observers;
-    private Observers.Usages usages;
+    private volatile Observers observers;
 
     Proto(Object obj, Type type, BrwsrCtx context) {
         this.obj = obj;
@@ -90,7 +90,7 @@ public final class Proto {
      * @since 0.9
      */
     public void acquireLock(String propName) throws IllegalStateException {
-        usages = Observers.beginComputing(this, propName, usages);
+        Observers.beginComputing(this, propName);
     }
 
     /** A property on this proto object is about to be accessed. Verifies
@@ -127,10 +127,15 @@ public final class Proto {
      * Since 0.8.3: This method may be called by any thread - it reschedules
      * its actual execution into appropriate one by using
      * {@link BrwsrCtx#execute(java.lang.Runnable)}.
+     * Since 2.0: Inside of {@link Models#batch(java.lang.Runnable)} the
+     * change is delivered when the batch is over.
      *
      * @param propName name of the changed property
      */
     public void valueHasMutated(final String propName) {
+        if (Batch.record(this, propName, null, null, false)) {
+            return;
+        }
         context.execute(new Runnable() {
             @Override
             public void run() {
@@ -150,6 +155,8 @@ public final class Proto {
      * Since 0.8.3: This method may be called by any thread - it reschedules
      * its actual execution into appropriate one by using
      * {@link BrwsrCtx#execute(java.lang.Runnable)}.
+     * Since 2.0: Inside of {@link Models#batch(java.lang.Runnable)} the
+     * change is delivered when the batch is over.
      *
      * @param propName name of the changed property
      * @param oldValue provides previous value of the property
@@ -159,6 +166,9 @@ public final class Proto {
     public void valueHasMutated(
         final String propName, final Object oldValue, final Object newValue
     ) {
+        if (Batch.record(this, propName, oldValue, newValue, true)) {
+            return;
+        }
         context.execute(new Runnable() {
             @Override
             public void run() {
@@ -170,6 +180,40 @@ public final class Proto {
         });
     }
 
+    final void arrayHasMutated(
+        final String propName, final int index, final int removeCount,
+        final Object[] inserted, final int length
+    ) {
+        if (Batch.record(this, propName, null, null, false)) {
+            return;
+        }
+        context.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (ko != null) {
+                    ko.spliceArray(propName, index, removeCount, inserted, length);
+                }
+                Observers.valueHasMutated(Proto.this, propName);
+            }
+        });
+    }
+
+    final void valuesHaveMutated(
+        final String[] propNames, final Object[] oldValues, final Object[] newValues
+    ) {
+        context.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (ko != null) {
+                    ko.valuesHaveMutated(propNames, oldValues, newValues);
+                }
+                for (String propName : propNames) {
+                    Observers.valueHasMutated(Proto.this, propName);
+                }
+            }
+        });
+    }
+
     /** Initializes the associated model in the current {@link #getContext() context}.
      * In case of <em>knockout.js</em> technology, applies given bindings
      * of the current model to the <em>body</em> element of the page.
@@ -273,6 +317,20 @@ public final class Proto {
         return JSON.read(context, modelClass, data);
     }
 
+    /** Reads a Java {@link Model} class directly from a stream of
+     * JSON tokens.
+     *
+     * @param <T> type of the model class
+     * @param modelClass the type of the class to create
+     * @param r the reader positioned at the value to read
+     * @return newly created instance of the model class or <code>null</code>
+     * @throws IOException if the stream cannot be read
+     * @since 2.0
+     */
+    public <T> T read(Class<T> modelClass, JSONReader r) throws IOException {
+        return JSON.read(context, modelClass, r);
+    }
+
     /** Initializes asynchronous JSON connection to specified URL. Delegates
      * to {@link #loadJSON(int, java.lang.String, java.lang.String, java.lang.String, java.lang.Object, java.lang.Object...) }
      * with no extra parameters.
@@ -516,10 +574,20 @@ public final class Proto {
     }
 
     final Observers observers(boolean create) {
-        if (create && observers == null) {
-            observers = new Observers();
+        Observers o = observers;
+        if (o == null && create) {
+            synchronized (this) {
+                o = observers;
+                if (o == null) {
+                    observers = o = new Observers();
+                }
+            }
         }
-        return observers;
+        return o;
+    }
+
+    final int propertyIndex(String propName) {
+        return type.propertyIndex(propName);
     }
 
     private static class PropertyInfo {
@@ -542,6 +610,8 @@ public final class Proto {
         final Class<? extends Model> clazz;
         final java.util.List<PropertyInfo> properties;
         final java.util.List<String> functions;
+        private volatile java.util.Map<String,Integer> indexes;
+        private int extra;
 
         /** Constructor for subclasses generated by the annotation processor
          * associated with {@link net.java.html.json.Model} annotation.
@@ -597,6 +667,40 @@ public final class Proto {
             properties.set(index, new PropertyInfo(name, t));
         }
 
+        /** Index of a property for dependency tracking. Registered
+         * properties use their own index, other names get an index
+         * after them on first request.
+         */
+        final int propertyIndex(String name) {
+            java.util.Map<String,Integer> map = indexes;
+            if (map == null) {
+                synchronized (this) {
+                    map = indexes;
+                    if (map == null) {
+                        map = new java.util.concurrent.ConcurrentHashMap<String,Integer>();
+                        for (int i = 0; i < properties.size(); i++) {
+                            PropertyInfo info = properties.get(i);
+                            if (info != null) {
+                                map.put(info.name, i);
+                            }
+                        }
+                        indexes = map;
+                    }
+                }
+            }
+            Integer index = map.get(name);
+            if (index == null) {
+                synchronized (this) {
+                    index = map.get(name);
+                    if (index == null) {
+                        index = properties.size() + extra++;
+                        map.put(name, index);
+                    }
+                }
+            }
+            return index;
+        }
+
         /** Registers function of given name at given index.
          *
          * @param name name of the function
@@ -670,6 +774,36 @@ public final class Proto {
          */
         protected abstract Model read(BrwsrCtx c, Object json);
 
+        /** Reads the model directly from a stream of JSON tokens.
+         * Classes generated by the {@link Model} annotation processor
+         * fill their properties as the tokens come. The default
+         * implementation reads the whole value first and passes it to
+         * {@link #read(net.java.html.BrwsrCtx, java.lang.Object)}.
+         *
+         * @param c the browser context to work in
+         * @param r the reader positioned at the object to read
+         * @return new instance of model class filled by the data
+         * @throws IOException if the stream cannot be read
+         * @since 2.0
+         */
+        protected Model read(BrwsrCtx c, JSONReader r) throws IOException {
+            return read(c, r.nextValue());
+        }
+
+        /** Writes JSON representation of the model. Classes generated
+         * by the {@link Model} annotation processor write their properties
+         * directly. The default implementation writes
+         * {@link Object#toString() string value} of the model.
+         *
+         * @param model the model to write
+         * @param out where to write the JSON to
+         * @throws IOException if the output cannot be written
+         * @since 2.0
+         */
+        protected void writeTo(Model model, Appendable out) throws IOException {
+            out.append(model.toString());
+        }
+
         /** Called when a {@link #registerProperty(java.lang.String, int, boolean) registered property}
          * changes its value.
          *
@@ -793,6 +927,18 @@ public final class Proto {
             return JSON.toJSON(obj);
         }
 
+        /** Writes JSON value of an object. Models and lists of models
+         * are written directly without creating intermediate strings.
+         *
+         * @param out where to write the JSON to
+         * @param obj the object to convert
+         * @throws IOException if the output cannot be written
+         * @since 2.0
+         */
+        public final void writeJSON(Appendable out, Object obj) throws IOException {
+            JSON.write(out, obj);
+        }
+
         /** Converts the value to string.
          *
          * @param val the value
@@ -153,6 +153,81 @@ public interface Technology<Data> {
         public void valueHasMutated(D data, String propertyName, Object oldValue, Object newValue);
     }
     
+    /** Technology that can process changes of multiple properties
+     * of a model at once. Changes made inside of
+     * {@link net.java.html.json.Models#batch(java.lang.Runnable)} are
+     * delivered via this method.
+     *
+     * @param <D> internal type of the technology
+     * @since 2.0
+     */
+    public static interface BatchValueMutated<D> extends ValueMutated<D> {
+        /** Model for given data has changed values of its properties.
+         * The semantics is the same as of
+         * {@link #valueHasMutated(java.lang.Object, java.lang.String, java.lang.Object, java.lang.Object)}
+         * called for each of the properties. Each property is listed
+         * only once.
+         *
+         * @param data technology's own representation of the model
+         * @param propertyNames names of the model properties that changed
+         * @param oldValues previous values of the properties
+         * @param newValues new values of the properties
+         */
+        public void valueHasMutated(D data, String[] propertyNames, Object[] oldValues, Object[] newValues);
+    }
+
+    /** Technology that can apply changes of an array property
+     * incrementally. When a list property of a model is modified by
+     * adding, removing or replacing its elements, the change is described
+     * as a <em>splice</em> - just like the one of JavaScript arrays - and
+     * only the inserted elements are sent to the technology, rather than
+     * {@link #wrapArray(java.lang.Object[]) wrapping} the whole list again.
+     * Changes that cannot be described as a splice (like sorting) are
+     * still delivered via {@link ValueMutated#valueHasMutated(java.lang.Object, java.lang.String, java.lang.Object, java.lang.Object)}.
+     *
+     * @param <D> internal type of the technology
+     * @since 2.0
+     */
+    public static interface ArraySplice<D> extends ValueMutated<D> {
+        /** Applies a splice to the array last obtained for the property.
+         * If the technology's own copy of the array doesn't match
+         * (its length isn't <code>length - inserted length + removeCount</code>),
+         * the technology shall re-read the whole value of the property
+         * instead.
+         *
+         * @param data technology's own representation of the model
+         * @param propertyName name of the array property that changed
+         * @param index position of the first changed element
+         * @param removeCount number of elements removed at <code>index</code>
+         * @param inserted elements inserted at <code>index</code> as
+         *   returned by {@link #wrapArray(java.lang.Object[])}
+         * @param length length of the array after the change
+         */
+        public void spliceArray(D data, String propertyName, int index, int removeCount, Object inserted, int length);
+    }
+
+    /** Technology that can convert elements of large arrays on demand.
+     * When the whole value of an array property is needed, the elements
+     * are offered to the technology before any of them is converted.
+     * The technology may wrap them into an array that converts the
+     * {@link Models#isModel(java.lang.Class) models} among them
+     * only when they are accessed, for example by calling
+     * {@link Models#toRaw(java.lang.Object)}.
+     *
+     * @param <D> internal type of the technology
+     * @since 2.0
+     */
+    public static interface LazyArray<D> extends Technology<D> {
+        /** Wraps elements of an array without converting them.
+         *
+         * @param elements elements of the array as they are in Java
+         * @return wrapped array or <code>null</code> if the elements shall be
+         *   converted right away and {@link #wrapArray(java.lang.Object[]) wrapped}
+         *   as usual
+         */
+        public Object wrapLazyArray(Object[] elements);
+    }
+
     /** Apply technology bindings at selected subtree of the HTML page.
      * Can be accessed via {@link Proto#applyBindings(java.lang.String)} or
      * via method <code>applyBindings(String)</code> generated when one
@@ -68,5 +68,25 @@ public interface Transfer {
      * @param call description of the call to make
      */
     public void loadJSON(JSONCall call);
+
+    /** Transfer that lets models read JSON directly from a stream.
+     * When such transfer is registered,
+     * {@link net.java.html.json.Models#parse(net.java.html.BrwsrCtx, java.lang.Class, java.io.InputStream)}
+     * fills the models token by token, without calling
+     * {@link #toJSON(java.io.InputStream)} to build a representation
+     * of the whole stream first.
+     *
+     * @since 2.0
+     */
+    public static interface Streaming extends Transfer {
+        /** Creates a reader of JSON tokens in the stream.
+         *
+         * @param is the stream to read
+         * @return the reader or <code>null</code> if the stream should
+         *   rather be processed by {@link #toJSON(java.io.InputStream)}
+         * @throws IOException if something goes wrong
+         */
+        public JSONReader reader(InputStream is) throws IOException;
+    }
     
 }
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.Models;
+import net.java.html.json.People;
+import net.java.html.json.Person;
+import net.java.html.json.Sex;
+import org.netbeans.html.context.spi.Contexts;
+import org.netbeans.html.json.spi.FunctionBinding;
+import org.netbeans.html.json.spi.PropertyBinding;
+import org.netbeans.html.json.spi.Technology;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ArraySpliceTest implements Technology.ArraySplice<Object> {
+    private final List<String> changes = new ArrayList<String>();
+    private BrwsrCtx ctx;
+    private People people;
+
+    @BeforeMethod
+    public void initPeople() {
+        ctx = Contexts.newBuilder().register(Technology.class, this, 1).build();
+        people = Models.bind(new People(), ctx);
+        Models.toRaw(people);
+        changes.clear();
+    }
+
+    @Test
+    public void onlyChangedElementsAreSent() {
+        List<String> names = people.getNicknames();
+        names.add("One");
+        names.add("Three");
+        names.add(1, "Two");
+        names.set(2, "Four");
+        names.remove(0);
+        names.remove("Four");
+        names.remove("Unknown");
+        assertEquals(changes, Arrays.asList(
+            "nicknames 0 -0 [One] 1",
+            "nicknames 1 -0 [Three] 2",
+            "nicknames 1 -0 [Two] 3",
+            "nicknames 2 -1 [Four] 3",
+            "nicknames 0 -1 [] 2",
+            "nicknames 1 -1 [] 1"
+        ));
+        assertEquals(names, Arrays.asList("Two"));
+    }
+
+    @Test
+    public void rangesAreSentAtOnce() {
+        List<Integer> age = people.getAge();
+        age.addAll(Arrays.asList(1, 2, 3));
+        age.addAll(1, Arrays.asList(4, 5));
+        age.subList(1, 4).clear();
+        age.clear();
+        assertEquals(changes, Arrays.asList(
+            "age 0 -0 [1, 2, 3] 3",
+            "age 1 -0 [4, 5] 5",
+            "age 1 -3 [] 2",
+            "age 0 -2 [] 0"
+        ));
+    }
+
+    @Test
+    public void modelsAreConverted() {
+        Person p = Models.bind(new Person("Jarda", "Tulach", Sex.MALE), ctx);
+        people.getInfo().add(p);
+        assertEquals(changes, Arrays.asList("info 0 -0 [wrapped Jarda] 1"));
+    }
+
+    @Test
+    public void reorderingReplacesWholeArray() {
+        List<Integer> age = people.getAge();
+        age.addAll(Arrays.asList(3, 1, 2));
+        changes.clear();
+        ((JSONList<Integer>) age).sort(null);
+        assertEquals(changes, Arrays.asList("age"));
+        assertEquals(age, Arrays.asList(1, 2, 3));
+    }
+
+    @Test
+    public void batchReplacesWholeArray() {
+        final List<Integer> age = people.getAge();
+        Models.batch(new Runnable() {
+            @Override
+            public void run() {
+                age.add(1);
+                age.add(2);
+            }
+        });
+        assertEquals(changes, Arrays.asList("age"));
+    }
+
+    @Override
+    public void spliceArray(Object data, String propertyName, int index, int removeCount, Object inserted, int length) {
+        changes.add(propertyName + " " + index + " -" + removeCount + " " + Arrays.toString((Object[]) inserted) + " " + length);
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String propertyName, Object oldValue, Object newValue) {
+        changes.add(propertyName);
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String propertyName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object wrapModel(Object model) {
+        return model instanceof Person ? "wrapped " + ((Person) model).getFirstName() : model;
+    }
+
+    @Override
+    public <M> M toModel(Class<M> modelClass, Object data) {
+        return modelClass.cast(data);
+    }
+
+    @Override
+    public void bind(PropertyBinding b, Object model, Object data) {
+    }
+
+    @Override
+    public void expose(FunctionBinding fb, Object model, Object d) {
+    }
+
+    @Override
+    public void applyBindings(Object data) {
+    }
+
+    @Override
+    public Object wrapArray(Object[] arr) {
+        return arr;
+    }
+
+    @Override
+    public void runSafe(Runnable r) {
+        r.run();
+    }
+}
@@ -18,6 +18,13 @@
  */
 package org.netbeans.html.json.impl;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.People;
+import net.java.html.json.Person;
+import net.java.html.json.Sex;
+import org.netbeans.html.json.spi.JSONCall;
 import static org.testng.Assert.*;
 import org.testng.annotations.Test;
 
@@ -57,4 +64,42 @@ public class JSONTest {
         assertEquals(JSON.boolValue(0), Boolean.FALSE);
         assertEquals(JSON.boolValue(1), Boolean.TRUE);
     }
+
+    @Test public void writeEscapesLikeToJSON() throws IOException {
+        String[] values = { "", "plain", "\"quoted\"", "a\nb\r\tc\\", "\\\"", "čau" };
+        for (String v : values) {
+            StringBuilder sb = new StringBuilder();
+            JSON.write(sb, v);
+            assertEquals(sb.toString(), JSON.toJSON(v));
+        }
+    }
+
+    @Test public void modelsAreWrittenInline() throws IOException {
+        People people = new People();
+        people.getInfo().add(new Person("Ja\"rda", "Tu\nlach", Sex.MALE));
+        people.getInfo().add(new Person(null, "X", null));
+        people.getNicknames().add("\\");
+        people.getAge().add(42);
+        people.getSex().add(Sex.FEMALE);
+        String exp = "{\"info\":[{\"firstName\":\"Ja\\\"rda\",\"lastName\":\"Tu\\nlach\",\"sex\":\"MALE\"},"
+            + "{\"firstName\":null,\"lastName\":\"X\",\"sex\":null}],"
+            + "\"nicknames\":[\"\\\\\"],\"age\":[42],\"sex\":[\"FEMALE\"]}";
+        assertEquals(people.toString(), exp);
+        StringBuilder sb = new StringBuilder();
+        JSON.write(sb, people);
+        assertEquals(sb.toString(), exp);
+    }
+
+    @Test public void callUploadsTheModel() throws IOException {
+        Person p = new Person("Jarda", "Tulach", Sex.MALE);
+        JSONCall call = PropertyBindingAccessor.createCall(BrwsrCtx.EMPTY, null, null, "url", null, "POST", p);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        call.writeData(os);
+        assertEquals(os.toString("UTF-8"), p.toString());
+
+        JSONCall text = PropertyBindingAccessor.createCall(BrwsrCtx.EMPTY, null, null, "url", null, "POST", "raw \"text\"");
+        os.reset();
+        text.writeData(os);
+        assertEquals(os.toString("UTF-8"), "raw \"text\"", "Strings are sent as they are");
+    }
 }
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.Models;
+import net.java.html.json.People;
+import net.java.html.json.Person;
+import net.java.html.json.Sex;
+import org.netbeans.html.context.spi.Contexts;
+import org.netbeans.html.json.spi.FunctionBinding;
+import org.netbeans.html.json.spi.PropertyBinding;
+import org.netbeans.html.json.spi.Technology;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LazyArrayTest implements Technology.ArraySplice<Object>, Technology.LazyArray<Object> {
+    private final Map<String, PropertyBinding> props = new HashMap<String, PropertyBinding>();
+    private final List<String> wrapped = new ArrayList<String>();
+    private BrwsrCtx ctx;
+    private People people;
+
+    @BeforeMethod
+    public void initPeople() {
+        ctx = Contexts.newBuilder().register(Technology.class, this, 1).build();
+        people = Models.bind(new People(), ctx);
+        Models.toRaw(people);
+        wrapped.clear();
+    }
+
+    @Test
+    public void wholeArrayIsOfferedUnconverted() {
+        Person p1 = Models.bind(new Person("Jarda", "Tulach", Sex.MALE), ctx);
+        Person p2 = Models.bind(new Person("Lazy", "Array", Sex.FEMALE), ctx);
+        people.getInfo().addAll(Arrays.asList(p1, p2));
+        wrapped.clear();
+
+        Object value = props.get("info").getValue();
+        assertTrue(value instanceof Lazy, "Lazy array: " + value);
+        Lazy lazy = (Lazy) value;
+        assertSame(lazy.elements[0], p1, "Models aren't converted");
+        assertSame(lazy.elements[1], p2, "Models aren't converted");
+        assertEquals(wrapped, Arrays.asList(), "No wrapping yet");
+    }
+
+    @Test
+    public void splicesAreConvertedEagerly() {
+        Person p = Models.bind(new Person("Jarda", "Tulach", Sex.MALE), ctx);
+        people.getInfo().add(p);
+        assertEquals(wrapped, Arrays.asList("[wrapped Jarda]"));
+    }
+
+    @Test
+    public void refusedArrayIsConverted() {
+        people.getNicknames().add("One");
+        Object value = props.get("nicknames").getValue();
+        assertTrue(value instanceof Object[], "Regular array: " + value);
+        assertEquals(wrapped, Arrays.asList("[One]", "[One]"));
+    }
+
+    @Override
+    public Object wrapLazyArray(Object[] elements) {
+        if (elements.length > 0 && elements[0] instanceof Person) {
+            return new Lazy(elements);
+        }
+        return null;
+    }
+
+    @Override
+    public void spliceArray(Object data, String propertyName, int index, int removeCount, Object inserted, int length) {
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String propertyName, Object oldValue, Object newValue) {
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String propertyName) {
+    }
+
+    @Override
+    public Object wrapModel(Object model) {
+        return model instanceof Person ? "wrapped " + ((Person) model).getFirstName() : model;
+    }
+
+    @Override
+    public <M> M toModel(Class<M> modelClass, Object data) {
+        return modelClass.cast(data);
+    }
+
+    @Override
+    public void bind(PropertyBinding b, Object model, Object data) {
+        if (model == people) {
+            props.put(b.getPropertyName(), b);
+        }
+    }
+
+    @Override
+    public void expose(FunctionBinding fb, Object model, Object d) {
+    }
+
+    @Override
+    public void applyBindings(Object data) {
+    }
+
+    @Override
+    public Object wrapArray(Object[] arr) {
+        wrapped.add(Arrays.toString(arr));
+        return arr;
+    }
+
+    @Override
+    public void runSafe(Runnable r) {
+        r.run();
+    }
+
+    private static final class Lazy {
+        final Object[] elements;
+
+        Lazy(Object[] elements) {
+            this.elements = elements;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.spi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.Models;
+import org.netbeans.html.context.spi.Contexts;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BatchTest implements Technology.BatchValueMutated<Object> {
+    private final List<String> calls = new ArrayList<String>();
+    private BrwsrCtx ctx;
+
+    @BeforeMethod
+    public void initContext() {
+        calls.clear();
+        ctx = Contexts.newBuilder().register(Technology.class, this, 1).build();
+    }
+
+    @Test
+    public void changesOfAModelAreDeliveredOnce() {
+        final Cell c = Models.bind(new Cell(0, null), ctx);
+        Models.toRaw(c);
+        Models.batch(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 1000; i++) {
+                    c.setValue(i);
+                }
+                assertEquals(calls.size(), 0, "Nothing delivered yet");
+            }
+        });
+        assertEquals(calls.size(), 1, "One call: " + calls);
+        assertEquals(calls.get(0), "[value, doubled] [0, null] [1000, 1000]");
+    }
+
+    @Test
+    public void dependentModelsAreNotifiedInTheSameBatch() {
+        final Cell source = Models.bind(new Cell(0, null), ctx);
+        final List<Cell> cells = new ArrayList<Cell>();
+        for (int i = 0; i < 10; i++) {
+            Cell c = Models.bind(new Cell(), ctx);
+            c.setSource(source);
+            Models.toRaw(c);
+            assertEquals(c.getDoubled(), 0);
+            cells.add(c);
+        }
+        calls.clear();
+        Models.batch(new Runnable() {
+            @Override
+            public void run() {
+                source.setValue(1);
+                source.setValue(2);
+            }
+        });
+        assertEquals(calls.size(), cells.size(), "One call per dependent model: " + calls);
+        for (String call : calls) {
+            assertEquals(call, "[doubled] [null] [null]");
+        }
+    }
+
+    @Test
+    public void nestedBatchesDeliverAtTheEnd() {
+        final Cell c = Models.bind(new Cell(0, null), ctx);
+        Models.toRaw(c);
+        Models.batch(new Runnable() {
+            @Override
+            public void run() {
+                Models.batch(new Runnable() {
+                    @Override
+                    public void run() {
+                        c.setValue(1);
+                    }
+                });
+                assertEquals(calls.size(), 0, "Waiting for outer batch");
+                c.setValue(2);
+            }
+        });
+        assertEquals(calls, Arrays.asList("[value, doubled] [0, null] [2, 2]"));
+    }
+
+    @Test
+    public void noBatchDeliversImmediately() {
+        Cell c = Models.bind(new Cell(0, null), ctx);
+        Models.toRaw(c);
+        c.setValue(1);
+        assertEquals(calls, Arrays.asList("value 0 1", "doubled null 1"));
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String[] propertyNames, Object[] oldValues, Object[] newValues) {
+        calls.add(Arrays.toString(propertyNames) + " " + Arrays.toString(oldValues) + " " + Arrays.toString(newValues));
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String propertyName, Object oldValue, Object newValue) {
+        calls.add(propertyName + " " + oldValue + " " + newValue);
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String propertyName) {
+        assertNull(data, "Never called");
+    }
+
+    @Override
+    public Object wrapModel(Object model) {
+        return model;
+    }
+
+    @Override
+    public <M> M toModel(Class<M> modelClass, Object data) {
+        return modelClass.cast(data);
+    }
+
+    @Override
+    public void bind(PropertyBinding b, Object model, Object data) {
+    }
+
+    @Override
+    public void expose(FunctionBinding fb, Object model, Object d) {
+    }
+
+    @Override
+    public void applyBindings(Object data) {
+    }
+
+    @Override
+    public Object wrapArray(Object[] arr) {
+        return arr;
+    }
+
+    @Override
+    public void runSafe(Runnable r) {
+        r.run();
+    }
+}
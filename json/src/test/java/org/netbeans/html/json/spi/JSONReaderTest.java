@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.spi;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.netbeans.html.json.impl.JSONObj;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import org.testng.annotations.Test;
+
+public class JSONReaderTest {
+    @Test
+    public void parsesAllKindsOfValues() throws IOException {
+        JSONObj o = (JSONObj) reader("{ \"s\" : \"a\\\"b\\u010d\\n\", \"i\": -12, \"l\": 12345678901, "
+            + "\"d\": 1.5e2, \"t\": true, \"f\": false, \"n\": null, \"a\": [1, {}, []] }").nextValue();
+        assertEquals(o.get("s"), "a\"bč\n");
+        assertEquals(o.get("i"), -12);
+        assertEquals(o.get("l"), 12345678901L);
+        assertEquals(o.get("d"), 150.0);
+        assertEquals(o.get("t"), true);
+        assertEquals(o.get("f"), false);
+        assertNull(o.get("n"));
+        Object[] arr = (Object[]) o.get("a");
+        assertEquals(arr.length, 3);
+        assertEquals(arr[0], 1);
+        assertTrue(arr[1] instanceof JSONObj);
+        assertEquals(((Object[]) arr[2]).length, 0);
+        assertEquals(o.toString(), "{\"s\":\"a\\\"bč\\n\",\"i\":-12,\"l\":12345678901,"
+            + "\"d\":150.0,\"t\":true,\"f\":false,\"n\":null,\"a\":[1,{},[]]}");
+    }
+
+    @Test
+    public void readTokens() throws IOException {
+        JSONReader r = reader("{'x': 1.5, 'skip': {'a': [1, 2]}, 'list': [1, 2, 3], 'n': null, 's': 'str'}");
+        String[] names = { "x", "list", "n", "s" };
+        r.beginObject();
+        assertTrue(r.hasNext());
+        assertEquals(r.nextName(names), 0);
+        assertEquals(r.nextDouble(), 1.5);
+        assertTrue(r.hasNext());
+        assertEquals(r.nextName(names), -1);
+        r.skipValue();
+        assertTrue(r.hasNext());
+        assertEquals(r.nextName(names), 1);
+        assertTrue(r.beginArray());
+        int sum = 0;
+        while (r.hasNext()) {
+            sum += r.nextInt();
+        }
+        r.endArray();
+        assertEquals(sum, 6);
+        assertTrue(r.hasNext());
+        assertEquals(r.nextName(names), 2);
+        assertTrue(r.nextNull());
+        assertTrue(r.hasNext());
+        assertEquals(r.nextName(names), 3);
+        assertFalse(r.nextNull());
+        assertFalse(r.beginArray(), "Not an array");
+        assertEquals(r.nextString(), "str");
+        assertFalse(r.hasNext());
+        r.endObject();
+        assertFalse(r.hasNext(), "End of stream");
+    }
+
+    @Test
+    public void valuesAreConverted() throws IOException {
+        JSONReader r = reader("['12', 3.7, true, 42, null]");
+        assertTrue(r.beginArray());
+        assertTrue(r.hasNext());
+        assertEquals(r.nextInt(), 12);
+        assertTrue(r.hasNext());
+        assertEquals(r.nextInt(), 3);
+        assertTrue(r.hasNext());
+        assertEquals(r.nextString(), "true");
+        assertTrue(r.hasNext());
+        assertEquals(r.nextString(), "42");
+        assertTrue(r.hasNext());
+        assertEquals(r.nextDouble(), 0.0);
+        r.endArray();
+    }
+
+    @Test
+    public void unreadValuesAreSkipped() throws IOException {
+        JSONReader r = reader("[{'a': {'b': [1, {'c': 'd'}]}, 'e': 2}, 3]");
+        assertTrue(r.beginArray());
+        assertTrue(r.hasNext());
+        r.beginObject();
+        r.endObject();
+        assertTrue(r.hasNext());
+        assertEquals(r.nextInt(), 3);
+        assertFalse(r.hasNext());
+        r.endArray();
+    }
+
+    @Test
+    public void errorsAreReported() {
+        for (String wrong : new String[] { "{", "{\"a\" 1}", "[1 2]", "\"x", "tru", "{'a':1,}x" }) {
+            try {
+                reader(wrong).nextValue();
+                fail("Should fail: " + wrong);
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage().contains(" at "), ex.getMessage());
+            }
+        }
+    }
+
+    private static JSONReader reader(String text) {
+        return new JSONReader(new StringReader(text));
+    }
+}
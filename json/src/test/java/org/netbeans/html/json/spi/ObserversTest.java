@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.spi;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.ComputedProperty;
+import net.java.html.json.Model;
+import net.java.html.json.Models;
+import net.java.html.json.Property;
+import org.netbeans.html.context.spi.Contexts;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ObserversTest implements Technology<Object> {
+    private int doubledChanges;
+    private BrwsrCtx ctx;
+
+    @BeforeMethod
+    public void initContext() {
+        doubledChanges = 0;
+        ctx = Contexts.newBuilder().register(Technology.class, this, 1).build();
+    }
+
+    @Model(className = "Cell", properties = {
+        @Property(name = "value", type = int.class),
+        @Property(name = "source", type = Cell.class),
+    })
+    static class CellCntrl {
+        @ComputedProperty
+        static int doubled(Cell source, int value) {
+            return source == null ? value : source.getValue() * 2;
+        }
+    }
+
+    @Test
+    public void mutationFansOutToManyModels() {
+        Cell source = Models.bind(new Cell(1, null), ctx);
+        List<Cell> cells = new ArrayList<Cell>();
+        for (int i = 0; i < 10000; i++) {
+            Cell c = Models.bind(new Cell(), ctx);
+            c.setSource(source);
+            Models.toRaw(c);
+            assertEquals(c.getDoubled(), 2);
+            cells.add(c);
+        }
+
+        long took = System.nanoTime();
+        source.setValue(5);
+        took = System.nanoTime() - took;
+
+        assertEquals(doubledChanges, cells.size(), "Every dependent model notified once");
+        for (Cell c : cells) {
+            assertEquals(c.getDoubled(), 10);
+        }
+        assertTrue(took < 5_000_000_000L, "Notification is linear: " + took + " ns");
+
+        doubledChanges = 0;
+        source.setValue(6);
+        assertEquals(doubledChanges, cells.size(), "Recomputed models re-registered once");
+    }
+
+    @Test
+    public void collectedDependentsAreForgotten() throws Exception {
+        Cell source = Models.bind(new Cell(1, null), ctx);
+        Cell c = Models.bind(new Cell(), ctx);
+        c.setSource(source);
+        Models.toRaw(c);
+        assertEquals(c.getDoubled(), 2);
+
+        Reference<Cell> ref = new WeakReference<Cell>(c);
+        c = null;
+        for (int i = 0; i < 100 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get(), "Dependent model can be collected");
+        source.setValue(3);
+        assertEquals(doubledChanges, 0, "Nobody to notify");
+    }
+
+    @Override
+    public Object wrapModel(Object model) {
+        return model;
+    }
+
+    @Override
+    public <M> M toModel(Class<M> modelClass, Object data) {
+        return modelClass.cast(data);
+    }
+
+    @Override
+    public void bind(PropertyBinding b, Object model, Object data) {
+    }
+
+    @Override
+    public void valueHasMutated(Object data, String propertyName) {
+        if ("doubled".equals(propertyName)) {
+            doubledChanges++;
+        }
+    }
+
+    @Override
+    public void expose(FunctionBinding fb, Object model, Object d) {
+    }
+
+    @Override
+    public void applyBindings(Object data) {
+    }
+
+    @Override
+    public Object wrapArray(Object[] arr) {
+        return arr;
+    }
+
+    @Override
+    public void runSafe(Runnable r) {
+        r.run();
+    }
+}
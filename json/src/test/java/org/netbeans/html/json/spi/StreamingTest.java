@@ -0,0 +1,228 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.json.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.Models;
+import org.netbeans.html.context.spi.Contexts;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Huge arrays are delivered element by element. Size of the generated
+ * stream can be increased by <code>-Dstreaming.megabytes=4096</code>.
+ */
+public class StreamingTest implements Transfer.Streaming {
+    private static final long SIZE = Long.getLong("streaming.megabytes", 1) * 1024 * 1024;
+    private BrwsrCtx ctx;
+
+    @BeforeMethod
+    public void initContext() {
+        ctx = Contexts.newBuilder().register(Transfer.class, this, 1).build();
+    }
+
+    @Test
+    public void elementsAreDeliveredBeforeTheStreamEnds() throws IOException {
+        final Cells is = new Cells(SIZE);
+        final long[] readAtFirst = { -1 };
+        final Reference<?>[] first = { null };
+        Counter counter = new Counter() {
+            @Override
+            void process(Cell cell) {
+                if (count == 0) {
+                    readAtFirst[0] = is.position;
+                    first[0] = new WeakReference<Cell>(cell);
+                }
+                assertEquals(cell.getValue(), count, "Right order");
+                if (count == 10000) {
+                    assertGC(first[0]);
+                }
+            }
+        };
+        Models.parse(ctx, Cell.class, is, counter);
+        assertEquals(counter.count, is.count, "All elements delivered");
+        assertTrue(readAtFirst[0] < 64 * 1024, "First element delivered early: " + readAtFirst[0]);
+    }
+
+    @Test
+    public void blockingQueueSlowsTheReaderDown() throws Exception {
+        final Cells is = new Cells(SIZE / 16);
+        final BlockingQueue<Cell> queue = new ArrayBlockingQueue<Cell>(16);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread reader = new Thread("Reader") {
+            @Override
+            public void run() {
+                try {
+                    Models.parse(ctx, Cell.class, is, queue);
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        reader.start();
+        Cell cell = queue.poll(10, TimeUnit.SECONDS);
+        assertNotNull(cell, "First element received");
+        Thread.sleep(100);
+        assertEquals(queue.remainingCapacity(), 0, "Reader waits for the consumer");
+        long position = is.position;
+        Thread.sleep(100);
+        assertEquals(is.position, position, "Nothing more has been read");
+
+        int expected = 0;
+        for (;;) {
+            if (cell != null) {
+                assertEquals(cell.getValue(), expected++);
+            } else if (!reader.isAlive() && queue.isEmpty()) {
+                break;
+            }
+            cell = queue.poll(100, TimeUnit.MILLISECONDS);
+        }
+        reader.join();
+        assertNull(failure.get(), "No failure");
+        assertEquals(expected, is.count, "All elements consumed");
+    }
+
+    @Test
+    public void interruptStopsReading() throws Exception {
+        final Cells is = new Cells(SIZE);
+        final BlockingQueue<Cell> queue = new ArrayBlockingQueue<Cell>(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread reader = new Thread("Reader") {
+            @Override
+            public void run() {
+                try {
+                    Models.parse(ctx, Cell.class, is, queue);
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        reader.start();
+        assertNotNull(queue.poll(10, TimeUnit.SECONDS));
+        reader.interrupt();
+        reader.join(10000);
+        assertTrue(failure.get() instanceof java.io.InterruptedIOException, "Interrupted: " + failure.get());
+    }
+
+    private static void assertGC(Reference<?> ref) {
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        assertNull(ref.get(), "Processed elements aren't held by the reader");
+    }
+
+    @Override
+    public JSONReader reader(InputStream is) throws IOException {
+        return new JSONReader(new InputStreamReader(is, "UTF-8"));
+    }
+
+    @Override
+    public void extract(Object obj, String[] props, Object[] values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object toJSON(InputStream is) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void loadJSON(JSONCall call) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Collection that doesn't keep its elements. */
+    private static abstract class Counter extends AbstractCollection<Cell> {
+        int count;
+
+        @Override
+        public boolean add(Cell e) {
+            process(e);
+            count++;
+            return true;
+        }
+
+        abstract void process(Cell cell);
+
+        @Override
+        public Iterator<Cell> iterator() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /** Generates <code>[{"value":0},{"value":1},...]</code> on the fly. */
+    private static final class Cells extends InputStream {
+        private final long size;
+        private byte[] chunk = { '[' };
+        private int at;
+        volatile long position;
+        int count;
+
+        Cells(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (at == chunk.length) {
+                if (chunk.length == 1 && chunk[0] == ']') {
+                    return -1;
+                }
+                if (position >= size) {
+                    chunk = new byte[] { ']' };
+                } else {
+                    String sep = count == 0 ? "" : ",";
+                    chunk = (sep + "{\"value\":" + count++ + "}").getBytes("UTF-8");
+                }
+                at = 0;
+            }
+            int n = Math.min(len, chunk.length - at);
+            System.arraycopy(chunk, at, b, off, n);
+            at += n;
+            position += n;
+            return n;
+        }
+    }
+}
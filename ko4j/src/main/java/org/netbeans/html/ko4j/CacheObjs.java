@@ -19,17 +19,22 @@
 
 package org.netbeans.html.ko4j;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 import org.netbeans.html.boot.spi.Fn;
+import org.netbeans.html.json.spi.FunctionBinding;
+import org.netbeans.html.json.spi.PropertyBinding;
 
 final class CacheObjs {
-    /* both @GuardedBy CacheObjs.class */
-    private static final CacheObjs[] list = new CacheObjs[16];
-    private static int listAt = 0;
+    /* @GuardedBy CacheObjs.class */
+    private static final Map<Fn.Presenter, CacheObjs> all = new WeakHashMap<Fn.Presenter, CacheObjs>();
     private final Fn.Ref<?> ref;
 
-    /* both @GuardedBy presenter single threaded access */
+    /* all @GuardedBy presenter single threaded access */
     private Object[] jsObjects;
     private int jsIndex;
+    private final Map<Class<?>, Type> types = new HashMap<Class<?>, Type>();
 
     private CacheObjs(Fn.Presenter p) {
         this.ref = Fn.ref(p);
@@ -39,18 +44,22 @@ final class CacheObjs {
         return ref == null ? null : ref.presenter();
     }
 
+    /** Finds cache for given presenter. The cache is kept as long as
+     * the presenter exists.
+     */
     static synchronized CacheObjs find(Fn.Presenter key) {
-        for (int i = 0; i < list.length; i++) {
-            if (list[i] != null && list[i].get() == key) {
-                return list[i];
-            }
+        CacheObjs co = all.get(key);
+        if (co == null) {
+            co = new CacheObjs(key);
+            all.put(key, co);
         }
-        CacheObjs co = new CacheObjs(key);
-        list[listAt] = co;
-        listAt = (listAt + 1) % list.length;
         return co;
     }
 
+    static synchronized int size() {
+        return all.size();
+    }
+
     Object getJSObject() {
         int len = 64;
         if (jsObjects != null && jsIndex < (len = jsObjects.length)) {
@@ -65,4 +74,50 @@ final class CacheObjs {
         jsObjects[0] = null;
         return ret;
     }
+
+    /** Finds or defines JavaScript type for given model class. The
+     * names and attributes of properties and functions are sent to the
+     * presenter only once.
+     */
+    Type type(Class<?> clazz, PropertyBinding[] props, FunctionBinding[] funcs) {
+        Type t = types.get(clazz);
+        if (t == null) {
+            if (types.isEmpty()) {
+                Knockout.registerBindings(LazyElements.PAGE_SIZE > 0 ? LazyElements.PAGE_SIZE : 50);
+            }
+            t = new Type(getJSObject());
+            Knockout.defineType(t.js, props, funcs);
+            types.put(clazz, t);
+        }
+        return t;
+    }
+
+    /** JavaScript type shared by all instances of a model class. */
+    static final class Type {
+        final Object js;
+        /* both @GuardedBy presenter single threaded access */
+        private Object[] jsObjects;
+        private int jsIndex;
+
+        Type(Object js) {
+            this.js = js;
+        }
+
+        /** Allocates new instance of this type.
+         */
+        Object getJSObject() {
+            int len = 64;
+            if (jsObjects != null && jsIndex < (len = jsObjects.length)) {
+                Object ret = jsObjects[jsIndex];
+                jsObjects[jsIndex] = null;
+                jsIndex++;
+                return ret;
+            }
+            jsObjects = Knockout.allocJS(js, len * 2);
+            jsIndex = 1;
+            Object ret = jsObjects[0];
+            jsObjects[0] = null;
+            return ret;
+        }
+    }
 }
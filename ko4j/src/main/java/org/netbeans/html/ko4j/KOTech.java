@@ -18,8 +18,10 @@
  */
 package org.netbeans.html.ko4j;
 
-import java.util.List;
-import net.java.html.json.Models;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.netbeans.html.boot.spi.Fn;
 import org.netbeans.html.context.spi.Contexts;
 import org.netbeans.html.json.spi.FunctionBinding;
 import org.netbeans.html.json.spi.PropertyBinding;
@@ -34,7 +36,8 @@ import org.netbeans.html.json.spi.Technology;
  */
 @Contexts.Id("ko4j")
 final class KOTech
-implements Technology.BatchCopy<Knockout>, Technology.ValueMutated<Knockout>,
+implements Technology.BatchCopy<Knockout>, Technology.BatchValueMutated<Knockout>,
+Technology.ArraySplice<Knockout>, Technology.LazyArray<Knockout>,
 Technology.ApplyId<Knockout>, Technology.ToJavaScript<Knockout> {
     public KOTech() {
     }
@@ -78,6 +81,27 @@ Technology.ApplyId<Knockout>, Technology.ToJavaScript<Knockout> {
         }
     }
 
+    @Override
+    public void valueHasMutated(Knockout data, String[] propertyNames, Object[] oldValues, Object[] newValues) {
+        Knockout.cleanUp();
+        if (data != null) {
+            for (int i = 0; i < newValues.length; i++) {
+                if (newValues[i] instanceof Enum) {
+                    newValues[i] = newValues[i].toString();
+                }
+            }
+            data.valueHasMutated(propertyNames, oldValues, newValues);
+        }
+    }
+
+    @Override
+    public void spliceArray(Knockout data, String propertyName, int index, int removeCount, Object inserted, int length) {
+        Knockout.cleanUp();
+        if (data != null) {
+            data.spliceArray(propertyName, index, removeCount, inserted, length);
+        }
+    }
+
     @Override
     public void expose(FunctionBinding fb, Object model, Knockout data) {
         throw new UnsupportedOperationException();
@@ -89,20 +113,40 @@ Technology.ApplyId<Knockout>, Technology.ToJavaScript<Knockout> {
     }
     @Override
     public void applyBindings(String id, Knockout data) {
+        Knockout.cleanUp();
         Object ko = data.applyBindings(id);
         if (ko instanceof Knockout) {
-            ((Knockout)ko).hold();
-            applied.add((Knockout) ko);
+            hold(Fn.activePresenter(), id, (Knockout) ko);
         }
     }
 
-    private static final List<Knockout> applied = Models.asList();
+    /** Roots bound to elements of each presenter. Binding another model
+     * to the same element releases the previous one.
+     */
+    private static final Map<Fn.Presenter, Map<String, Knockout>> applied =
+        new WeakHashMap<Fn.Presenter, Map<String, Knockout>>();
+
+    private static void hold(Fn.Presenter p, String id, Knockout ko) {
+        synchronized (applied) {
+            Map<String, Knockout> roots = applied.get(p);
+            if (roots == null) {
+                roots = new HashMap<String, Knockout>();
+                applied.put(p, roots);
+            }
+            roots.put(id, ko);
+        }
+    }
 
     @Override
     public Object wrapArray(Object[] arr) {
         return arr;
     }
     
+    @Override
+    public Object wrapLazyArray(Object[] elements) {
+        return LazyElements.wrap(elements);
+    }
+
     @Override
     public void runSafe(final Runnable r) {
         r.run();
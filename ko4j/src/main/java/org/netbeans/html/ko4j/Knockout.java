@@ -20,6 +20,12 @@ package org.netbeans.html.ko4j;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import net.java.html.js.JavaScriptBody;
 import net.java.html.js.JavaScriptResource;
@@ -59,7 +65,7 @@ final class Knockout  {
 
     private PropertyBinding[] props;
     private FunctionBinding[] funcs;
-    private Object objs;
+    private Objs objs;
     private final Object copyFrom;
     private final Object strong;
 
@@ -78,55 +84,122 @@ final class Knockout  {
 
     final Object js() {
         final Fn.Presenter c = Fn.activePresenter();
-        Object js = MapObjs.get(objs, c);
+        Object js = objs == null ? null : MapObjs.get(objs.all, c);
         if (js == null) {
             js = initObjs(c, copyFrom);
-            objs = MapObjs.put(objs, c, js);
+            if (objs == null) {
+                objs = new Objs(this);
+            }
+            objs.all = MapObjs.put(objs.all, c, js);
         }
         return js;
     }
 
+    private Object[] all() {
+        return objs == null ? new Object[0] : MapObjs.toArray(objs.all);
+    }
+
+    /** JavaScript object for the active presenter, if it has been created. */
+    private Object existing() {
+        return objs == null ? null : MapObjs.get(objs.all, Fn.activePresenter());
+    }
+
+    /** Forgets the JavaScript object for the active presenter. Next
+     * request for it creates new one.
+     */
+    final void forget() {
+        if (objs != null) {
+            objs.all = MapObjs.remove(objs.all, Fn.activePresenter())[1];
+        }
+    }
+
     private Object initObjs(Fn.Presenter p, Object copyFrom) {
+        Object[] propValues = new Object[props.length];
+        for (int i = 0; i < propValues.length; i++) {
+            propValues[i] = value(i);
+        }
+        CacheObjs.Type type = CacheObjs.find(p).type(strong.getClass(), props, funcs);
+        Object ret = type.getJSObject();
+        initModel(type.js, this, ret, copyFrom, propValues);
+        return ret;
+    }
+
+    static void defineType(Object type, PropertyBinding[] props, FunctionBinding[] funcs) {
         String[] propNames = new String[props.length];
         Number[] propInfo = new Number[props.length];
-        Object[] propValues = new Object[props.length];
         for (int i = 0; i < propNames.length; i++) {
             propNames[i] = props[i].getPropertyName();
             int info
                     = (props[i].isReadOnly() ? 1 : 0)
                     + (props[i].isConstant() ? 2 : 0);
             propInfo[i] = info;
-            Object value = props[i].getValue();
-            if (value instanceof Enum) {
-                value = value.toString();
-            }
-            propValues[i] = value;
         }
         String[] funcNames = new String[funcs.length];
         for (int i = 0; i < funcNames.length; i++) {
             funcNames[i] = funcs[i].getFunctionName();
         }
-        Object ret = CacheObjs.find(p).getJSObject();
-        wrapModel(this,ret, copyFrom, propNames, propInfo, propValues, funcNames);
-        return ret;
+        defineType(type, propNames, propInfo, funcNames);
     }
 
+    /** Releases JavaScript objects of models that have been garbage
+     * collected. The objects are cleaned in one batch per presenter, so
+     * stale bindings no longer call into Java.
+     */
     static void cleanUp() {
-        for (;;) {
-            Knockout ko = null;
-            if (ko == null) {
-                return;
+        Objs gone = (Objs) Objs.QUEUE.poll();
+        if (gone == null) {
+            return;
+        }
+        Map<Fn.Presenter, List<Object>> toClean = new LinkedHashMap<Fn.Presenter, List<Object>>();
+        while (gone != null) {
+            gone.unlink();
+            Object[] all = MapObjs.toArray(gone.all);
+            gone.all = null;
+            for (int i = 0; i < all.length; i += 2) {
+                Fn.Presenter p = getPresenter(all[i]);
+                if (p == null || all[i + 1] == null) {
+                    continue;
+                }
+                List<Object> arr = toClean.get(p);
+                if (arr == null) {
+                    arr = new ArrayList<Object>();
+                    toClean.put(p, arr);
+                }
+                arr.add(all[i + 1]);
+            }
+            gone = (Objs) Objs.QUEUE.poll();
+        }
+        for (Map.Entry<Fn.Presenter, List<Object>> entry : toClean.entrySet()) {
+            final Object[] arr = entry.getValue().toArray();
+            Fn.Presenter p = entry.getKey();
+            if (p == Fn.activePresenter()) {
+                clean(arr);
+            } else if (p instanceof Executor) {
+                ((Executor) p).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        clean(arr);
+                    }
+                });
+            } else {
+                Closeable c = Fn.activate(p);
+                try {
+                    clean(arr);
+                } finally {
+                    try {
+                        c.close();
+                    } catch (IOException ex) {
+                    }
+                }
             }
-            Object[] both = MapObjs.remove(ko.objs, Fn.activePresenter());
-            Object js = both[0];
-            ko.objs = both[1];
-            clean(js);
-            ko.props = null;
-            ko.funcs = null;
         }
     }
 
-    final void hold() {
+    /** Number of models with JavaScript objects that haven't been released yet.
+     * @return number of live models
+     */
+    static int tracked() {
+        return Objs.count();
     }
 
     final Object get() {
@@ -137,6 +210,34 @@ final class Knockout  {
         return props[index].getValue();
     }
 
+    private Object value(int index) {
+        Object value = props[index].getValue();
+        if (value instanceof Enum) {
+            value = value.toString();
+        }
+        return value;
+    }
+
+    /** Can the value of given property be pushed to JavaScript? Values of
+     * plain properties and arrays are always known in Java. Computed
+     * properties may depend on other models and are rather read lazily.
+     *
+     * @param propertyName name of the property
+     * @return index of the property or <code>-1</code>
+     */
+    private int pushable(String propertyName) {
+        PropertyBinding[] arr = props;
+        if (arr == null) {
+            return -1;
+        }
+        for (int i = 0; i < arr.length; i++) {
+            if (arr[i].getPropertyName().equals(propertyName)) {
+                return arr[i].isReadOnly() ? -1 : i;
+            }
+        }
+        return -1;
+    }
+
     final void setValue(int index, Object v) {
         if (v instanceof Knockout) {
             v = ((Knockout)v).get();
@@ -161,7 +262,7 @@ final class Knockout  {
     }
 
     final void valueHasMutated(final String propertyName, Object oldValue, Object newValue) {
-        Object[] all = MapObjs.toArray(objs);
+        Object[] all = all();
         for (int i = 0; i < all.length; i += 2) {
             Fn.Presenter p = getPresenter(all[i]);
             final Object o = all[i + 1];
@@ -170,13 +271,13 @@ final class Knockout  {
                     ((Executor) p).execute(new Runnable() {
                         @Override
                         public void run() {
-                            valueHasMutated(o, propertyName, null, null);
+                            pushValue(o, propertyName);
                         }
                     });
                 } else {
                     Closeable c = Fn.activate(p);
                     try {
-                        valueHasMutated(o, propertyName, null, null);
+                        pushValue(o, propertyName);
                     } finally {
                         try {
                             c.close();
@@ -186,28 +287,178 @@ final class Knockout  {
                 }
             }
         }
-        valueHasMutated(js(), propertyName, oldValue, newValue);
+        Object js = existing();
+        if (js == null) {
+            return;
+        }
+        if (oldValue != null || newValue != null) {
+            valueHasMutated(js, propertyName, true, newValue);
+        } else {
+            pushValue(js, propertyName);
+        }
     }
 
-    @JavaScriptBody(args = { "model", "prop", "oldValue", "newValue" },
+    /** Notifies about a change without known value. The value is read
+     * in Java and pushed to JavaScript, so it doesn't have to call back.
+     */
+    private void pushValue(Object js, String propertyName) {
+        int index = pushable(propertyName);
+        if (index == -1) {
+            valueHasMutated(js, propertyName, false, null);
+        } else {
+            valueHasMutated(js, propertyName, true, value(index));
+        }
+    }
+
+    @JavaScriptBody(args = { "model", "prop", "known", "value" },
         wait4js = false,
         body =
           "if (model) {\n"
         + "  var koProp = model[prop];\n"
-        + "  if (koProp) {\n"
-        + "    var koFire = koProp['valueHasMutated'];\n"
-        + "    if (koFire) {\n"
-        + "      if (oldValue !== null || newValue !== null) {\n"
-        + "        koFire(newValue);\n"
+        + "  if (koProp && koProp['valueHasMutated']) {\n"
+        + "    if (known) {\n"
+        + "      koProp['valueHasMutated'](value);\n"
+        + "    } else {\n"
+        + "      koProp['valueHasMutated']();\n"
+        + "    }\n"
+        + "  }\n"
+        + "}\n"
+    )
+    private native static void valueHasMutated(
+        Object model, String prop, boolean known, Object value
+    );
+
+    final void valueHasMutated(final String[] propertyNames, Object[] oldValues, Object[] newValues) {
+        Object[] all = all();
+        for (int i = 0; i < all.length; i += 2) {
+            Fn.Presenter p = getPresenter(all[i]);
+            final Object o = all[i + 1];
+            if (p != Fn.activePresenter()) {
+                if (p instanceof Executor) {
+                    ((Executor) p).execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            pushValues(o, propertyNames, null, null);
+                        }
+                    });
+                } else {
+                    Closeable c = Fn.activate(p);
+                    try {
+                        pushValues(o, propertyNames, null, null);
+                    } finally {
+                        try {
+                            c.close();
+                        } catch (IOException ex) {
+                        }
+                    }
+                }
+            }
+        }
+        Object js = existing();
+        if (js != null) {
+            pushValues(js, propertyNames, oldValues, newValues);
+        }
+    }
+
+    /** Orders the properties so the ones with known value come first.
+     * Values of the rest are read from Java lazily.
+     */
+    private void pushValues(Object js, String[] propertyNames, Object[] oldValues, Object[] newValues) {
+        final int len = propertyNames.length;
+        String[] names = new String[len];
+        Object[] values = new Object[len];
+        int known = 0;
+        int unknown = len;
+        for (int i = 0; i < len; i++) {
+            Object oldValue = oldValues == null ? null : oldValues[i];
+            Object newValue = newValues == null ? null : newValues[i];
+            if (oldValue == null && newValue == null) {
+                int index = pushable(propertyNames[i]);
+                if (index == -1) {
+                    names[--unknown] = propertyNames[i];
+                    continue;
+                }
+                newValue = value(index);
+            }
+            names[known] = propertyNames[i];
+            values[known++] = newValue;
+        }
+        valueHasMutated(js, names, known, values);
+    }
+
+    @JavaScriptBody(args = { "model", "props", "known", "values" },
+        wait4js = false,
+        body =
+          "if (model) {\n"
+        + "  for (var i = 0; i < props.length; i++) {\n"
+        + "    var koProp = model[props[i]];\n"
+        + "    if (koProp && koProp['valueHasMutated']) {\n"
+        + "      if (i < known) {\n"
+        + "        koProp['valueHasMutated'](values[i]);\n"
         + "      } else {\n"
-        + "        koFire();\n"
+        + "        koProp['valueHasMutated']();\n"
         + "      }\n"
         + "    }\n"
         + "  }\n"
         + "}\n"
     )
     private native static void valueHasMutated(
-        Object model, String prop, Object oldValue, Object newValue
+        Object model, String[] props, int known, Object[] values
+    );
+
+    final void spliceArray(
+        final String propertyName, int index, int removeCount, Object inserted, int length
+    ) {
+        Object[] all = all();
+        Object active = null;
+        for (int i = 0; i < all.length; i += 2) {
+            Fn.Presenter p = getPresenter(all[i]);
+            final Object o = all[i + 1];
+            if (p == Fn.activePresenter()) {
+                active = o;
+            } else if (p instanceof Executor) {
+                ((Executor) p).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        pushValue(o, propertyName);
+                    }
+                });
+            } else {
+                Closeable c = Fn.activate(p);
+                try {
+                    pushValue(o, propertyName);
+                } finally {
+                    try {
+                        c.close();
+                    } catch (IOException ex) {
+                    }
+                }
+            }
+        }
+        if (active != null) {
+            spliceArray(active, propertyName, index, removeCount, inserted, length);
+        }
+    }
+
+    @JavaScriptBody(args = { "model", "prop", "index", "removeCount", "inserted", "length" },
+        wait4js = false,
+        body =
+          "var koProp = model ? model[prop] : null;\n"
+        + "if (!koProp || !koProp['valueHasMutated']) return;\n"
+        + "var arr = koProp['peek']();\n"
+        + "if (\n"
+        + "  Object.prototype.toString.call(arr) === '[object Array]' && !arr['ko4jLazy'] &&\n"
+        + "  arr.length === length - inserted.length + removeCount &&\n"
+        + "  index + removeCount <= arr.length\n"
+        + ") {\n"
+        + "  Array.prototype.splice.apply(arr, [index, removeCount].concat(inserted));\n"
+        + "  koProp['valueHasMutated'](arr);\n"
+        + "} else {\n"
+        + "  koProp['valueHasMutated']();\n"
+        + "}\n"
+    )
+    private native static void spliceArray(
+        Object model, String prop, int index, int removeCount, Object inserted, int length
     );
 
     final Object applyBindings(String id) {
@@ -223,6 +474,60 @@ final class Knockout  {
     )
     private native static Object applyBindings(String id, Object bindings);
 
+    /** Registers <code>foreachPage</code> binding. It renders a page of
+     * an array via the standard <code>foreach</code> binding and reads
+     * only elements of that page. Rendered models are counted, so
+     * {@link LazyElements} doesn't release them while they are shown.
+     */
+    @JavaScriptBody(args = { "pageSize" }, wait4js = false, body =
+        "if (ko['bindingHandlers']['foreachPage']) return;\n" +
+        "var foreach = ko['bindingHandlers']['foreach'];\n" +
+        "function shown(arr, delta) {\n" +
+        "  for (var i = 0; i < arr.length; i++) {\n" +
+        "    var m = arr[i];\n" +
+        "    if (!m || typeof m !== 'object') continue;\n" +
+        "    var cnt = (m['ko4jShown'] || 0) + delta;\n" +
+        "    Object.defineProperty(m, 'ko4jShown', { 'value' : cnt, 'writable' : true, 'configurable' : true });\n" +
+        "    var release = m['ko4jEvicted'];\n" +
+        "    if (cnt === 0 && release) {\n" +
+        "      m['ko4jEvicted'] = null;\n" +
+        "      release([m['ko4j']]);\n" +
+        "    }\n" +
+        "  }\n" +
+        "}\n" +
+        "ko['bindingHandlers']['foreachPage'] = {\n" +
+        "  'init' : function(element, valueAccessor, allBindings, vm, ctx) {\n" +
+        "    var slice = ko['pureComputed'](function() {\n" +
+        "      var opts = ko['unwrap'](valueAccessor());\n" +
+        "      var arr = ko['unwrap'](opts['data']) || [];\n" +
+        "      var size = ko['unwrap'](opts['size']) || pageSize;\n" +
+        "      var from = (ko['unwrap'](opts['page']) || 0) * size;\n" +
+        "      return Array.prototype.slice.call(arr, from, from + size);\n" +
+        "    });\n" +
+        "    ko['utils']['domData']['set'](element, 'ko4jPage', slice);\n" +
+        "    var now = slice();\n" +
+        "    shown(now, 1);\n" +
+        "    var sub = slice['subscribe'](function(arr) {\n" +
+        "      shown(arr, 1);\n" +
+        "      shown(now, -1);\n" +
+        "      now = arr;\n" +
+        "    });\n" +
+        "    ko['utils']['domNodeDisposal']['addDisposeCallback'](element, function() {\n" +
+        "      sub['dispose']();\n" +
+        "      shown(now, -1);\n" +
+        "      slice['dispose']();\n" +
+        "    });\n" +
+        "    return foreach['init'](element, function() { return slice; }, allBindings, vm, ctx);\n" +
+        "  },\n" +
+        "  'update' : function(element, valueAccessor, allBindings, vm, ctx) {\n" +
+        "    var slice = ko['utils']['domData']['get'](element, 'ko4jPage');\n" +
+        "    return foreach['update'](element, function() { return slice; }, allBindings, vm, ctx);\n" +
+        "  }\n" +
+        "};\n" +
+        "ko['virtualElements']['allowedBindings']['foreachPage'] = true;\n"
+    )
+    static native void registerBindings(int pageSize);
+
     @JavaScriptBody(args = { "cnt" }, body =
         "var arr = new Array(cnt);\n" +
         "for (var i = 0; i < cnt; i++) arr[i] = new Object();\n" +
@@ -230,103 +535,217 @@ final class Knockout  {
     )
     native static Object[] allocJS(int cnt);
 
+    @JavaScriptBody(args = { "type", "cnt" }, body =
+        "var proto = type['proto'];\n" +
+        "var arr = new Array(cnt);\n" +
+        "for (var i = 0; i < cnt; i++) arr[i] = Object.create(proto);\n" +
+        "return arr;\n"
+    )
+    native static Object[] allocJS(Object type, int cnt);
+
+    /** Defines JavaScript type shared by all instances of a model class.
+     * Accessors of properties and functions are created once per type
+     * and find the instance specific state via <code>this</code>.
+     * Functions are bound to an instance lazily on first access.
+     * Values pushed from Java are cached and served to every read until
+     * the next change. Only properties without known value (e.g. computed
+     * ones depending on other models) call back into Java.
+     */
     @JavaScriptBody(
         javacall = true,
-        keepAlive = false,
         wait4js = false,
-        args = { "thiz", "ret", "copyFrom", "propNames", "propInfo", "propValues", "funcNames" },
+        args = { "type", "propNames", "propInfo", "funcNames" },
         body =
-          "Object.defineProperty(ret, 'ko4j', { value : thiz });\n"
+          "var NONE = {};\n"
+        + "var proto = {};\n"
         + "function normalValue(r) {\n"
         + "  if (r) try { var br = r.valueOf(); } catch (err) {}\n"
         + "  return br === undefined ? r: br;\n"
         + "}\n"
-        + "function koComputed(index, name, readOnly, value) {\n"
-        + "  var orig = copyFrom ? copyFrom[name] : null;\n"
-        + "  if (!ko['isObservable'](orig)) {\n"
-        + "    orig = null;\n"
-        + "    var trigger = ko['observable']()['extend']({'notify':'always'});\n"
-        + "  } else {\n"
-        + "    var trigger = orig;\n"
-        + "  }\n"
-        + "  function realGetter() {\n"
-        + "    var self = ret['ko4j'];\n"
-        + "    try {\n"
-        + "      var v = self ? self.@org.netbeans.html.ko4j.Knockout::getValue(I)(index) : null;\n"
-        + "      return v;\n"
-        + "    } catch (e) {\n"
-        + "      alert(\"Cannot call getValue on \" + self + \" prop: \" + name + \" error: \" + e);\n"
-        + "    }\n"
-        + "  }\n"
-        + "  var activeGetter = orig ? orig : function() { return value; };\n"
-        + "  var bnd = {\n"
-        + "    'read': function() {\n"
-        + "      trigger();\n"
-        + "      if (orig) {\n"
-        + "        var r = orig();\n"
-        + "      } else {\n"
-        + "        var r = activeGetter();\n"
-        + "        activeGetter = realGetter;\n"
-        + "      }\n"
-        + "      return normalValue(r);;\n"
-        + "    },\n"
-        + "    'owner': ret\n"
-        + "  };\n"
-        + "  if (!readOnly) {\n"
-        + "    function write(val) {\n"
-        + "      if (orig) orig(val);\n"
-        + "      var self = ret['ko4j'];\n"
-        + "      if (!self) return;\n"
-        + "      var model = val ? val['ko4j'] : null;\n"
-        + "      self.@org.netbeans.html.ko4j.Knockout::setValue(ILjava/lang/Object;)(index, model ? model : val);\n"
-        + "    };\n"
-        + "    bnd['write'] = write;\n"
+        + "function reader(index, name) {\n"
+        + "  return function() {\n"
+        + "    var ret = this;\n"
+        + "    var state = ret['ko4jState'];\n"
+        + "    if (!state) return null;\n"
+        + "    state.triggers[index]();\n"
+        + "    var orig = state.origs ? state.origs[index] : null;\n"
         + "    if (orig) {\n"
-        + "      write(orig());\n"
-        + "      orig.subscribe(write);\n"
+        + "      var r = orig();\n"
+        + "    } else {\n"
+        + "      var r = state.values[index];\n"
+        + "      if (r === NONE) {\n"
+        + "        var self = ret['ko4j'];\n"
+        + "        try {\n"
+        + "          r = self ? self.@org.netbeans.html.ko4j.Knockout::getValue(I)(index) : null;\n"
+        + "        } catch (e) {\n"
+        + "          alert(\"Cannot call getValue on \" + self + \" prop: \" + name + \" error: \" + e);\n"
+        + "        }\n"
+        + "        if ((propInfo[index] & 1) === 0) state.values[index] = r;\n"
+        + "      }\n"
         + "    }\n"
+        + "    return normalValue(r);\n"
         + "  };\n"
-        + "  var cmpt = ko['computed'](bnd);\n"
-        + "  cmpt['valueHasMutated'] = function(val) {\n"
-        + "    if (arguments.length === 1) activeGetter = function() { return val; };\n"
-        + "    trigger(val);\n"
-        + "  };\n"
-        + "  ret[name] = cmpt;\n"
         + "}\n"
-        + "for (var i = 0; i < propNames.length; i++) {\n"
-        + "  if ((propInfo[i] & 2) !== 0) {\n"
-        + "    ret[propNames[i]] = normalValue(propValues[i]);\n"
-        + "  } else {\n"
-        + "    koComputed(i, propNames[i], (propInfo[i] & 1) !== 0, propValues[i]);\n"
-        + "  }\n"
-        + "}\n"
-        + "function koExpose(index, name) {\n"
-        + "  ret[name] = function(data, ev) {\n"
+        + "function writer(index) {\n"
+        + "  return function(val) {\n"
+        + "    var ret = this;\n"
+        + "    var state = ret['ko4jState'];\n"
+        + "    if (!state) return;\n"
+        + "    if (state.origs && state.origs[index]) state.origs[index](val);\n"
         + "    var self = ret['ko4j'];\n"
         + "    if (!self) return;\n"
-        + "    self.@org.netbeans.html.ko4j.Knockout::call(ILjava/lang/Object;Ljava/lang/Object;)(index, data, ev);\n"
+        + "    var model = val ? val['ko4j'] : null;\n"
+        + "    self.@org.netbeans.html.ko4j.Knockout::setValue(ILjava/lang/Object;)(index, model ? model : val);\n"
+        + "  };\n"
+        + "}\n"
+        + "function mutator(index) {\n"
+        + "  return function(val) {\n"
+        + "    var state = this['ko4jOwner']['ko4jState'];\n"
+        + "    if (!state) return;\n"
+        + "    state.values[index] = arguments.length === 1 ? val : NONE;\n"
+        + "    state.triggers[index](val);\n"
         + "  };\n"
         + "}\n"
+        + "function expose(index, name) {\n"
+        + "  Object.defineProperty(proto, name, {\n"
+        + "    'configurable' : true,\n"
+        + "    'get' : function() {\n"
+        + "      var ret = this;\n"
+        + "      var fn = function(data, ev) {\n"
+        + "        var self = ret['ko4j'];\n"
+        + "        if (!self) return;\n"
+        + "        self.@org.netbeans.html.ko4j.Knockout::call(ILjava/lang/Object;Ljava/lang/Object;)(index, data, ev);\n"
+        + "      };\n"
+        + "      Object.defineProperty(ret, name, {\n"
+        + "        'value' : fn, 'writable' : true, 'enumerable' : true, 'configurable' : true\n"
+        + "      });\n"
+        + "      return fn;\n"
+        + "    }\n"
+        + "  });\n"
+        + "}\n"
+        + "var readers = new Array(propNames.length);\n"
+        + "var writers = new Array(propNames.length);\n"
+        + "var mutators = new Array(propNames.length);\n"
+        + "for (var i = 0; i < propNames.length; i++) {\n"
+        + "  readers[i] = reader(i, propNames[i]);\n"
+        + "  writers[i] = (propInfo[i] & 1) === 0 ? writer(i) : null;\n"
+        + "  mutators[i] = mutator(i);\n"
+        + "}\n"
         + "for (var i = 0; i < funcNames.length; i++) {\n"
-        + "  koExpose(i, funcNames[i]);\n"
+        + "  expose(i, funcNames[i]);\n"
         + "}\n"
-        )
-    private static native void wrapModel(
-        Knockout thiz,
-        Object ret, Object copyFrom,
-        String[] propNames, Number[] propInfo,
-        Object propValues,
-        String[] funcNames
+        + "type['proto'] = proto;\n"
+        + "type['init'] = function(ret, copyFrom, values) {\n"
+        + "  var copy = new Array(values.length);\n"
+        + "  for (var i = 0; i < values.length; i++) copy[i] = values[i];\n"
+        + "  var state = { 'values' : copy, 'triggers' : new Array(values.length), 'origs' : null };\n"
+        + "  Object.defineProperty(ret, 'ko4jState', { value : state, configurable : true });\n"
+        + "  for (var i = 0; i < propNames.length; i++) {\n"
+        + "    var name = propNames[i];\n"
+        + "    if ((propInfo[i] & 2) !== 0) {\n"
+        + "      ret[name] = normalValue(values[i]);\n"
+        + "      continue;\n"
+        + "    }\n"
+        + "    var orig = copyFrom ? copyFrom[name] : null;\n"
+        + "    if (ko['isObservable'](orig)) {\n"
+        + "      if (!state.origs) state.origs = new Array(values.length);\n"
+        + "      state.origs[i] = orig;\n"
+        + "      state.triggers[i] = orig;\n"
+        + "    } else {\n"
+        + "      state.triggers[i] = ko['observable']()['extend']({'notify':'always'});\n"
+        + "    }\n"
+        + "    var bnd = { 'read' : readers[i], 'owner' : ret, 'deferEvaluation' : true };\n"
+        + "    if (writers[i]) {\n"
+        + "      bnd['write'] = writers[i];\n"
+        + "      if (state.origs && state.origs[i]) {\n"
+        + "        writers[i].call(ret, orig());\n"
+        + "        orig.subscribe(writers[i], ret);\n"
+        + "      }\n"
+        + "    }\n"
+        + "    var cmpt = ko['computed'](bnd);\n"
+        + "    cmpt['ko4jOwner'] = ret;\n"
+        + "    cmpt['valueHasMutated'] = mutators[i];\n"
+        + "    ret[name] = cmpt;\n"
+        + "  }\n"
+        + "};\n"
+    )
+    private static native void defineType(
+        Object type, String[] propNames, Number[] propInfo, String[] funcNames
     );
 
-    @JavaScriptBody(args = { "js" }, wait4js = false, body =
-        "delete js['ko4j'];\n" +
-        "for (var p in js) {\n" +
-        "  delete js[p];\n" +
-        "};\n" +
-        "\n"
+    @JavaScriptBody(
+        keepAlive = false,
+        wait4js = false,
+        args = { "type", "thiz", "ret", "copyFrom", "propValues" },
+        body =
+          "Object.defineProperty(ret, 'ko4j', { value : thiz, configurable : true });\n"
+        + "type['init'](ret, copyFrom, propValues);\n"
     )
-    private static native void clean(Object js);
+    private static native void initModel(
+        Object type, Knockout thiz, Object ret, Object copyFrom, Object propValues
+    );
+
+    @JavaScriptBody(args = { "arr" }, wait4js = false, body =
+        "for (var i = 0; i < arr.length; i++) {\n" +
+        "  var js = arr[i];\n" +
+        "  if (!js) continue;\n" +
+        "  delete js['ko4j'];\n" +
+        "  delete js['ko4jState'];\n" +
+        "  for (var p in js) {\n" +
+        "    delete js[p];\n" +
+        "  }\n" +
+        "}\n"
+    )
+    private static native void clean(Object[] arr);
+
+    /** JavaScript objects of a model. Kept reachable in a list until
+     * the model is garbage collected and the objects are cleaned.
+     */
+    private static final class Objs extends WeakReference<Knockout> {
+        static final ReferenceQueue<Knockout> QUEUE = new ReferenceQueue<Knockout>();
+        /* all @GuardedBy Objs.class */
+        private static Objs first;
+        private static int count;
+        private Objs prev;
+        private Objs next;
+
+        volatile Object all;
+
+        Objs(Knockout ko) {
+            super(ko, QUEUE);
+            synchronized (Objs.class) {
+                next = first;
+                if (first != null) {
+                    first.prev = this;
+                }
+                first = this;
+                count++;
+            }
+        }
+
+        void unlink() {
+            synchronized (Objs.class) {
+                if (prev == null && first != this) {
+                    return;
+                }
+                if (prev != null) {
+                    prev.next = next;
+                } else {
+                    first = next;
+                }
+                if (next != null) {
+                    next.prev = prev;
+                }
+                prev = null;
+                next = null;
+                count--;
+            }
+        }
+
+        static synchronized int count() {
+            return count;
+        }
+    }
 
     @JavaScriptBody(args = { "o" }, body = "return o['ko4j'] ? o['ko4j'] : o;")
     private static native Object toModelImpl(Object wrapper);
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.ko4j;
+
+import net.java.html.js.JavaScriptBody;
+import net.java.html.json.Models;
+
+/** Elements of a large array of models converted to JavaScript page by
+ * page. The array given to knockout is a proxy that asks for a page when
+ * one of its elements is accessed and keeps only a limited number of
+ * pages. Models of the pages it drops are released and get a new
+ * JavaScript object when they are needed again. Models still rendered
+ * by the <code>foreachPage</code> binding keep their object until
+ * knockout stops showing them, so they continue to receive updates.
+ * <p>
+ * Enabled by <code>-Dorg.netbeans.html.ko4j.pageSize=100</code>. Arrays
+ * longer than the page size are then wrapped lazily and are best shown
+ * with the <code>foreachPage</code> binding, which renders only one page:
+ * <pre>
+ * &lt;tbody data-bind="foreachPage: { data: rows, page: page, size: 50 }"&gt;
+ * </pre>
+ */
+final class LazyElements {
+    static final int PAGE_SIZE = Integer.getInteger("org.netbeans.html.ko4j.pageSize", 0); // NOI18N
+    static final int MAX_PAGES = 16;
+
+    private final Object[] elements;
+
+    private LazyElements(Object[] elements) {
+        this.elements = elements;
+    }
+
+    /** Wraps the elements, if they are worth it.
+     * @param elements models in Java
+     * @return JavaScript array or <code>null</code>
+     */
+    static Object wrap(Object[] elements) {
+        if (PAGE_SIZE <= 0 || elements.length <= PAGE_SIZE || !areModels(elements)) {
+            return null;
+        }
+        return wrap(elements, PAGE_SIZE, MAX_PAGES);
+    }
+
+    static Object wrap(Object[] elements, int size, int max) {
+        return create(new LazyElements(elements), elements.length, size, max);
+    }
+
+    private static boolean areModels(Object[] elements) {
+        for (Object e : elements) {
+            if (e != null) {
+                return Models.isModel(e.getClass());
+            }
+        }
+        return false;
+    }
+
+    final Object[] page(int from, int to) {
+        Object[] arr = new Object[to - from];
+        for (int i = 0; i < arr.length; i++) {
+            Object e = elements[from + i];
+            arr[i] = e == null ? null : Models.toRaw(e);
+        }
+        return arr;
+    }
+
+    final void release(Object[] models) {
+        for (Object m : models) {
+            if (m instanceof Knockout) {
+                ((Knockout) m).forget();
+            }
+        }
+    }
+
+    @JavaScriptBody(
+        javacall = true,
+        args = { "elements", "length", "size", "max" },
+        body =
+          "if (typeof Proxy === 'undefined') return null;\n"
+        + "var pages = {};\n"
+        + "var used = [];\n"
+        + "function release(models) {\n"
+        + "  elements.@org.netbeans.html.ko4j.LazyElements::release([Ljava/lang/Object;)(models);\n"
+        + "}\n"
+        + "function page(p) {\n"
+        + "  var arr = pages[p];\n"
+        + "  var at = used.indexOf(p);\n"
+        + "  if (at >= 0) used.splice(at, 1);\n"
+        + "  used.push(p);\n"
+        + "  if (!arr) {\n"
+        + "    var from = p * size;\n"
+        + "    var to = Math.min(length, from + size);\n"
+        + "    arr = elements.@org.netbeans.html.ko4j.LazyElements::page(II)(from, to);\n"
+        + "    for (var i = 0; i < arr.length; i++) {\n"
+        + "      if (arr[i] && arr[i]['ko4jEvicted']) arr[i]['ko4jEvicted'] = null;\n"
+        + "    }\n"
+        + "    pages[p] = arr;\n"
+        + "    if (used.length > max) {\n"
+        + "      var old = used.shift();\n"
+        + "      var models = [];\n"
+        + "      var gone = pages[old];\n"
+        + "      delete pages[old];\n"
+        + "      for (var i = 0; i < gone.length; i++) {\n"
+        + "        var m = gone[i];\n"
+        + "        if (!m || !m['ko4j']) continue;\n"
+        + "        if (m['ko4jShown']) {\n"
+        + "          Object.defineProperty(m, 'ko4jEvicted', { 'value' : release, 'writable' : true, 'configurable' : true });\n"
+        + "        } else {\n"
+        + "          models.push(m['ko4j']);\n"
+        + "        }\n"
+        + "      }\n"
+        + "      if (models.length) release(models);\n"
+        + "    }\n"
+        + "  }\n"
+        + "  return arr;\n"
+        + "}\n"
+        + "function index(prop) {\n"
+        + "  if (typeof prop !== 'string') return -1;\n"
+        + "  var i = prop >>> 0;\n"
+        + "  return String(i) === prop && i < length ? i : -1;\n"
+        + "}\n"
+        + "return new Proxy(new Array(length), {\n"
+        + "  'get' : function(target, prop, receiver) {\n"
+        + "    if (prop === 'ko4jLazy') return true;\n"
+        + "    var i = index(prop);\n"
+        + "    if (i === -1) return Reflect.get(target, prop, receiver);\n"
+        + "    return page(Math.floor(i / size))[i % size];\n"
+        + "  },\n"
+        + "  'set' : function(target, prop, value, receiver) {\n"
+        + "    var i = index(prop);\n"
+        + "    if (i === -1) return Reflect.set(target, prop, value, receiver);\n"
+        + "    page(Math.floor(i / size))[i % size] = value;\n"
+        + "    return true;\n"
+        + "  },\n"
+        + "  'has' : function(target, prop) {\n"
+        + "    return index(prop) !== -1 || Reflect.has(target, prop);\n"
+        + "  },\n"
+        + "  'getOwnPropertyDescriptor' : function(target, prop) {\n"
+        + "    var i = index(prop);\n"
+        + "    if (i === -1) return Reflect.getOwnPropertyDescriptor(target, prop);\n"
+        + "    return {\n"
+        + "      'value' : page(Math.floor(i / size))[i % size],\n"
+        + "      'writable' : true, 'enumerable' : true, 'configurable' : true\n"
+        + "    };\n"
+        + "  }\n"
+        + "});\n"
+    )
+    private static native Object create(LazyElements elements, int length, int size, int max);
+}
@@ -19,8 +19,6 @@
 
 package org.netbeans.html.ko4j;
 
-import java.util.List;
-import net.java.html.json.Models;
 import org.netbeans.html.boot.spi.Fn;
 
 final class MapObjs {
@@ -36,14 +34,15 @@ final class MapObjs {
         usePresenter = true;
     }
 
-    private final List<Object> all;
+    /** pairs of presenter reference and JavaScript object */
+    private Object[] all;
 
     private MapObjs(Fn.Ref id1, Object js) {
-        this.all = Models.asList(id1, js);
+        this.all = new Object[] { id1, js };
     }
 
     private MapObjs(Fn.Ref id1, Object js1, Fn.Ref id2, Object js2) {
-        this.all = Models.asList(id1, js1, id2, js2);
+        this.all = new Object[] { id1, js1, id2, js2 };
     }
 
 
@@ -80,12 +79,15 @@ final class MapObjs {
         if (now instanceof MapObjs) {
             return ((MapObjs)now).remove(key);
         }
-        return new Object[] { now, null };
+        if (key == getOnlyPresenter()) {
+            return new Object[] { now, null };
+        }
+        return new Object[] { null, now };
     }
 
     synchronized static Object[] toArray(Object now) {
         if (now instanceof MapObjs) {
-            return ((MapObjs) now).all.toArray();
+            return ((MapObjs) now).all.clone();
         }
         final Fn.Presenter p = getOnlyPresenter();
         if (p == null) {
@@ -95,19 +97,22 @@ final class MapObjs {
     }
 
     private Object put(Fn.Presenter key, Object js) {
-        for (int i = 0; i < all.size(); i += 2) {
+        for (int i = 0; i < all.length; i += 2) {
             if (isSameKey(i, key)) {
-                all.set(i + 1, js);
+                all[i + 1] = js;
                 return this;
             }
         }
-        all.add(Fn.ref(key));
-        all.add(js);
+        Object[] arr = new Object[all.length + 2];
+        System.arraycopy(all, 0, arr, 0, all.length);
+        arr[all.length] = Fn.ref(key);
+        arr[all.length + 1] = js;
+        all = arr;
         return this;
     }
 
     boolean isSameKey(int index, Fn.Presenter key) {
-        Object at = all.get(index);
+        Object at = all[index];
         if (at instanceof Fn.Ref) {
             at = ((Fn.Ref)at).presenter();
         }
@@ -115,18 +120,23 @@ final class MapObjs {
     }
 
     private Object get(Fn.Presenter key) {
-        for (int i = 0; i < all.size(); i += 2) {
+        for (int i = 0; i < all.length; i += 2) {
             if (isSameKey(i, key)) {
-                return all.get(i + 1);
+                return all[i + 1];
             }
         }
         return null;
     }
 
     private Object[] remove(Fn.Presenter key) {
-        for (int i = 0; i < all.size(); i += 2) {
+        for (int i = 0; i < all.length; i += 2) {
             if (isSameKey(i, key)) {
-                return new Object[] { all.get(i + 1), this };
+                Object js = all[i + 1];
+                Object[] arr = new Object[all.length - 2];
+                System.arraycopy(all, 0, arr, 0, i);
+                System.arraycopy(all, i + 2, arr, i, arr.length - i);
+                all = arr;
+                return new Object[] { js, this };
             }
         }
         return new Object[] { null, this };
@@ -92,6 +92,10 @@ public final class KnockoutFXTest extends KnockoutTCK {
         }
         Class<?> c = Class.forName(LessCallbacksCheck.class.getName(), true, l);
         seekKOTests(c, res);
+        c = Class.forName(ReleaseModelsCheck.class.getName(), true, l);
+        seekKOTests(c, res);
+        c = Class.forName(LazyElementsCheck.class.getName(), true, l);
+        seekKOTests(c, res);
         return res.toArray();
     }
 
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.ko4j;
+
+import net.java.html.js.JavaScriptBody;
+import net.java.html.json.Model;
+import net.java.html.json.Models;
+import net.java.html.json.Property;
+import org.netbeans.html.json.tck.KOTest;
+
+/** Checks rows rendered by <code>foreachPage</code> binding keep
+ * receiving updates when {@link LazyElements} drops their page.
+ */
+@Model(className = "LazyRow", properties = {
+    @Property(name = "name", type = String.class)
+})
+public class LazyElementsCheck {
+    @KOTest public void shownRowsAreUpdatedAfterTheirPageIsDropped() {
+        LazyRow[] rows = new LazyRow[20];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new LazyRow("Row " + i);
+        }
+        Models.toRaw(rows[0]);
+        Object arr = LazyElements.wrap(rows, 2, 2);
+        if (arr == null) {
+            // no Proxy in this browser, elements aren't wrapped lazily
+            return;
+        }
+        Object div = render(arr);
+        try {
+            assert "Row 0Row 1".equals(text(div)) : "First page rendered: " + text(div);
+            for (int i = 4; i < rows.length; i += 2) {
+                read(arr, i);
+            }
+            rows[1].setName("Changed");
+            assert "Row 0Changed".equals(text(div)) : "Shown row updated: " + text(div);
+        } finally {
+            remove(div);
+        }
+    }
+
+    @JavaScriptBody(args = { "rows" }, body =
+        "var div = document.createElement('div');\n" +
+        "div.innerHTML = \"<div data-bind='foreachPage: { data: rows, page: 0, size: 2 }'>\"\n" +
+        "  + \"<span data-bind='text: name'></span></div>\";\n" +
+        "document.body.appendChild(div);\n" +
+        "ko.applyBindings({ 'rows' : rows }, div);\n" +
+        "return div;\n"
+    )
+    private static native Object render(Object rows);
+
+    @JavaScriptBody(args = { "arr", "index" }, body = "return arr[index];")
+    private static native Object read(Object arr, int index);
+
+    @JavaScriptBody(args = { "div" }, body = "return div.textContent;")
+    private static native String text(Object div);
+
+    @JavaScriptBody(args = { "div" }, body = "ko.removeNode(div);")
+    private static native void remove(Object div);
+}
@@ -19,6 +19,8 @@
 package org.netbeans.html.ko4j;
 
 import java.io.Reader;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.util.Arrays;
 import org.netbeans.html.boot.spi.Fn;
@@ -69,6 +71,45 @@ public class MapObjsTest {
         assertSame(c1, c2);
     }
 
+    @Test
+    public void removeForgetsValue() {
+        Value v = new Value();
+        v.put(p1, "p1");
+        v.put(p2, "p2");
+
+        Object[] both = MapObjs.remove(v.now, p1);
+        assertEquals(both[0], "p1");
+        v.now = both[1];
+        assertEquals(v.get(p1), null);
+        assertEquals(v.get(p2), "p2");
+        assertEquals(MapObjs.toArray(v.now).length, 2, "Only one pair left");
+    }
+
+    @Test
+    public void cachePerPresenter() {
+        CacheObjs c1 = CacheObjs.find(p1);
+        CacheObjs c2 = CacheObjs.find(p2);
+        assertNotSame(c1, c2);
+        for (int i = 0; i < 32; i++) {
+            CacheObjs.find(new Pres());
+        }
+        assertSame(CacheObjs.find(p1), c1, "Not overwritten by other presenters");
+        assertSame(CacheObjs.find(p2), c2);
+    }
+
+    @Test
+    public void cacheDisappearsWithPresenter() {
+        Pres p = new Pres();
+        Reference<?> ref = new WeakReference<Object>(CacheObjs.find(p));
+        p = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            System.runFinalization();
+            CacheObjs.size();
+        }
+        assertNull(ref.get(), "Cache for unused presenter is released");
+    }
+
     private static final class Value {
         private Object now;
 
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.ko4j;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import net.java.html.json.Model;
+import net.java.html.json.Models;
+import net.java.html.json.Property;
+import org.netbeans.html.json.tck.KOTest;
+
+/** Binds and unbinds many models and checks they are released. The number
+ * of models can be increased by <code>-Dko4j.release.models=5000000</code>.
+ */
+@Model(className = "ReleaseRoot", targetId = "", properties = {
+    @Property(name = "items", type = ReleaseItem.class, array = true)
+})
+public class ReleaseModelsCheck {
+    private static final int MODELS = Integer.getInteger("ko4j.release.models", 5000);
+    private static final int PER_ROOT = 500;
+
+    @Model(className = "ReleaseItem", properties = {
+        @Property(name = "name", type = String.class),
+        @Property(name = "count", type = int.class)
+    })
+    static class ReleaseItemCntrl {
+    }
+
+    @KOTest public void replacedModelsAreReleased() {
+        final int rounds = MODELS / PER_ROOT;
+        Reference<ReleaseItem> first = null;
+        int trackedAfterFirst = -1;
+        for (int round = 0; round < rounds; round++) {
+            ReleaseRoot root = new ReleaseRoot();
+            for (int i = 0; i < PER_ROOT; i++) {
+                root.getItems().add(new ReleaseItem("Item " + i, i));
+            }
+            Models.applyBindings(root);
+            root.getItems().get(0).setCount(-1);
+            if (round == 0) {
+                first = new WeakReference<ReleaseItem>(root.getItems().get(0));
+            } else if (round == 1) {
+                trackedAfterFirst = Knockout.tracked();
+            }
+        }
+        for (int i = 0; i < 50 && first.get() != null; i++) {
+            System.gc();
+            Knockout.cleanUp();
+        }
+        assert first.get() == null : "Model of replaced root has been released";
+        int trackedAtTheEnd = Knockout.tracked();
+        assert trackedAtTheEnd <= trackedAfterFirst + 4 * PER_ROOT :
+            "Released models aren't tracked: " + trackedAfterFirst + " -> " + trackedAtTheEnd;
+    }
+}
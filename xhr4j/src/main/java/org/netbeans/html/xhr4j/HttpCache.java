@@ -0,0 +1,350 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.xhr4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.html.json.spi.JSONCall;
+
+/** Cache of responses to <code>GET</code> requests. Honors
+ * <code>Cache-Control</code> of the server, keeps <code>ETag</code> and
+ * <code>Last-Modified</code> validators to revalidate stale entries
+ * with conditional requests. Entries are kept in a size bounded LRU
+ * map and optionally stored in a directory, so they survive restarts.
+ * Files of evicted entries are deleted and the directory is pruned to
+ * the capacity when the cache is created.
+ */
+final class HttpCache {
+    private static final Logger LOG = Logger.getLogger(HttpCache.class.getName());
+    private static final int VERSION = 1;
+
+    private final long capacity;
+    private final File dir;
+    private final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private long size;
+
+    HttpCache(long capacity, File dir) {
+        this.capacity = capacity;
+        this.dir = dir;
+        prune();
+    }
+
+    /** Key identifying the response to the call.
+     *
+     * @param call the call
+     * @param url the URL the call connects to
+     * @return the key or <code>null</code> if the response cannot be cached
+     */
+    static String key(JSONCall call, String url) {
+        if (call.isDoOutput()) {
+            return null;
+        }
+        String method = call.getMethod() == null ? "GET" : call.getMethod();
+        if (!"GET".equalsIgnoreCase(method)) {
+            return null;
+        }
+        String h = call.getHeaders();
+        return h == null ? url : url + '\n' + h;
+    }
+
+    /** Finds cached response in memory or on disk.
+     *
+     * @param key the {@link #key(org.netbeans.html.json.spi.JSONCall, java.lang.String) key}
+     * @return the entry or <code>null</code>
+     */
+    Entry find(String key) {
+        synchronized (cache) {
+            Entry e = cache.get(key);
+            if (e != null) {
+                return e;
+            }
+        }
+        Entry e = read(key);
+        if (e != null) {
+            put(e);
+        }
+        return e;
+    }
+
+    /** Stores a response if the server allows it.
+     *
+     * @param key the key
+     * @param data the (uncompressed) body of the response
+     * @param cacheControl value of <code>Cache-Control</code> header or <code>null</code>
+     * @param etag value of <code>ETag</code> header or <code>null</code>
+     * @param lastModified value of <code>Last-Modified</code> header or <code>null</code>
+     * @param now current time
+     * @return the stored entry or <code>null</code>
+     */
+    Entry store(String key, byte[] data, String cacheControl, String etag, String lastModified, long now) {
+        long expires = expires(cacheControl, now);
+        if (expires == -1 || (expires <= now && etag == null && lastModified == null)) {
+            return null;
+        }
+        if (data.length > capacity) {
+            return null;
+        }
+        Entry e = new Entry(key, data, etag, lastModified, expires);
+        put(e);
+        write(e);
+        return e;
+    }
+
+    /** The server confirmed the entry is still valid.
+     *
+     * @param e the entry
+     * @param cacheControl new value of <code>Cache-Control</code> or <code>null</code>
+     * @param now current time
+     */
+    void revalidated(Entry e, String cacheControl, long now) {
+        long expires = expires(cacheControl, now);
+        e.expires = Math.max(expires, 0);
+        write(e);
+    }
+
+    /** Computes expiration time.
+     *
+     * @return time when the response becomes stale or <code>-1</code>
+     *    if it mustn't be stored at all
+     */
+    static long expires(String cacheControl, long now) {
+        if (cacheControl == null) {
+            return now;
+        }
+        long expires = now;
+        for (String directive : cacheControl.toLowerCase(Locale.ENGLISH).split(",")) {
+            String d = directive.trim();
+            if (d.equals("no-store")) {
+                return -1;
+            }
+            if (d.equals("no-cache")) {
+                return now;
+            }
+            if (d.startsWith("max-age=")) {
+                try {
+                    expires = now + Long.parseLong(d.substring(8).trim()) * 1000;
+                } catch (NumberFormatException ex) {
+                    expires = now;
+                }
+            }
+        }
+        return expires;
+    }
+
+    private void put(Entry e) {
+        List<Entry> evicted = null;
+        synchronized (cache) {
+            Entry prev = cache.put(e.key, e);
+            if (prev != null) {
+                size -= prev.data.length;
+            }
+            size += e.data.length;
+            Iterator<Entry> it = cache.values().iterator();
+            while (size > capacity && it.hasNext()) {
+                Entry eldest = it.next();
+                if (eldest == e) {
+                    break;
+                }
+                it.remove();
+                size -= eldest.data.length;
+                if (evicted == null) {
+                    evicted = new ArrayList<Entry>();
+                }
+                evicted.add(eldest);
+            }
+        }
+        if (evicted != null && dir != null) {
+            for (Entry eldest : evicted) {
+                file(eldest.key).delete();
+            }
+        }
+    }
+
+    /** Deletes unfinished files and the least recently modified ones
+     * that don't fit into the capacity.
+     */
+    private void prune() {
+        if (dir == null) {
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> entries = new ArrayList<File>();
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(".tmp")) {
+                f.delete();
+            } else if (name.length() == 40 && f.isFile()) {
+                entries.add(f);
+            }
+        }
+        File[] arr = entries.toArray(new File[entries.size()]);
+        Arrays.sort(arr, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 > m2 ? -1 : (m1 < m2 ? 1 : 0);
+            }
+        });
+        long used = 0;
+        for (File f : arr) {
+            used += f.length();
+            if (used > capacity) {
+                f.delete();
+            }
+        }
+    }
+
+    private File file(String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] hash = md.digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(dir, sb.toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void write(Entry e) {
+        if (dir == null) {
+            return;
+        }
+        File f = file(e.key);
+        File tmp = new File(dir, f.getName() + ".tmp");
+        try {
+            dir.mkdirs();
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                os.writeInt(VERSION);
+                os.writeUTF(e.key);
+                os.writeUTF(e.etag == null ? "" : e.etag);
+                os.writeUTF(e.lastModified == null ? "" : e.lastModified);
+                os.writeLong(e.expires);
+                os.writeInt(e.data.length);
+                os.write(e.data);
+            } finally {
+                os.close();
+            }
+            if (!tmp.renameTo(f)) {
+                f.delete();
+                if (!tmp.renameTo(f)) {
+                    throw new IOException("Cannot rename " + tmp + " to " + f);
+                }
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, "Cannot store " + e.key, ex);
+            tmp.delete();
+        }
+    }
+
+    private Entry read(String key) {
+        if (dir == null) {
+            return null;
+        }
+        File f = file(key);
+        if (!f.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            try {
+                if (is.readInt() != VERSION || !key.equals(is.readUTF())) {
+                    return null;
+                }
+                String etag = is.readUTF();
+                String lastModified = is.readUTF();
+                long expires = is.readLong();
+                byte[] data = new byte[is.readInt()];
+                is.readFully(data);
+                return new Entry(key, data,
+                    etag.length() == 0 ? null : etag,
+                    lastModified.length() == 0 ? null : lastModified,
+                    expires
+                );
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, "Cannot read " + f, ex);
+            return null;
+        }
+    }
+
+    static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] arr = new byte[4096];
+        for (;;) {
+            int len = is.read(arr);
+            if (len == -1) {
+                return os.toByteArray();
+            }
+            os.write(arr, 0, len);
+        }
+    }
+
+    static final class Entry {
+        final String key;
+        final byte[] data;
+        final String etag;
+        final String lastModified;
+        volatile long expires;
+
+        Entry(String key, byte[] data, String etag, String lastModified, long expires) {
+            this.key = key;
+            this.data = data;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        boolean isFresh(long now) {
+            return now < expires;
+        }
+    }
+}
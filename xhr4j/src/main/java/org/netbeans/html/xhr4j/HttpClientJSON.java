@@ -0,0 +1,414 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.xhr4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import org.netbeans.html.json.spi.JSONCall;
+
+/** Asynchronous backend using <code>java.net.http.HttpClient</code>.
+ * Connections are kept alive and reused, HTTP/2 is used when the server
+ * supports it and responses may be compressed. Only a limited number of
+ * requests to the same host runs in parallel, the others wait in a queue.
+ * The client API and the other JDK 8+ types it uses are accessed
+ * reflectively, as the module compiles and runs on older JDKs as well.
+ */
+final class HttpClientJSON {
+    private static final Logger LOG = Logger.getLogger(HttpClientJSON.class.getName());
+    private static final Api API = Api.find();
+    private static final Executor EXEC = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors()), LoadJSON.DAEMON
+    );
+
+    private final Object client;
+    private final int maxPerHost;
+    private final Object timeout;
+    private final Map<String, Host> hosts = new HashMap<String, Host>();
+
+    private HttpClientJSON(int maxPerHost, int timeoutMillis) throws Exception {
+        this.maxPerHost = maxPerHost;
+        this.timeout = API.millis(timeoutMillis);
+        this.client = API.newClient(timeout, EXEC);
+    }
+
+    /** Creates new backend.
+     *
+     * @param maxPerHost maximal number of parallel requests to a host
+     * @param timeoutMillis how long to wait for connection and response
+     * @return the backend or <code>null</code> if the
+     *    <code>java.net.http</code> API isn't available
+     */
+    static HttpClientJSON create(int maxPerHost, int timeoutMillis) {
+        if (maxPerHost <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("maxPerHost: " + maxPerHost + " timeout: " + timeoutMillis);
+        }
+        if (API == null) {
+            LOG.log(Level.INFO, "java.net.http.HttpClient isn't available, using URLConnection");
+            return null;
+        }
+        try {
+            return new HttpClientJSON(maxPerHost, timeoutMillis);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Cannot create HttpClient, using URLConnection", ex);
+            return null;
+        }
+    }
+
+    void loadJSON(final JSONCall call, final HttpCache cache) {
+        EXEC.execute(new Runnable() {
+            @Override
+            public void run() {
+                enqueue(call, cache);
+            }
+        });
+    }
+
+    /** Looks the call up in the cache and sends it or queues it.
+     * Runs on the executor, as the cache may read from disk.
+     */
+    private void enqueue(JSONCall call, HttpCache cache) {
+        Request r;
+        try {
+            r = new Request(call, cache);
+        } catch (Exception ex) {
+            call.notifyError(unwrap(ex));
+            return;
+        }
+        if (r.isFresh()) {
+            deliver(call, r.cached.data);
+            return;
+        }
+        Host h;
+        synchronized (hosts) {
+            h = hosts.get(r.host);
+            if (h == null) {
+                h = new Host();
+                hosts.put(r.host, h);
+            }
+            if (h.active >= maxPerHost) {
+                h.pending.add(r);
+                return;
+            }
+            h.active++;
+        }
+        r.send();
+    }
+
+    private void finished(Request r) {
+        Request next;
+        synchronized (hosts) {
+            Host h = hosts.get(r.host);
+            next = h.pending.poll();
+            if (next == null && --h.active == 0) {
+                hosts.remove(r.host);
+            }
+        }
+        if (next != null) {
+            next.send();
+        }
+    }
+
+    private static void deliver(JSONCall call, byte[] data) {
+        try {
+            call.notifySuccess(LoadJSON.parse(call, new ByteArrayInputStream(data)));
+        } catch (IOException ex) {
+            call.notifyError(ex);
+        }
+    }
+
+    /** Number of requests waiting or running for given host. For testing.
+     */
+    int queued(String host) {
+        synchronized (hosts) {
+            Host h = hosts.get(host);
+            return h == null ? 0 : h.active + h.pending.size();
+        }
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        while (ex instanceof InvocationTargetException || (
+            ex instanceof RuntimeException && ex.getCause() != null && ex.getClass().getName().startsWith("java.util.concurrent.")
+        )) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
+    private static final class Host {
+        int active;
+        final LinkedList<Request> pending = new LinkedList<Request>();
+    }
+
+    private final class Request implements InvocationHandler {
+        final JSONCall call;
+        final String host;
+        private final Object request;
+        private final HttpCache cache;
+        private final String key;
+        final HttpCache.Entry cached;
+
+        Request(JSONCall call, HttpCache cache) throws Exception {
+            this.call = call;
+            this.cache = cache;
+            String url = call.isJSONP() ? call.composeURL("dummy") : call.composeURL(null);
+            this.key = cache == null ? null : HttpCache.key(call, url);
+            this.cached = key == null ? null : cache.find(key);
+            URI uri = new URI(url.replace(" ", "%20"));
+            if (uri.getHost() == null) {
+                throw new URISyntaxException(url, "No host");
+            }
+            this.host = uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+            Object b = API.newRequest(uri, timeout);
+            boolean encoding = false;
+            for (Map.Entry<String, String> e : LoadJSON.headers(call.getHeaders()).entrySet()) {
+                encoding |= e.getKey().equalsIgnoreCase("Accept-Encoding");
+                API.header(b, e.getKey(), e.getValue());
+            }
+            if (!encoding) {
+                API.header(b, "Accept-Encoding", "gzip");
+            }
+            if (cached != null) {
+                if (cached.etag != null) {
+                    API.header(b, "If-None-Match", cached.etag);
+                }
+                if (cached.lastModified != null) {
+                    API.header(b, "If-Modified-Since", cached.lastModified);
+                }
+            }
+            byte[] data = null;
+            if (call.isDoOutput()) {
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                call.writeData(os);
+                data = os.toByteArray();
+            }
+            String method = call.getMethod() == null ? "GET" : call.getMethod();
+            this.request = API.build(b, method, data);
+        }
+
+        boolean isFresh() {
+            return cached != null && cached.isFresh(System.currentTimeMillis());
+        }
+
+        void send() {
+            try {
+                API.sendAsync(client, request, this);
+            } catch (Exception ex) {
+                accept(null, ex);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            if (m.getDeclaringClass() == Object.class) {
+                return m.invoke(this, args);
+            }
+            accept(args[0], (Throwable) args[1]);
+            return null;
+        }
+
+        /** Called when the response or an error arrives. */
+        void accept(Object response, Throwable error) {
+            finished(this);
+            byte[] data = null;
+            if (error == null) {
+                try {
+                    int status = API.status(response);
+                    long now = System.currentTimeMillis();
+                    if (status == 304 && cached != null) {
+                        cache.revalidated(cached, API.header(response, "Cache-Control"), now);
+                        data = cached.data;
+                    } else if (status >= 400) {
+                        throw new IOException("Server returned HTTP response code: " + status + " for URL: " + call.composeURL(call.isJSONP() ? "dummy" : null));
+                    } else {
+                        data = API.body(response);
+                        if ("gzip".equalsIgnoreCase(API.header(response, "Content-Encoding"))) {
+                            data = HttpCache.readFully(new GZIPInputStream(new ByteArrayInputStream(data)));
+                        }
+                        if (key != null && status == 200) {
+                            cache.store(key, data,
+                                API.header(response, "Cache-Control"),
+                                API.header(response, "ETag"),
+                                API.header(response, "Last-Modified"), now
+                            );
+                        }
+                    }
+                } catch (Exception ex) {
+                    error = ex;
+                }
+            }
+            if (error != null) {
+                call.notifyError(unwrap(error));
+            } else {
+                deliver(call, data);
+            }
+        }
+    }
+
+    /** Reflective access to <code>java.net.http</code> package. */
+    private static final class Api {
+        private final Method ofMillis;
+        private final Method newClientBuilder;
+        private final Method connectTimeout;
+        private final Method followRedirects;
+        private final Method executor;
+        private final Method buildClient;
+        private final Object redirectNormal;
+        private final Method newRequestBuilder;
+        private final Method requestTimeout;
+        private final Method header;
+        private final Method method;
+        private final Method buildRequest;
+        private final Method ofByteArray;
+        private final Method noBody;
+        private final Method sendAsync;
+        private final Object bytesHandler;
+        private final Method statusCode;
+        private final Method body;
+        private final Method headers;
+        private final Method firstValue;
+        private final Method whenComplete;
+        private final Class<?> biConsumer;
+        private final Method orElse;
+
+        private Api() throws Exception {
+            Class<?> duration = Class.forName("java.time.Duration");
+            Class<?> client = Class.forName("java.net.http.HttpClient");
+            Class<?> clientBuilder = Class.forName("java.net.http.HttpClient$Builder");
+            Class<?> redirect = Class.forName("java.net.http.HttpClient$Redirect");
+            Class<?> request = Class.forName("java.net.http.HttpRequest");
+            Class<?> requestBuilder = Class.forName("java.net.http.HttpRequest$Builder");
+            Class<?> publisher = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+            Class<?> publishers = Class.forName("java.net.http.HttpRequest$BodyPublishers");
+            Class<?> response = Class.forName("java.net.http.HttpResponse");
+            Class<?> handler = Class.forName("java.net.http.HttpResponse$BodyHandler");
+            Class<?> handlers = Class.forName("java.net.http.HttpResponse$BodyHandlers");
+            Class<?> httpHeaders = Class.forName("java.net.http.HttpHeaders");
+            Class<?> stage = Class.forName("java.util.concurrent.CompletionStage");
+            biConsumer = Class.forName("java.util.function.BiConsumer");
+            Class<?> optional = Class.forName("java.util.Optional");
+
+            ofMillis = duration.getMethod("ofMillis", long.class);
+            newClientBuilder = client.getMethod("newBuilder");
+            connectTimeout = clientBuilder.getMethod("connectTimeout", duration);
+            followRedirects = clientBuilder.getMethod("followRedirects", redirect);
+            executor = clientBuilder.getMethod("executor", Executor.class);
+            buildClient = clientBuilder.getMethod("build");
+            redirectNormal = redirect.getField("NORMAL").get(null);
+            newRequestBuilder = request.getMethod("newBuilder", URI.class);
+            requestTimeout = requestBuilder.getMethod("timeout", duration);
+            header = requestBuilder.getMethod("header", String.class, String.class);
+            method = requestBuilder.getMethod("method", String.class, publisher);
+            buildRequest = requestBuilder.getMethod("build");
+            ofByteArray = publishers.getMethod("ofByteArray", byte[].class);
+            noBody = publishers.getMethod("noBody");
+            sendAsync = client.getMethod("sendAsync", request, handler);
+            bytesHandler = handlers.getMethod("ofByteArray").invoke(null);
+            statusCode = response.getMethod("statusCode");
+            body = response.getMethod("body");
+            headers = response.getMethod("headers");
+            firstValue = httpHeaders.getMethod("firstValue", String.class);
+            whenComplete = stage.getMethod("whenComplete", biConsumer);
+            orElse = optional.getMethod("orElse", Object.class);
+        }
+
+        static Api find() {
+            try {
+                return new Api();
+            } catch (Exception ex) {
+                LOG.log(Level.FINE, "No java.net.http", ex);
+                return null;
+            } catch (LinkageError ex) {
+                LOG.log(Level.FINE, "No java.net.http", ex);
+                return null;
+            }
+        }
+
+        Object millis(long ms) throws Exception {
+            return ofMillis.invoke(null, ms);
+        }
+
+        Object newClient(Object timeout, Executor exec) throws Exception {
+            Object b = newClientBuilder.invoke(null);
+            connectTimeout.invoke(b, timeout);
+            followRedirects.invoke(b, redirectNormal);
+            executor.invoke(b, exec);
+            return buildClient.invoke(b);
+        }
+
+        Object newRequest(URI uri, Object timeout) throws Exception {
+            Object b = newRequestBuilder.invoke(null, uri);
+            requestTimeout.invoke(b, timeout);
+            return b;
+        }
+
+        void header(Object builder, String name, String value) throws Exception {
+            try {
+                header.invoke(builder, name, value);
+            } catch (InvocationTargetException ex) {
+                if (ex.getCause() instanceof IllegalArgumentException) {
+                    LOG.log(Level.FINE, "Ignoring restricted header {0}", name);
+                } else {
+                    throw ex;
+                }
+            }
+        }
+
+        Object build(Object builder, String name, byte[] data) throws Exception {
+            Object publisher = data == null ? noBody.invoke(null) : ofByteArray.invoke(null, (Object) data);
+            method.invoke(builder, name, publisher);
+            return buildRequest.invoke(builder);
+        }
+
+        void sendAsync(Object client, Object request, InvocationHandler onComplete) throws Exception {
+            Object future = sendAsync.invoke(client, request, bytesHandler);
+            Object action = Proxy.newProxyInstance(
+                HttpClientJSON.class.getClassLoader(), new Class<?>[] { biConsumer }, onComplete
+            );
+            whenComplete.invoke(future, action);
+        }
+
+        int status(Object response) throws Exception {
+            return (Integer) statusCode.invoke(response);
+        }
+
+        byte[] body(Object response) throws Exception {
+            return (byte[]) body.invoke(response);
+        }
+
+        String header(Object response, String name) throws Exception {
+            Object value = firstValue.invoke(headers.invoke(response), name);
+            return (String) orElse.invoke(value, (Object) null);
+        }
+    }
+}
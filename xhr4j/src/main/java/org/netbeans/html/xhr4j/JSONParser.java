@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.xhr4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import org.netbeans.html.json.spi.JSONReader;
+
+/** Parses JSON in Java, without any help of JavaScript. Objects are
+ * read by {@link JSONReader}, arrays are represented as
+ * <code>Object[]</code>, strings, numbers and booleans as their
+ * Java counterparts.
+ *
+ * @author Jaroslav Tulach
+ */
+final class JSONParser {
+    private JSONParser() {
+    }
+
+    static JSONReader reader(InputStream is) throws IOException {
+        return new JSONReader(new InputStreamReader(is, "UTF-8"));
+    }
+
+    /** Parses a JSON value from the stream.
+     *
+     * @param is the stream in UTF-8 encoding
+     * @param skipPrefix skip anything in front of the first object or array,
+     *   for example name of JSONP callback, and ignore anything after
+     *   the value
+     * @return the parsed value
+     * @throws IOException if the stream cannot be read or isn't JSON
+     */
+    static Object parse(InputStream is, boolean skipPrefix) throws IOException {
+        Reader r = new InputStreamReader(is, "UTF-8");
+        if (skipPrefix) {
+            PushbackReader push = new PushbackReader(r, 1);
+            for (;;) {
+                int ch = push.read();
+                if (ch == -1) {
+                    throw new IOException("No JSON found");
+                }
+                if (ch == '{' || ch == '[') {
+                    push.unread(ch);
+                    break;
+                }
+            }
+            return new JSONReader(push).nextValue();
+        }
+        JSONReader reader = new JSONReader(r);
+        Object value = reader.nextValue();
+        if (reader.hasNext()) {
+            throw new IOException("Unexpected content after JSON value");
+        }
+        return value;
+    }
+
+    /** Reads properties of values that aren't objects.
+     *
+     * @return {@code false} if the object hasn't been produced by the parser
+     */
+    static boolean extract(Object obj, String[] props, Object[] values) {
+        if (obj == null || obj instanceof Object[] || obj instanceof String
+            || obj instanceof Number || obj instanceof Boolean
+        ) {
+            for (int i = 0; i < props.length; i++) {
+                values[i] = props[i] == null ? obj : null;
+            }
+            return true;
+        }
+        return false;
+    }
+}
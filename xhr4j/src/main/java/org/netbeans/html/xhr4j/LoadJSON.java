@@ -18,6 +18,7 @@
  */
 package org.netbeans.html.xhr4j;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -28,7 +29,8 @@ import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
-import java.util.concurrent.Callable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -44,7 +46,7 @@ import org.netbeans.html.json.spi.JSONCall;
  */
 final class LoadJSON implements Runnable {
     private static final Logger LOG = Logger.getLogger(LoadJSON.class.getName());
-    private static final Executor REQ = Executors.newCachedThreadPool(new ThreadFactory() {
+    static final ThreadFactory DAEMON = new ThreadFactory() {
         @Override
         public Thread newThread(Runnable runnable) {
             Thread thread = Executors.defaultThreadFactory().newThread(runnable);
@@ -52,20 +54,23 @@ final class LoadJSON implements Runnable {
             thread.setName("xhr4j daemon");
             return thread;
         }
-    });
+    };
+    private static final Executor REQ = Executors.newCachedThreadPool(DAEMON);
 
     private final JSONCall call;
     private final URL base;
+    private final HttpCache cache;
 
 
-    private LoadJSON(JSONCall call) {
+    private LoadJSON(JSONCall call, HttpCache cache) {
         this.call = call;
         this.base = null;
+        this.cache = cache;
     }
 
-    public static void loadJSON(JSONCall call) {
+    public static void loadJSON(JSONCall call, HttpCache cache) {
         assert !"WebSocket".equals(call.getMethod());
-        REQ.execute(new LoadJSON((call)));
+        REQ.execute(new LoadJSON(call, cache));
     }
 
     @Override
@@ -80,31 +85,26 @@ final class LoadJSON implements Runnable {
             url = call.composeURL(null);
         }
         try {
+            final String key = cache == null ? null : HttpCache.key(call, url);
+            final HttpCache.Entry cached = key == null ? null : cache.find(key);
+            if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+                json = parse(call, new ByteArrayInputStream(cached.data));
+                return;
+            }
             final URL u = new URL(base, url.replace(" ", "%20"));
             URLConnection conn = u.openConnection();
             if (call.isDoOutput()) {
                 conn.setDoOutput(true);
             }
-            String h = call.getHeaders();
-            if (h != null) {
-                int pos = 0;
-                while (pos < h.length()) {
-                    int tagEnd = h.indexOf(':', pos);
-                    if (tagEnd == -1) {
-                        break;
-                    }
-                    int r = h.indexOf('\r', tagEnd);
-                    int n = h.indexOf('\n', tagEnd);
-                    if (r == -1) {
-                        r = h.length();
-                    }
-                    if (n == -1) {
-                        n = h.length();
-                    }
-                    String key = h.substring(pos, tagEnd).trim();
-                    String val = h.substring(tagEnd + 1, Math.min(r, n)).trim();
-                    conn.setRequestProperty(key, val);;
-                    pos = Math.max(r, n);
+            for (Map.Entry<String, String> e : headers(call.getHeaders()).entrySet()) {
+                conn.setRequestProperty(e.getKey(), e.getValue());
+            }
+            if (cached != null) {
+                if (cached.etag != null) {
+                    conn.setRequestProperty("If-None-Match", cached.etag);
+                }
+                if (cached.lastModified != null) {
+                    conn.setRequestProperty("If-Modified-Since", cached.lastModified);
                 }
             }
             if (call.getMethod() != null && conn instanceof HttpURLConnection) {
@@ -115,16 +115,28 @@ final class LoadJSON implements Runnable {
                 call.writeData(os);
                 os.flush();
             }
-            final PushbackInputStream is = new PushbackInputStream(
-                conn.getInputStream(), 1
-            );
-            boolean[] arrayOrString = { false, false };
-            detectJSONType(call.isJSONP(), is, arrayOrString);
-            String response = readStream(is);
-            if (call.isJSONP()) {
-                response = '(' + response;
+            InputStream is;
+            if (key != null && conn instanceof HttpURLConnection) {
+                int status = ((HttpURLConnection) conn).getResponseCode();
+                long now = System.currentTimeMillis();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                    cache.revalidated(cached, conn.getHeaderField("Cache-Control"), now);
+                    is = new ByteArrayInputStream(cached.data);
+                } else {
+                    byte[] data = HttpCache.readFully(conn.getInputStream());
+                    if (status == HttpURLConnection.HTTP_OK) {
+                        cache.store(key, data,
+                            conn.getHeaderField("Cache-Control"),
+                            conn.getHeaderField("ETag"),
+                            conn.getHeaderField("Last-Modified"), now
+                        );
+                    }
+                    is = new ByteArrayInputStream(data);
+                }
+            } else {
+                is = conn.getInputStream();
             }
-            json = new Result(response, arrayOrString[0], arrayOrString[1]);
+            json = parse(call, is);
         } catch (IOException ex) {
             error = ex;
         } finally {
@@ -136,47 +148,56 @@ final class LoadJSON implements Runnable {
         }
     }
 
-    private static final class Result implements Callable<Object> {
-        private final String response;
-        private final boolean array;
-        private final boolean plain;
-
-        Result(String response, boolean array, boolean plain) {
-            this.response = response;
-            this.array = array;
-            this.plain = plain;
-        }
-
-        @Override
-        public Object call() throws Exception {
-            if (plain) {
-                return response;
-            } else {
-                if (array) {
-                    Object r = parse(response);
-                    Object[] arr = r instanceof Object[] ? (Object[])r : new Object[] { r };
-                    for (int i = 0; i < arr.length; i++) {
-                        arr[i] = new JSObjToStr(response, arr[i]);
-                    }
-                    return arr;
-                } else {
-                    return new JSObjToStr(response, parse(response));
+    /** Splits additional request headers into name and value pairs.
+     *
+     * @param h the headers as returned by {@link JSONCall#getHeaders()}
+     * @return ordered map of headers, never <code>null</code>
+     */
+    static Map<String, String> headers(String h) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        if (h != null) {
+            int pos = 0;
+            while (pos < h.length()) {
+                int tagEnd = h.indexOf(':', pos);
+                if (tagEnd == -1) {
+                    break;
                 }
+                int r = h.indexOf('\r', tagEnd);
+                int n = h.indexOf('\n', tagEnd);
+                if (r == -1) {
+                    r = h.length();
+                }
+                if (n == -1) {
+                    n = h.length();
+                }
+                String key = h.substring(pos, tagEnd).trim();
+                String val = h.substring(tagEnd + 1, Math.min(r, n)).trim();
+                map.put(key, val);
+                pos = Math.max(r, n);
             }
         }
+        return map;
     }
-    private static final class JSObjToStr {
-        final String str;
-        final Object obj;
 
-        public JSObjToStr(Object str, Object obj) {
-            this.str = str == null ? "" : str.toString();
-            this.obj = obj;
-        }
-
-        @Override
-        public String toString() {
-            return str;
+    /** Converts the response body to the value expected by the call.
+     *
+     * @param call the call to read the response for
+     * @param body the response body
+     * @return parsed JSON object, array or plain string
+     * @throws IOException if the body cannot be read or parsed
+     */
+    static Object parse(JSONCall call, InputStream body) throws IOException {
+        final PushbackInputStream is = new PushbackInputStream(body, 1);
+        boolean[] arrayOrString = { false, false };
+        detectJSONType(call.isJSONP(), is, arrayOrString);
+        if (arrayOrString[1]) {
+            return readStream(is);
+        } else {
+            Object r = JSONParser.parse(is, call.isJSONP());
+            if (arrayOrString[0] && !(r instanceof Object[])) {
+                r = new Object[] { r };
+            }
+            return r;
         }
     }
 
@@ -239,14 +260,9 @@ final class LoadJSON implements Runnable {
         return null;
     }
 
-    @JavaScriptBody(args = {"s"}, body = "return eval('(' + s + ')');")
-    static Object parse(String s) {
-        throw new IllegalStateException("No parser context for " + s);
-    }
-
     static void extractJSON(Object js, String[] props, Object[] values) {
-        if (js instanceof JSObjToStr) {
-            js = ((JSObjToStr)js).obj;
+        if (JSONParser.extract(js, props, values)) {
+            return;
         }
         for (int i = 0; i < props.length; i++) {
             values[i] = getProperty(js, props[i]);
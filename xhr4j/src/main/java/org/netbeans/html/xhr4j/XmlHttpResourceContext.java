@@ -18,22 +18,36 @@
  */
 package org.netbeans.html.xhr4j;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import net.java.html.json.OnReceive;
 import org.netbeans.html.context.spi.Contexts;
 import org.netbeans.html.json.spi.JSONCall;
+import org.netbeans.html.json.spi.JSONReader;
 import org.netbeans.html.json.spi.Transfer;
 import org.openide.util.lookup.ServiceProvider;
 
 /** Implementation module with support for XHR via Java.
  * Handles {@link OnReceive} requests by using Java to connect to given
- * URL and then parsing it via JavaScript. Use this module if you have
+ * URL and then parsing it in Java. Use this module if you have
  * problems with CORS - as the Java connection isn't restricted by CORS
  * rules.
  * 
  * Registers {@link Transfer} technology at position <code>50</code>.
  * The {@link Contexts.Id} of the technology is <b>xhr4j</b>.
+ * <p>
+ * By default each request is handled by a thread blocked in
+ * {@link java.net.URLConnection}. Since 2.0 there is an asynchronous
+ * backend built on top of <code>java.net.http.HttpClient</code>. It
+ * reuses connections, limits the number of parallel requests per host
+ * and times out stalled requests. Obtain it via
+ * {@link #httpClient(int, int)} or enable it for the default instance
+ * by setting the system property
+ * <code>org.netbeans.html.xhr4j.httpClient</code> to <code>true</code>.
+ * On JDKs without the <code>java.net.http</code> module the
+ * {@link java.net.URLConnection} backend is used. Both backends can
+ * {@link #cache(long, java.io.File) cache responses}.
  * 
  * @author Jaroslav Tulach
  * @since 1.3
@@ -41,7 +55,60 @@ import org.openide.util.lookup.ServiceProvider;
 @Contexts.Id("xhr4j")
 @ServiceProvider(service = Contexts.Provider.class)
 public final class XmlHttpResourceContext
-implements Contexts.Provider, Transfer {
+implements Contexts.Provider, Transfer.Streaming {
+    private final HttpClientJSON client;
+    private final HttpCache cache;
+
+    /** Default instance. Uses the {@link #httpClient(int, int) asynchronous
+     * backend} with six requests per host and one minute timeout
+     * when the <code>org.netbeans.html.xhr4j.httpClient</code> property
+     * is <code>true</code>.
+     */
+    public XmlHttpResourceContext() {
+        this(Boolean.getBoolean("org.netbeans.html.xhr4j.httpClient") ? HttpClientJSON.create(6, 60000) : null, null);
+    }
+
+    private XmlHttpResourceContext(HttpClientJSON client, HttpCache cache) {
+        this.client = client;
+        this.cache = cache;
+    }
+
+    /** Creates transfer that uses the asynchronous
+     * <code>java.net.http.HttpClient</code> backend. Register it into
+     * a {@link Contexts#newBuilder(java.lang.Object...) context} as
+     * a {@link Transfer}.
+     *
+     * @param maxPerHost maximal number of requests running in parallel
+     *    against a single host, other requests are queued
+     * @param timeoutMillis how long to wait for a connection and for a
+     *    response before the request fails
+     * @return new instance of the transfer
+     * @throws IllegalArgumentException if any of the arguments isn't positive
+     * @since 2.0
+     */
+    public static XmlHttpResourceContext httpClient(int maxPerHost, int timeoutMillis) {
+        return new XmlHttpResourceContext(HttpClientJSON.create(maxPerHost, timeoutMillis), null);
+    }
+
+    /** Creates transfer that caches responses to <code>GET</code>
+     * requests. The responses are stored as long as the server's
+     * <code>Cache-Control</code> allows and are then revalidated with
+     * conditional requests based on <code>ETag</code> and
+     * <code>Last-Modified</code> headers. The least recently used
+     * responses are evicted when the cache exceeds the given size.
+     * Requests with different URL or headers are cached separately.
+     *
+     * @param maxBytes maximal size of responses kept in memory
+     * @param directory directory to store responses into, so they are
+     *    available after restart, or <code>null</code> to keep them
+     *    in memory only
+     * @return new transfer using the same backend as this one
+     * @since 2.0
+     */
+    public XmlHttpResourceContext cache(long maxBytes, File directory) {
+        return new XmlHttpResourceContext(client, new HttpCache(maxBytes, directory));
+    }
+
     @Override
     public void fillContext(Contexts.Builder context, Class<?> requestor) {
         context.register(Transfer.class, this, 50);
@@ -54,11 +121,20 @@ implements Contexts.Provider, Transfer {
 
     @Override
     public Object toJSON(InputStream is) throws IOException {
-        return LoadJSON.parse(LoadJSON.readStream(is));
+        return JSONParser.parse(is, false);
+    }
+
+    @Override
+    public JSONReader reader(InputStream is) throws IOException {
+        return JSONParser.reader(is);
     }
 
     @Override
     public void loadJSON(JSONCall call) {
-        LoadJSON.loadJSON(call);
+        if (client != null) {
+            client.loadJSON(call, cache);
+        } else {
+            LoadJSON.loadJSON(call, cache);
+        }
     }
 }
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.xhr4j;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.Model;
+import net.java.html.json.Models;
+import net.java.html.json.OnReceive;
+import net.java.html.json.Property;
+import org.netbeans.html.context.spi.Contexts;
+import org.netbeans.html.json.spi.Transfer;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Model(className = "CachedFetcher", properties = {
+    @Property(name = "item", type = Item.class),
+})
+public class HttpCacheTest {
+    private static final BlockingQueue<Object> RESULTS = new LinkedBlockingQueue<Object>();
+    private HttpServer server;
+    private String url;
+
+    @BeforeMethod
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+        RESULTS.clear();
+    }
+
+    @AfterMethod
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @OnReceive(url = "{url}", onError = "failed")
+    static void fetch(CachedFetcher model, Item item) {
+        RESULTS.add(item);
+    }
+
+    static void failed(CachedFetcher model, Exception ex) {
+        RESULTS.add(ex);
+    }
+
+    @DataProvider(name = "backends")
+    public static Object[][] backends() {
+        return new Object[][] {
+            { new XmlHttpResourceContext() },
+            { XmlHttpResourceContext.httpClient(2, 10000) },
+        };
+    }
+
+    @Test(dataProvider = "backends")
+    public void staleEntriesAreRevalidated(XmlHttpResourceContext backend) throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger bodies = new AtomicInteger();
+        server.createContext("/etag", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                requests.incrementAndGet();
+                ex.getResponseHeaders().add("ETag", "\"v1\"");
+                ex.getResponseHeaders().add("Cache-Control", "no-cache");
+                if ("\"v1\"".equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                    ex.sendResponseHeaders(304, -1);
+                    ex.close();
+                    return;
+                }
+                bodies.incrementAndGet();
+                reply(ex, "{'id':1,'name':'One'}");
+            }
+        });
+        CachedFetcher f = fetcher(backend.cache(1024 * 1024, null));
+        for (int i = 0; i < 3; i++) {
+            f.fetch(url + "/etag");
+            Object r = RESULTS.poll(10, TimeUnit.SECONDS);
+            assertTrue(r instanceof Item, "Item received: " + r);
+            assertEquals(((Item) r).getName(), "One");
+        }
+        assertEquals(requests.get(), 3, "Always revalidated");
+        assertEquals(bodies.get(), 1, "Body sent only once");
+    }
+
+    @Test(dataProvider = "backends")
+    public void freshEntriesDontUseNetwork(XmlHttpResourceContext backend) throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        server.createContext("/fresh", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                requests.incrementAndGet();
+                ex.getResponseHeaders().add("Cache-Control", "max-age=60");
+                reply(ex, "{'id':2,'name':'Two'}");
+            }
+        });
+        CachedFetcher f = fetcher(backend.cache(1024 * 1024, null));
+        for (int i = 0; i < 3; i++) {
+            f.fetch(url + "/fresh");
+            Object r = RESULTS.poll(10, TimeUnit.SECONDS);
+            assertTrue(r instanceof Item, "Item received: " + r);
+            assertEquals(((Item) r).getId(), 2);
+        }
+        assertEquals(requests.get(), 1, "Only the first request reaches the server");
+    }
+
+    @Test
+    public void cacheControlIsHonored() {
+        assertEquals(HttpCache.expires("max-age=10", 1000), 11000);
+        assertEquals(HttpCache.expires("public, Max-Age=5", 0), 5000);
+        assertEquals(HttpCache.expires("no-cache, max-age=10", 1000), 1000);
+        assertEquals(HttpCache.expires("no-store", 1000), -1);
+        assertEquals(HttpCache.expires(null, 1000), 1000);
+
+        HttpCache cache = new HttpCache(1024, null);
+        assertNull(cache.store("k", new byte[1], null, null, null, 0), "Nothing to revalidate with");
+        assertNull(cache.store("k", new byte[1], "no-store", "\"x\"", null, 0), "Not allowed to store");
+        assertNotNull(cache.store("k", new byte[1], null, "\"x\"", null, 0), "Can be revalidated");
+        assertNotNull(cache.store("l", new byte[1], "max-age=1", null, null, 0), "Fresh for a while");
+    }
+
+    @Test
+    public void eldestEntriesAreEvicted() {
+        HttpCache cache = new HttpCache(100, null);
+        HttpCache.Entry[] entries = new HttpCache.Entry[3];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = cache.store("k" + i, new byte[40], "max-age=60", null, null, 0);
+        }
+        assertSame(cache.find("k2"), entries[2], "Newest stays");
+        assertNull(cache.find("k0"), "Eldest has been evicted");
+    }
+
+    @Test
+    public void entriesSurviveRestart() throws Exception {
+        File dir = File.createTempFile("cache", ".dir");
+        dir.delete();
+        HttpCache first = new HttpCache(1024, dir);
+        first.store("http://x/\nAccept: y", "{}".getBytes("UTF-8"), "max-age=60", "\"e\"", "Mon, 01 Jan 2024 00:00:00 GMT", 0);
+
+        HttpCache second = new HttpCache(1024, dir);
+        HttpCache.Entry e = second.find("http://x/\nAccept: y");
+        assertNotNull(e, "Read from disk");
+        assertEquals(new String(e.data, "UTF-8"), "{}");
+        assertEquals(e.etag, "\"e\"");
+        assertEquals(e.lastModified, "Mon, 01 Jan 2024 00:00:00 GMT");
+        assertEquals(e.expires, 60000);
+        assertNull(second.find("http://x/"), "Different headers, different entry");
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void evictedEntriesAreDeletedFromDisk() throws Exception {
+        File dir = File.createTempFile("cache", ".dir");
+        dir.delete();
+        HttpCache cache = new HttpCache(100, dir);
+        for (int i = 0; i < 3; i++) {
+            cache.store("k" + i, new byte[40], "max-age=60", null, null, 0);
+        }
+        assertEquals(dir.listFiles().length, 2, "File of evicted entry is deleted");
+        assertNull(new HttpCache(100, dir).find("k0"), "Not on disk");
+
+        File leftover = new File(dir, "unfinished.tmp");
+        leftover.createNewFile();
+        new HttpCache(70, dir);
+        assertEquals(dir.listFiles().length, 1, "Pruned to capacity on startup");
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static CachedFetcher fetcher(XmlHttpResourceContext transfer) {
+        BrwsrCtx ctx = Contexts.newBuilder().register(Transfer.class, transfer, 1).build();
+        return Models.bind(new CachedFetcher(), ctx);
+    }
+
+    private static void reply(HttpExchange ex, String text) throws IOException {
+        byte[] data = text.getBytes("UTF-8");
+        ex.sendResponseHeaders(200, data.length);
+        OutputStream os = ex.getResponseBody();
+        os.write(data);
+        os.close();
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.xhr4j;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.Model;
+import net.java.html.json.Models;
+import net.java.html.json.OnReceive;
+import net.java.html.json.Property;
+import org.netbeans.html.context.spi.Contexts;
+import org.netbeans.html.json.spi.Transfer;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Model(className = "Fetcher", properties = {
+    @Property(name = "item", type = Item.class),
+})
+public class HttpClientJSONTest {
+    private static final BlockingQueue<Object> RESULTS = new LinkedBlockingQueue<Object>();
+    private HttpServer server;
+    private String url;
+    private BrwsrCtx ctx;
+
+    @BeforeMethod
+    public void startServer() throws IOException {
+        try {
+            Class.forName("java.net.http.HttpClient");
+        } catch (ClassNotFoundException ex) {
+            throw new SkipException("Needs java.net.http");
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+        RESULTS.clear();
+    }
+
+    @AfterMethod
+    public void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @OnReceive(url = "{url}", onError = "failed")
+    static void fetch(Fetcher model, Item item) {
+        RESULTS.add(item);
+    }
+
+    @OnReceive(url = "{url}", method = "POST", data = Item.class, onError = "failed")
+    static void post(Fetcher model, Item item) {
+        RESULTS.add(item);
+    }
+
+    static void failed(Fetcher model, Exception ex) {
+        RESULTS.add(ex);
+    }
+
+    private Fetcher fetcher(int maxPerHost, int timeout) {
+        ctx = Contexts.newBuilder().register(
+            Transfer.class, XmlHttpResourceContext.httpClient(maxPerHost, timeout), 1
+        ).build();
+        return Models.bind(new Fetcher(), ctx);
+    }
+
+    @Test
+    public void compressedResponseIsParsed() throws Exception {
+        server.createContext("/item", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                String encoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] data = "{'id':1,'name':'One'}".getBytes("UTF-8");
+                if (encoding != null && encoding.contains("gzip")) {
+                    ByteArrayOutputStream os = new ByteArrayOutputStream();
+                    GZIPOutputStream gz = new GZIPOutputStream(os);
+                    gz.write(data);
+                    gz.close();
+                    data = os.toByteArray();
+                    ex.getResponseHeaders().add("Content-Encoding", "gzip");
+                }
+                reply(ex, 200, data);
+            }
+        });
+        fetcher(2, 10000).fetch(url + "/item");
+        Object r = RESULTS.poll(10, TimeUnit.SECONDS);
+        assertTrue(r instanceof Item, "Item received: " + r);
+        assertEquals(((Item) r).getName(), "One");
+    }
+
+    @Test
+    public void dataArePosted() throws Exception {
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                assertEquals(ex.getRequestMethod(), "POST");
+                reply(ex, 200, readFully(ex.getRequestBody()));
+            }
+        });
+        Item sent = new Item();
+        sent.setId(42);
+        sent.setName("Answer");
+        fetcher(2, 10000).post(url + "/echo", sent);
+        Object r = RESULTS.poll(10, TimeUnit.SECONDS);
+        assertTrue(r instanceof Item, "Item received: " + r);
+        assertEquals(((Item) r).getId(), 42);
+        assertEquals(((Item) r).getName(), "Answer");
+    }
+
+    @Test
+    public void parallelRequestsPerHostAreLimited() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        server.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                int now = running.incrementAndGet();
+                synchronized (max) {
+                    max.set(Math.max(max.get(), now));
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                running.decrementAndGet();
+                reply(ex, 200, "{'id':2}".getBytes("UTF-8"));
+            }
+        });
+        Fetcher f = fetcher(2, 10000);
+        for (int i = 0; i < 10; i++) {
+            f.fetch(url + "/slow");
+        }
+        for (int i = 0; i < 10; i++) {
+            Object r = RESULTS.poll(10, TimeUnit.SECONDS);
+            assertTrue(r instanceof Item, "Item received: " + r);
+        }
+        assertEquals(max.get(), 2, "At most two requests in parallel");
+    }
+
+    @Test
+    public void stalledRequestTimesOut() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/stall", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                reply(ex, 200, "{}".getBytes("UTF-8"));
+            }
+        });
+        fetcher(2, 200).fetch(url + "/stall");
+        Object r = RESULTS.poll(10, TimeUnit.SECONDS);
+        release.countDown();
+        assertNotNull(r);
+        assertTrue(r instanceof IOException, "Timeout reported: " + r);
+    }
+
+    @Test
+    public void errorStatusIsReported() throws Exception {
+        server.createContext("/missing", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                reply(ex, 404, "{}".getBytes("UTF-8"));
+            }
+        });
+        fetcher(2, 10000).fetch(url + "/missing");
+        Object r = RESULTS.poll(10, TimeUnit.SECONDS);
+        assertTrue(r instanceof IOException, "Error reported: " + r);
+        assertTrue(((IOException) r).getMessage().contains("404"), ((IOException) r).getMessage());
+    }
+
+    private static void reply(HttpExchange ex, int status, byte[] data) throws IOException {
+        ex.sendResponseHeaders(status, data.length);
+        OutputStream os = ex.getResponseBody();
+        os.write(data);
+        os.close();
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] arr = new byte[4096];
+        for (;;) {
+            int len = is.read(arr);
+            if (len == -1) {
+                return os.toByteArray();
+            }
+            os.write(arr, 0, len);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.html.xhr4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import net.java.html.BrwsrCtx;
+import net.java.html.json.Model;
+import net.java.html.json.Models;
+import net.java.html.json.Property;
+import org.netbeans.html.context.spi.Contexts;
+import org.netbeans.html.json.spi.Transfer;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import org.testng.annotations.Test;
+
+@Model(className = "Item", properties = {
+    @Property(name = "id", type = int.class),
+    @Property(name = "name", type = String.class),
+    @Property(name = "price", type = double.class),
+    @Property(name = "tags", type = String.class, array = true),
+    @Property(name = "available", type = boolean.class),
+})
+public class JSONParserTest {
+    @Test
+    public void singleQuotesAreAccepted() throws IOException {
+        Object obj = parse("{'firstName': 'Sitar', 'sex': 'MALE'}");
+        assertEquals(obj.toString(), "{\"firstName\":\"Sitar\",\"sex\":\"MALE\"}");
+    }
+
+    @Test
+    public void jsonpPrefixIsSkipped() throws IOException {
+        InputStream is = new ByteArrayInputStream("dummy({\"a\":1});".getBytes("UTF-8"));
+        assertEquals(JSONParser.parse(is, true).toString(), "{\"a\":1}");
+    }
+
+    @Test
+    public void trailingContentIsRejected() throws IOException {
+        try {
+            parse("{} x");
+            fail("Should fail");
+        } catch (IOException ex) {
+            // OK
+        }
+    }
+
+    @Test
+    public void plainValuesHaveNoProperties() {
+        Object[] values = { "x", "y" };
+        assertTrue(JSONParser.extract(new Object[0], new String[] { "length", null }, values));
+        assertNull(values[0]);
+        assertEquals(((Object[]) values[1]).length, 0);
+    }
+
+    @Test
+    public void streamingAndTreeGiveTheSameModel() throws IOException {
+        String json = "{'id': 7, 'name': 'Seven', 'price': 7.5, 'tags': ['x', 'y'], 'available': true, 'unknown': [{}]}";
+        BrwsrCtx ctx = Contexts.newBuilder().register(Transfer.class, new XmlHttpResourceContext(), 1).build();
+        Item streamed = Models.parse(ctx, Item.class, new ByteArrayInputStream(json.getBytes("UTF-8")));
+        Item fromTree = Models.fromRaw(ctx, Item.class, parse(json));
+        assertEquals(streamed, fromTree);
+        assertEquals(streamed.getTags().size(), 2);
+        assertEquals(streamed.toString(), fromTree.toString());
+    }
+
+    @Test
+    public void parseMegabyteIntoModels() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        int cnt = 0;
+        while (sb.length() < 1024 * 1024) {
+            if (cnt > 0) {
+                sb.append(",\n");
+            }
+            sb.append("{\"id\":").append(cnt)
+              .append(",\"name\":\"Item no. ").append(cnt)
+              .append("\",\"price\":").append(cnt).append(".5")
+              .append(",\"tags\":[\"a\",\"b\"],\"available\":").append(cnt % 2 == 0)
+              .append("}");
+            cnt++;
+        }
+        sb.append("]");
+        byte[] data = sb.toString().getBytes("UTF-8");
+
+        BrwsrCtx ctx = Contexts.newBuilder().register(Transfer.class, new XmlHttpResourceContext(), 1).build();
+        List<Item> items = new ArrayList<Item>();
+        long took = System.nanoTime();
+        Models.parse(ctx, Item.class, new ByteArrayInputStream(data), items);
+        took = System.nanoTime() - took;
+
+        assertEquals(items.size(), cnt);
+        Item last = items.get(cnt - 1);
+        assertEquals(last.getId(), cnt - 1);
+        assertEquals(last.getName(), "Item no. " + (cnt - 1));
+        assertEquals(last.getPrice(), cnt - 1 + 0.5);
+        assertEquals(last.getTags().size(), 2);
+        assertEquals(last.isAvailable(), (cnt - 1) % 2 == 0);
+        assertTrue(took < 10_000_000_000L, "Parsed " + data.length + " bytes in " + took / 1000000 + " ms");
+    }
+
+    private static Object parse(String text) throws IOException {
+        return JSONParser.parse(new ByteArrayInputStream(text.getBytes("UTF-8")), false);
+    }
+}